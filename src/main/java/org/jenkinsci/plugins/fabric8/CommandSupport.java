@@ -22,15 +22,25 @@ import io.fabric8.utils.Systems;
 import org.jenkinsci.plugins.fabric8.model.ServiceConstants;
 import org.jenkinsci.plugins.workflow.cps.EnvActionImpl;
 
+import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  */
@@ -41,7 +51,10 @@ public abstract class CommandSupport implements Serializable {
     private transient Map<String, String> env = createEnv();
     private transient ShellFacade shellFacade;
     private transient FileReadFacade fileReadFacade;
+    private transient WaitFacade waitFacade;
+    private transient ShellSessions shellSessions;
     private File currentDir = new File(".");
+    private boolean workspaceLocal;
     private String containerName;
 
     public CommandSupport() {
@@ -51,7 +64,10 @@ public abstract class CommandSupport implements Serializable {
         setLogger(parent.getLogger());
         setShellFacade(parent.getShellFacade());
         setCurrentDir(parent.getCurrentDir());
+        setWorkspaceLocal(parent.isWorkspaceLocal());
         setFileReadFacade(parent.getFileReadFacade());
+        setWaitFacade(parent.getWaitFacade());
+        setShellSessions(parent.getShellSessions());
     }
 
 
@@ -131,7 +147,7 @@ public abstract class CommandSupport implements Serializable {
         if (shell == null) {
             throw new IllegalArgumentException("No shellFacade has been injected into " + this + " so cannot invoke sh(" + command + ")");
         }
-        String answer = shell.apply(command, false, this.containerName);
+        String answer = shell.apply(command, true, this.containerName);
         if (answer == null) {
             return "";
         }
@@ -142,17 +158,144 @@ public abstract class CommandSupport implements Serializable {
      * Returns the output of the given command
      */
     public String containerShOutput(String containerName, String command) {
+        String output = shInSession(containerName, command);
+        if (output != null) {
+            return output;
+        }
         ShellFacade shell = getShellFacade();
         if (shell == null) {
             throw new IllegalArgumentException("No shellFacade has been injected into " + this + " so cannot invoke sh(" + command + ") in container " + containerName);
         }
-        String answer = shell.apply(command, false, containerName);
+        String answer = shell.apply(command, true, containerName);
         if (answer == null) {
             return "";
         }
         return answer.trim();
     }
 
+    /**
+     * Runs the command in the {@link ShellSession} of the container if there are {@link ShellSessions}
+     *
+     * @return the output of the command or null if it was not run so that the {@link ShellFacade} should be used
+     * @throws FailedBuildException if the command failed
+     */
+    protected String shInSession(String containerName, String command) {
+        return shInSession(containerName, command, null);
+    }
+
+    /**
+     * Runs the command in the {@link ShellSession} of the container passing each line of output to the consumer.
+     * <p>
+     * Only commands whose output is returned rather than logged and which name their container use a session, as
+     * commands without a container must run in the enclosing <code>container</code> block of the pipeline. The
+     * session runs the command with the environment of this object, so callers relying on variables bound by the
+     * pipeline should pass them in with {@link #updateEnvironment(Object)}
+     *
+     * @return the output, which is empty if there is a consumer, or null if the command was not run
+     * @throws FailedBuildException if the command failed
+     */
+    protected String shInSession(String containerName, String command, Consumer<String> lines) {
+        ShellSessions sessions = getShellSessions();
+        if (sessions == null || Strings.isNullOrBlank(containerName)) {
+            return null;
+        }
+        ShellBatch.Result result = sessions.run(containerName, command, getEnv(), lines);
+        if (result == null) {
+            return null;
+        }
+        if (result.getExitCode() != 0) {
+            throw new FailedBuildException("script returned exit code " + result.getExitCode() + " running " + command + ": " + result.getOutput());
+        }
+        return result.getOutput();
+    }
+
+    /**
+     * Runs all the commands in a single shell invocation returning the result of each command
+     *
+     * @throws FailedBuildException reporting the first command which failed
+     */
+    public List<ShellBatch.Result> shBatch(ShellBatch batch) {
+        if (batch.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ShellFacade shell = getShellFacade();
+        if (shell == null) {
+            throw new IllegalArgumentException("No shellFacade has been injected into " + this + " so cannot invoke " + batch);
+        }
+        String output = shell.apply(batch.toScript(), true, this.containerName);
+        echo(batch.toLog(output));
+        return batch.parse(output);
+    }
+
+    /**
+     * Runs all the commands in a single shell invocation
+     */
+    public List<ShellBatch.Result> shBatch(String... commands) {
+        ShellBatch batch = new ShellBatch();
+        for (String command : commands) {
+            batch.add(command);
+        }
+        return shBatch(batch);
+    }
+
+    /**
+     * Passes each line of the output of the command to the consumer without holding all of the output in memory
+     * when the output can be streamed from a {@link ShellSession} or from a file in a local workspace.
+     * <p>
+     * Otherwise, such as on a remote agent without a session, the <code>sh</code> step returns all of the output as
+     * a single String so memory use is not bounded; commands with very large output should write it to a file and
+     * process it on the agent instead
+     */
+    public void shLines(String command, Consumer<String> lines) {
+        containerShLines(this.containerName, command, lines);
+    }
+
+    /**
+     * Passes each line of the output of the command in the given container to the consumer; with the same memory
+     * limitation as {@link #shLines(String, Consumer)} when the output cannot be streamed
+     *
+     * @see #shLines(String, Consumer)
+     */
+    public void containerShLines(String containerName, String command, Consumer<String> lines) {
+        if (shInSession(containerName, command, lines) != null) {
+            return;
+        }
+        ShellFacade shell = getShellFacade();
+        if (shell == null) {
+            throw new IllegalArgumentException("No shellFacade has been injected into " + this + " so cannot invoke sh(" + command + ") in container " + containerName);
+        }
+        try {
+            if (isWorkspaceLocal()) {
+                // the workspace is on this machine so lets stream the output from a file rather than a String
+                String fileName = ".fabric8-sh-" + UUID.randomUUID() + ".out";
+                File file = createFile(fileName);
+                try {
+                    shell.apply("{ " + command + "\n} > " + fileName, false, containerName);
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+                        readLines(reader, lines);
+                    }
+                } finally {
+                    file.delete();
+                }
+            } else {
+                // the sh step can only return the output as a whole
+                String answer = shell.apply(command, true, containerName);
+                if (answer != null) {
+                    readLines(new BufferedReader(new StringReader(answer)), lines);
+                }
+            }
+        } catch (IOException e) {
+            throw new FailedBuildException("Failed to read the output of " + command + ": " + e, e);
+        }
+    }
+
+    private static void readLines(BufferedReader reader, Consumer<String> lines) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.accept(line);
+        }
+    }
+
     /**
      * Retries the given block until
      *
@@ -234,28 +377,95 @@ public abstract class CommandSupport implements Serializable {
      * Waits until the given criteria is true ignoring any exceptions that occur each time
      */
     public boolean waitUntil(long retryTimeout, long maximumTimeout, Callable<Boolean> callable) {
+        return waitUntil(WaitStrategy.fixed(retryTimeout), maximumTimeout, callable);
+    }
+
+    /**
+     * Waits until the given condition is true. If a {@link WaitFacade} has been injected the condition is checked
+     * asynchronously so that the pipeline does not hold an executor while waiting; otherwise this blocks the current thread
+     */
+    public boolean waitUntil(WaitStrategy strategy, long maximumTimeout, WaitCondition condition) {
+        WaitFacade facade = getWaitFacade();
+        if (facade != null) {
+            Boolean answer = facade.apply(condition, strategy, maximumTimeout);
+            return answer != null && answer.booleanValue();
+        }
+        // lets check again as soon as the condition tells us it may have changed
+        Semaphore wakeup = new Semaphore(0);
+        Closeable subscription = condition.subscribe(wakeup::release);
+        try {
+            return waitUntil(strategy, maximumTimeout, () -> condition.check(this), subscription != null ? wakeup : null);
+        } finally {
+            if (subscription != null) {
+                try {
+                    subscription.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until the given criteria is true using the strategy to decide how long to sleep between each check.
+     * Repeated failures with the same message are only logged once
+     */
+    public boolean waitUntil(WaitStrategy strategy, long maximumTimeout, Callable<Boolean> callable) {
+        return waitUntil(strategy, maximumTimeout, callable, null);
+    }
+
+    /**
+     * Waits until the given criteria is true; sleeping between checks until the next delay of the strategy or until
+     * a permit is released on the optional wakeup semaphore
+     */
+    protected boolean waitUntil(WaitStrategy strategy, long maximumTimeout, Callable<Boolean> callable, Semaphore wakeup) {
         long endTime = 0L;
         if (maximumTimeout > 0) {
             endTime = System.currentTimeMillis() + maximumTimeout;
         }
-        while (true) {
+        String lastFailure = null;
+        int suppressed = 0;
+        for (int attempt = 1; ; attempt++) {
             Boolean value = null;
             try {
                 value = callable.call();
             } catch (Exception e) {
-                error("Failed waiting for condition", e);
+                String failure = e.toString();
+                if (failure.equals(lastFailure)) {
+                    suppressed++;
+                } else {
+                    if (suppressed > 0) {
+                        warning("Previous failure repeated " + suppressed + " more times");
+                    }
+                    error("Failed waiting for condition", e);
+                    lastFailure = failure;
+                    suppressed = 0;
+                }
             }
             if (value != null && value.booleanValue()) {
                 return true;
             }
-            if (endTime > 0L && System.currentTimeMillis() > endTime) {
-                error("waitUntil timed out after " + maximumTimeout + " millis");
-                return false;
+            long remaining = -1L;
+            if (endTime > 0L) {
+                remaining = endTime - System.currentTimeMillis();
+                if (remaining < 0) {
+                    error("waitUntil timed out after " + maximumTimeout + " millis");
+                    return false;
+                }
+            }
+            long delay = strategy.nextDelay(attempt, remaining);
+            if (remaining >= 0) {
+                delay = Math.min(delay, remaining);
             }
             try {
-                Thread.sleep(retryTimeout);
+                if (wakeup == null) {
+                    Thread.sleep(delay);
+                } else if (wakeup.tryAcquire(delay, TimeUnit.MILLISECONDS)) {
+                    wakeup.drainPermits();
+                }
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                Thread.currentThread().interrupt();
+                throw new FailedBuildException("Interrupted while waiting for condition", e);
             }
         }
     }
@@ -332,6 +542,38 @@ public abstract class CommandSupport implements Serializable {
         this.fileReadFacade = fileReadFacade;
     }
 
+    /**
+     * Returns true if the workspace the shell runs in is known to be on this machine, so that files the shell writes
+     * can be read directly, rather than on a remote agent
+     */
+    public boolean isWorkspaceLocal() {
+        return workspaceLocal;
+    }
+
+    public void setWorkspaceLocal(boolean workspaceLocal) {
+        this.workspaceLocal = workspaceLocal;
+    }
+
+    /**
+     * Returns the long lived shell sessions used by {@link #containerShOutput(String, String)} and
+     * {@link #containerShLines(String, String, Consumer)} or null if every command uses the {@link ShellFacade}
+     */
+    public ShellSessions getShellSessions() {
+        return shellSessions;
+    }
+
+    public void setShellSessions(ShellSessions shellSessions) {
+        this.shellSessions = shellSessions;
+    }
+
+    public WaitFacade getWaitFacade() {
+        return waitFacade;
+    }
+
+    public void setWaitFacade(WaitFacade waitFacade) {
+        this.waitFacade = waitFacade;
+    }
+
     // Implementation methods
     //-------------------------------------------------------------------------
     @NonCPS
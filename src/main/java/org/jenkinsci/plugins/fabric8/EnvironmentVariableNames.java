@@ -21,4 +21,9 @@ public class EnvironmentVariableNames {
     public static final String GITHUB_USER = "GITHUB_USER";
     public static final String GITHUB_PASSWORD = "GITHUB_PASSWORD";
     public static final String GITHUB_TOKEN = "GITHUB_TOKEN";
+    public static final String SONATYPE_USERNAME = "SONATYPE_USERNAME";
+    public static final String SONATYPE_PASSWORD = "SONATYPE_PASSWORD";
+    public static final String NEXUS_STAGING_URL = "NEXUS_STAGING_URL";
+    public static final String DOCKER_REGISTRY_USERNAME = "DOCKER_REGISTRY_USERNAME";
+    public static final String DOCKER_REGISTRY_PASSWORD = "DOCKER_REGISTRY_PASSWORD";
 }
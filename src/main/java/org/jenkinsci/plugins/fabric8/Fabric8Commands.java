@@ -16,23 +16,30 @@
 package org.jenkinsci.plugins.fabric8;
 
 import com.cloudbees.groovy.cps.NonCPS;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.kubernetes.client.KubernetesClient;
-import io.fabric8.openshift.client.DefaultOpenShiftClient;
-import io.fabric8.openshift.client.OpenShiftClient;
 import io.fabric8.utils.IOHelpers;
 import io.fabric8.utils.Strings;
-import io.fabric8.utils.XmlUtils;
+import org.jenkinsci.plugins.fabric8.github.GitHubClients;
 import org.jenkinsci.plugins.fabric8.helpers.DomUtils;
+import org.jenkinsci.plugins.fabric8.helpers.VersionRewriter;
+import org.jenkinsci.plugins.fabric8.maven.ArtifactProbe;
+import org.jenkinsci.plugins.fabric8.maven.AvailabilityWatcher;
+import org.jenkinsci.plugins.fabric8.maven.MavenMetadataCache;
+import org.jenkinsci.plugins.fabric8.maven.NexusStagingClient;
+import org.jenkinsci.plugins.fabric8.maven.PomPropertyUpdater;
+import org.jenkinsci.plugins.fabric8.maven.StagingReleases;
+import org.jenkinsci.plugins.fabric8.maven.StagingRepositories;
+import org.jenkinsci.plugins.fabric8.kubernetes.KubernetesClientPool;
 import org.jenkinsci.plugins.fabric8.model.ServiceConstants;
 import org.kohsuke.github.GHIssue;
 import org.kohsuke.github.GHIssueComment;
 import org.kohsuke.github.GHPullRequest;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
-import org.kohsuke.github.GitHubBuilder;
-import org.w3c.dom.Document;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -44,7 +51,18 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -55,6 +73,10 @@ import static org.jenkinsci.plugins.fabric8.Utils.defaultNamespace;
 public class Fabric8Commands extends CommandSupport {
     private static final long serialVersionUID = 1L;
 
+    private static final int RELEASE_THREADS = Integer.getInteger(Fabric8Commands.class.getName() + ".releaseThreads", 8);
+
+    private static final ExecutorService releaseExecutor = createReleaseExecutor();
+
     private boolean debugSemVerReleaseVersion = false;
 
     public Fabric8Commands() {
@@ -79,43 +101,34 @@ public class Fabric8Commands extends CommandSupport {
     public GitHub createGitHub(String githubToken) {
         String user = getenv(EnvironmentVariableNames.GITHUB_USER);
         String password = getenv(EnvironmentVariableNames.GITHUB_PASSWORD);
-        final GitHubBuilder ghb = new GitHubBuilder();
         if (Strings.isNullOrBlank(githubToken)) {
             githubToken = getenv(EnvironmentVariableNames.GITHUB_TOKEN);
         }
-        if (Strings.isNotBlank(user) && Strings.isNotBlank(password)) {
-            ghb.withPassword(user, password);
-        } else {
+        if (Strings.isNullOrBlank(user) || Strings.isNullOrBlank(password)) {
+            password = null;
             if (Strings.isNullOrBlank(githubToken)) {
                 githubToken = loadDefaultGithubToken();
             }
-            if (Strings.notEmpty(githubToken)) {
-                if (Strings.notEmpty(user)) {
-                    ghb.withOAuthToken(user, githubToken);
-                } else {
-                    ghb.withOAuthToken(githubToken);
-                }
-            }
+        } else {
+            githubToken = null;
         }
         try {
-            return ghb.build();
+            return GitHubClients.getInstance().getGitHub(user, password, githubToken);
         } catch (Exception e) {
             throw new FailedBuildException("Could not connect to github", e);
         }
     }
 
     private String loadDefaultGithubToken() {
-        final String tokenPath = "/home/jenkins/.apitoken/hub";
-        File file = new File(tokenPath);
+        File file = new File(GitHubClients.DEFAULT_TOKEN_FILE);
         if (file.isFile() && file.exists()) {
             String githubToken;
             try {
-                githubToken = IOHelpers.readFully(file);
+                githubToken = GitHubClients.getInstance().loadTokenFile(file);
             } catch (IOException e) {
                 error("Failed to load GitHub token from " + file, e);
                 return null;
             }
-            githubToken = githubToken.trim();
             if (Strings.isNullOrBlank(githubToken)) {
                 error("No GitHub token found in " + file);
             } else {
@@ -149,7 +162,10 @@ public class Fabric8Commands extends CommandSupport {
 
     public String updatePackageJSONVersion(final String f, final Object p, final Object v) {
         try {
-            return shOutput("sed -i -r \'s/\"" + p + "\": \"[0-9][0-9]{0,2}.[0-9][0-9]{0,2}(.[0-9][0-9]{0,2)?(.[0-9][0-9]{0,2)?(-development)?\"/\"" + p + "\": \"" + v + "\"/g\' " + f).trim();
+            if (isWorkspaceLocal()) {
+                return updateVersions(VersionRewriter.packageJson(Collections.singletonMap(String.valueOf(p), String.valueOf(v))), f);
+            }
+            return shOutput("sed -i -r \'s/\"" + p + "\": \"[0-9]{1,3}(\\.[0-9]{1,3}){1,3}(-development)?\"/\"" + p + "\": \"" + v + "\"/g\' " + f).trim();
         } catch (Exception e) {
             error("Failed to get package json version", e);
             return null;
@@ -158,6 +174,9 @@ public class Fabric8Commands extends CommandSupport {
 
     public Object updateDockerfileEnvVar(final String f, final Object p, final Object v) {
         try {
+            if (isWorkspaceLocal()) {
+                return updateVersions(VersionRewriter.dockerfileEnv(Collections.singletonMap(String.valueOf(p), String.valueOf(v))), f);
+            }
             return shOutput("sed -i -r \'s/ENV " + p + ".*/ENV " + p + " " + v + "/g\' " + f);
         } catch (Exception e) {
             error("Failed to get dockerfile env var", e);
@@ -165,23 +184,95 @@ public class Fabric8Commands extends CommandSupport {
         }
     }
 
-    public String getProjectVersion() {
-        Document doc;
-        try {
-            doc = XmlUtils.parseDoc(createFile("pom.xml"));
-        } catch (Exception e) {
-            error("Failed to parse pom.xml", e);
-            return null;
+    /**
+     * Updates many dependency versions in many <code>package.json</code> files in a single pass over each file
+     *
+     * @return the files which changed
+     */
+    public List<String> updatePackageJSONVersions(List<String> files, Map<String, String> versions) throws IOException {
+        if (isWorkspaceLocal()) {
+            return updateVersions(VersionRewriter.packageJson(versions), files);
+        }
+        List<String> expressions = new ArrayList<>();
+        for (Map.Entry<String, String> entry : versions.entrySet()) {
+            expressions.add("s|\"" + entry.getKey() + "\": \"[0-9]{1,3}(\\.[0-9]{1,3}){1,3}(-development)?\"|\"" + entry.getKey() + "\": \"" + entry.getValue() + "\"|g");
+        }
+        return updateVersionsWithSed(files, expressions);
+    }
+
+    /**
+     * Updates many <code>ENV</code> versions in many <code>Dockerfile</code>s in a single pass over each file
+     *
+     * @return the files which changed
+     */
+    public List<String> updateDockerfileEnvVars(List<String> files, Map<String, String> versions) throws IOException {
+        if (isWorkspaceLocal()) {
+            return updateVersions(VersionRewriter.dockerfileEnv(versions), files);
+        }
+        List<String> expressions = new ArrayList<>();
+        for (Map.Entry<String, String> entry : versions.entrySet()) {
+            expressions.add("s|^(\\s*ENV\\s+" + entry.getKey() + ")([ \\t=]+).*$|\\1\\2" + entry.getValue() + "|");
+        }
+        return updateVersionsWithSed(files, expressions);
+    }
+
+    protected String updateVersions(VersionRewriter rewriter, String file) throws IOException {
+        return Strings.join(updateVersions(rewriter, Collections.singletonList(file)), " ");
+    }
+
+    protected List<String> updateVersions(VersionRewriter rewriter, List<String> files) throws IOException {
+        List<String> names = new ArrayList<>(new LinkedHashSet<>(files));
+        List<File> paths = new ArrayList<>();
+        for (String file : names) {
+            paths.add(createFile(file));
+        }
+        List<Boolean> results = rewriter.rewriteEach(paths, Runtime.getRuntime().availableProcessors());
+        List<String> answer = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (results.get(i)) {
+                answer.add(names.get(i));
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Updates the files in a workspace which is only reachable through the shell by applying the sed expressions to
+     * each file in a single shell step, comparing checksums to find the files which changed
+     */
+    protected List<String> updateVersionsWithSed(List<String> files, List<String> expressions) {
+        if (files.isEmpty() || expressions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        StringBuilder sed = new StringBuilder("sed -i -r");
+        for (String expression : expressions) {
+            sed.append(" -e '").append(expression).append("'");
+        }
+        StringBuilder script = new StringBuilder("for f in");
+        for (String file : new LinkedHashSet<>(files)) {
+            script.append(" '").append(file).append("'");
         }
-        return DomUtils.firstElementText(getLogger(), doc, "version", "pom.xml");
+        script.append("; do before=$(md5sum < \"$f\"); ").append(sed).append(" \"$f\"; ")
+                .append("if [ \"$before\" != \"$(md5sum < \"$f\")\" ]; then echo \"$f\"; fi; done");
+        List<String> answer = new ArrayList<>();
+        for (String line : shOutput(script.toString()).split("\n")) {
+            if (Strings.notEmpty(line.trim())) {
+                answer.add(line.trim());
+            }
+        }
+        return answer;
+    }
+
+    public String getProjectVersion() {
+        return DomUtils.firstElementText(getLogger(), createFile("pom.xml"), "version", "pom.xml");
     }
 
     public String getReleaseVersion(final String artifact) {
-        return DomUtils.parseXmlForURLAndReturnFirstElementText(getLogger(), "https://oss.sonatype.org/content/repositories/releases/" + artifact + "/maven-metadata.xml", "latest");
+        return MavenMetadataCache.getInstance().getFirstElementText(getLogger(), "https://oss.sonatype.org/content/repositories/releases/" + artifact + "/maven-metadata.xml", "latest");
     }
 
     public String getMavenCentralVersion(final String artifact) {
-        return DomUtils.parseXmlForURLAndReturnFirstElementText(getLogger(), ServiceConstants.MAVEN_CENTRAL + artifact + "/maven-metadata.xml", "latest");
+        return MavenMetadataCache.getInstance().getFirstElementText(getLogger(), ServiceConstants.MAVEN_CENTRAL + artifact + "/maven-metadata.xml", "latest");
     }
 
     public String getVersion(String repo, String artifact) {
@@ -189,103 +280,75 @@ public class Fabric8Commands extends CommandSupport {
         artifact = Strings.stripSuffix(artifact, "/");
 
         String url = repo + "/" + artifact + "/maven-metadata.xml";
-        return DomUtils.parseXmlForURLAndReturnFirstElementText(getLogger(), url, "latest");
+        return MavenMetadataCache.getInstance().getFirstElementText(getLogger(), url, "latest");
     }
 
     public boolean isArtifactAvailableInRepo(String repo, String groupId, String artifactId, String version, String ext) {
+        return isUrlAvailable(artifactUrl(repo, groupId, artifactId, version, ext));
+    }
+
+    public boolean isFileAvailableInRepo(String repo, String path, String version, final String artifact) {
+        return isUrlAvailable(fileUrl(repo, path, version, artifact));
+    }
+
+    /**
+     * Returns the URL of the artifact in the maven repository
+     */
+    public static String artifactUrl(String repo, String groupId, String artifactId, String version, String ext) {
         repo = Strings.stripSuffix(repo, "/");
         groupId = Strings.stripSuffix(groupId, "/").replace('.', '/');
         artifactId = Strings.stripSuffix(artifactId, "/");
         version = Strings.stripSuffix(version, "/");
 
-        URL url = null;
-        HttpURLConnection connection = null;
-        try {
-            String urlText = repo + "/" + groupId + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + "." + ext;
-            url = new URL(urlText);
-            connection = (HttpURLConnection) url.openConnection();
-
-            connection.setRequestMethod("GET");
-            connection.setDoInput(true);
-
-            connection.connect();
-            try (InputStream inputStream = connection.getInputStream();) {
-                try (Reader ignored = new InputStreamReader(inputStream, "UTF-8")) {
-                    echo("File is available at: " + url.toString());
-                    return true;
-                }
-            }
-        } catch (FileNotFoundException e1) {
-            echo("File not yet available: " + url.toString());
-            return false;
-        } catch (Exception e) {
-            return false;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
-        }
+        return repo + "/" + groupId + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + "." + ext;
     }
 
-    public boolean isFileAvailableInRepo(String repo, String path, String version, final String artifact) {
+    /**
+     * Returns the URL of the versioned file in the repository
+     */
+    public static String fileUrl(String repo, String path, String version, String artifact) {
         repo = Strings.stripSuffix(repo, "/");
         path = Strings.stripSuffix(path, "/");
         version = Strings.stripSuffix(version, "/");
 
+        return repo + "/" + path + "/" + version + "/" + artifact;
+    }
 
-        URL url = null;
-        HttpURLConnection connection = null;
-        try {
-            url = new URL(repo + "/" + path + "/" + version + "/" + artifact);
-            connection = (HttpURLConnection) url.openConnection();
-
-            connection.setRequestMethod("GET");
-            connection.setDoInput(true);
-
-            connection.connect();
-            try (InputStream inputStream = connection.getInputStream();) {
-                try (Reader ignored = new InputStreamReader(inputStream, "UTF-8")) {
-                    echo("File is available at: " + url.toString());
-                    return true;
-                }
-            }
-        } catch (FileNotFoundException e1) {
-            echo("File not yet available: " + url.toString());
-            return false;
-        } catch (Exception e) {
-            return false;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
-        }
+    /**
+     * Returns true if the URL is available using the {@link AvailabilityWatcher} so that concurrent builds waiting
+     * on the same URL share the same requests
+     */
+    protected boolean isUrlAvailable(String url) {
+        ArtifactProbe.Result result = AvailabilityWatcher.getInstance().check(url);
+        if (result.isAvailable()) {
+            echo("File is available at: " + url + " " + result);
+            return true;
+        }
+        echo("File not yet available: " + url + " " + result);
+        return false;
     }
 
     public List<String> getRepoIds() {
-        // we could have multiple staging repos created, we need to write the names of all the generated files to a well known
-        // filename so we can use the workflow readFile (wildcards wont works and new File wont with slaves as groovy is executed on the master jenkins
-        // We write the names of the files that contain the repo ids used for staging.  Each staging repo id is read from each file and returned as a list
-
-        List<String> answer = new ArrayList<>();
+        // we could have multiple staging repos created so we return the staging repo id of each properties file
         try {
-            shOutput("find target/nexus-staging/staging/  -maxdepth 1 -name \"*.properties\" > target/nexus-staging/staging/repos.txt").trim();
-            String repos = readFile("target/nexus-staging/staging/repos.txt");
-            String[] lines = repos.split("\n");
-            for (String line : lines) {
-                String text = readFile(line);
-                Matcher matcher = Pattern.compile("stagingRepository.id=(.+)").matcher(text);
-                if (matcher.matches()) {
-                    answer.add(matcher.group(1));
-                }
+            if (isWorkspaceLocal()) {
+                return StagingRepositories.findRepoIds(createFile(StagingRepositories.STAGING_DIR));
             }
-            return answer;
+            // the workspace may be on a slave so lets read all the properties files with a single command
+            final Set<String> answer = new LinkedHashSet<>();
+            shLines("find " + StagingRepositories.STAGING_DIR + "/ -maxdepth 1 -name \"*.properties\" -exec cat {} +", line -> {
+                String repoId = StagingRepositories.parseRepoId(line);
+                if (repoId != null) {
+                    answer.add(repoId);
+                }
+            });
+            return new ArrayList<>(answer);
         } catch (Exception e) {
             error("Failed to find repoIds", e);
             return Collections.EMPTY_LIST;
         }
     }
 
-
     public String getDockerHubImageTags(final String image) {
         try {
             return IOHelpers.readFully(new URL("https://registry.hub.docker.com/v1/repositories/" + image + "/tags"));
@@ -296,35 +359,79 @@ public class Fabric8Commands extends CommandSupport {
 
     public String searchAndReplaceMavenVersionPropertyNoCommit(final String property, final String newVersion) throws IOException {
         // example matches <fabric8.version>2.3</fabric8.version> <fabric8.version>2.3.12</fabric8.version> <fabric8.version>2.3.12.5</fabric8.version>
-        return shOutput("find -type f -name \'pom.xml\' | xargs sed -i -r \'s/" + property + "[0-9][0-9]{0,2}.[0-9][0-9]{0,2}(.[0-9][0-9]{0,2)?(.[0-9][0-9]{0,2)?</" + property + newVersion + "</g\'");
+        return Strings.join(updatePomProperty(property, newVersion, false), " ");
     }
 
     public String searchAndReplaceMavenVersionProperty(final String property, final String newVersion) throws IOException {
         // example matches <fabric8.version>2.3</fabric8.version> <fabric8.version>2.3.12</fabric8.version> <fabric8.version>2.3.12.5</fabric8.version>
-        sh("find -type f -name \'pom.xml\' | xargs sed -i -r \'s/" + property + "[0-9][0-9]{0,2}.[0-9][0-9]{0,2}(.[0-9][0-9]{0,2)?(.[0-9][0-9]{0,2)?</" + property + newVersion + "</g\'");
-        return shOutput("git commit -a -m \'Bump " + property + " version\'").trim();
+        List<String> changed = updatePomProperty(property, newVersion, false);
+        return commitChangedFiles(changed, "Bump " + property + " version");
     }
 
     public String searchAndReplaceMavenSnapshotProfileVersionProperty(final String property, final String newVersion) throws IOException {
         // example matches <fabric8.version>2.3-SNAPSHOT</fabric8.version> <fabric8.version>2.3.12-SNAPSHOT</fabric8.version> <fabric8.version>2.3.12.5-SNAPSHOT</fabric8.version>
-        sh("find -type f -name \'pom.xml\' | xargs sed -i -r \'s/" + property + "[0-9][0-9]{0,2}.[0-9][0-9]{0,2}(.[0-9][0-9]{0,2)?(.[0-9][0-9]{0,2)?-SNAPSHOT</" + property + newVersion + "-SNAPSHOT</g\'");
-        return shOutput("git commit -a -m \'Bump " + property + " development profile SNAPSHOT version\'");
+        List<String> changed = updatePomProperty(property, newVersion, true);
+        return commitChangedFiles(changed, "Bump " + property + " development profile SNAPSHOT version");
     }
 
-    public String setupWorkspaceForRelease(String project, boolean useGitTagForNextVersion, String mvnExtraArgs, String currentVersion) throws IOException {
-        sh("git config user.email fabric8-admin@googlegroups.com");
-        sh("git config user.name fabric8-release");
+    /**
+     * Updates the version property in all the poms of the workspace returning the poms which changed.
+     * <p>
+     * If the workspace is only reachable through the shell then the poms containing the property with a value other than
+     * the new version are found with grep and updated with sed so that unchanged poms are not rewritten.
+     */
+    protected List<String> updatePomProperty(String property, String newVersion, boolean snapshot) throws IOException {
+        if (isWorkspaceLocal()) {
+            List<String> changed = new PomPropertyUpdater(getCurrentDir()).update(property, newVersion, snapshot);
+            echo("Updated " + PomPropertyUpdater.propertyName(property) + " to " + newVersion + " in " + changed);
+            return changed;
+        }
+        String name = PomPropertyUpdater.propertyName(property);
+        String suffix = snapshot ? PomPropertyUpdater.SNAPSHOT_SUFFIX : "";
+        String quotedName = name.replace(".", "\\.");
+        String regex = "<" + quotedName + ">[0-9]{1,3}(\\.[0-9]{1,3}){1,3}" + suffix + "</" + quotedName + ">";
+        String replacement = "<" + name + ">" + newVersion + suffix + "</" + name + ">";
+        // only list the poms with at least one occurrence of the property which is not already the new version
+        String files = shOutput("for f in $(find . -type f -name pom.xml -not -path '*/target/*'); do "
+                + "if grep -oE '" + regex + "' \"$f\" | grep -qvxF '" + replacement + "'; then echo \"$f\"; fi; done").trim();
+        if (Strings.isNullOrBlank(files)) {
+            return Collections.emptyList();
+        }
+        List<String> changed = new ArrayList<>();
+        for (String file : files.split("\n")) {
+            if (Strings.notEmpty(file.trim())) {
+                changed.add(file.trim());
+            }
+        }
+        // the elements contain '/' so lets use another delimiter
+        String sedReplacement = replacement.replace("\\", "\\\\").replace("&", "\\&").replace("|", "\\|");
+        sh("sed -i -r 's|" + regex + "|" + sedReplacement + "|g' " + Strings.join(changed, " "));
+        return changed;
+    }
 
-        sh("chmod 600 /root/.ssh-git/ssh-key");
-        sh("chmod 600 /root/.ssh-git/ssh-key.pub");
-        sh("chmod 700 /root/.ssh-git");
-        sh("chmod 600 /home/jenkins/.gnupg/pubring.gpg");
-        sh("chmod 600 /home/jenkins/.gnupg/secring.gpg");
-        sh("chmod 600 /home/jenkins/.gnupg/trustdb.gpg");
-        sh("chmod 700 /home/jenkins/.gnupg");
+    /**
+     * Commits only the given files so that poms which did not change are not part of the commit
+     */
+    protected String commitChangedFiles(List<String> files, String message) {
+        if (files.isEmpty()) {
+            echo("No files changed so not committing: " + message);
+            return "";
+        }
+        return shOutput("git commit -m \'" + message + "\' -- " + Strings.join(files, " ")).trim();
+    }
 
-        sh("git tag -d $(git tag)");
-        sh("git fetch --tags");
+    public String setupWorkspaceForRelease(String project, boolean useGitTagForNextVersion, String mvnExtraArgs, String currentVersion) throws IOException {
+        shBatch("git config user.email fabric8-admin@googlegroups.com",
+                "git config user.name fabric8-release",
+                "chmod 600 /root/.ssh-git/ssh-key",
+                "chmod 600 /root/.ssh-git/ssh-key.pub",
+                "chmod 700 /root/.ssh-git",
+                "chmod 600 /home/jenkins/.gnupg/pubring.gpg",
+                "chmod 600 /home/jenkins/.gnupg/secring.gpg",
+                "chmod 600 /home/jenkins/.gnupg/trustdb.gpg",
+                "chmod 700 /home/jenkins/.gnupg",
+                "git tag -d $(git tag)",
+                "git fetch --tags");
 
         if (useGitTagForNextVersion) {
             final String newVersion = getNewVersionFromTag(currentVersion);
@@ -357,17 +464,23 @@ public class Fabric8Commands extends CommandSupport {
 
     public String getNewVersionFromTag(String pomVersion) throws IOException {
         String debugArg = isDebugSemVerReleaseVersion() ? "  --debug" : "";
-        String text = shOutput("semver-release-number --folder " + getCurrentDir().getPath() + debugArg).trim();
-        String[] lines = text.split("\n");
-        int last = lines.length - 1;
-        if (last < 0) {
-            error("No version returned from semver-release-number: " + text);
+        // the version is the last non blank line so lets log all the lines before it
+        final AtomicReference<String> last = new AtomicReference<>();
+        shLines("semver-release-number --folder " + getCurrentDir().getPath() + debugArg, line -> {
+            if (Strings.isNullOrBlank(line)) {
+                return;
+            }
+            String previous = last.getAndSet(line);
+            if (previous != null) {
+                echo("semver-release-number> " + previous);
+            }
+        });
+        String version = last.get();
+        if (Strings.isNullOrBlank(version)) {
+            error("No version returned from semver-release-number");
             return null;
         }
-        for (int i = 0; i < last; i++) {
-            echo("semver-release-number> " + lines[i]);
-        }
-        return lines[last];
+        return version.trim();
     }
 
     public String getNewVersionFromTag() throws IOException {
@@ -397,22 +510,131 @@ public class Fabric8Commands extends CommandSupport {
 
     public Object releaseSonartypeRepo(final String repoId) {
         try {
-            // release the sonartype staging repo
-            return shOutput("mvn -B org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-release -DserverId=oss-sonatype-staging -DnexusUrl=https://oss.sonatype.org -DstagingRepositoryId=" + repoId + " -Ddescription=\"Next release is ready\" -DstagingProgressTimeoutMinutes=60");
-
+            return releaseStagingRepo(repoId);
         } catch (Exception err) {
+            dropFailedStagingRepo(repoId, err);
+            throw new FailedBuildException("ERROR releasing sonartype repo " + repoId + ": " + err, err);
+        }
+    }
+
+    /**
+     * Releases the staging repositories concurrently using up to the given number of workers from a controller wide
+     * bounded pool when the Nexus staging REST API can be used; otherwise they are released one at a time with maven
+     * as the <code>sh</code> step can only be invoked from the pipeline thread.
+     * <p>
+     * The failure policy is shared with the pipeline implementation using {@link StagingReleases}: if any release
+     * fails then no more releases are started and every staging repository which was not released is dropped before
+     * failing the build.
+     */
+    public void releaseSonartypeRepos(final List<String> repoIds, int parallelism) {
+        if (repoIds == null || repoIds.isEmpty()) {
+            return;
+        }
+        if (repoIds.size() == 1) {
+            releaseSonartypeRepo(repoIds.get(0));
+            return;
+        }
+        if (createNexusStagingClient() == null) {
+            parallelism = 1;
+        }
+        final int workers = Math.max(1, Math.min(parallelism, repoIds.size()));
+        echo("Releasing " + repoIds.size() + " staging repositories using " + workers + " workers");
+
+        final StagingReleases releases = new StagingReleases(repoIds);
+        if (workers == 1) {
+            releaseStagingRepos(releases, repoIds, 0, 1);
+        } else {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                final int first = w;
+                tasks.add(() -> {
+                    releaseStagingRepos(releases, repoIds, first, workers);
+                    return null;
+                });
+            }
             try {
-                sh("mvn org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-drop -DserverId=oss-sonatype-staging -DnexusUrl=https://oss.sonatype.org -DstagingRepositoryId=" + repoId + " -Ddescription=\"Error during release: " + err + "\" -DstagingProgressTimeoutMinutes=60");
-            } catch (Exception e) {
-                error("Failed to drop the staging repository " + e, e);
+                releaseExecutor.invokeAll(tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (String repoId : releases.getUnreleased()) {
+                    releases.onFailed(repoId, e);
+                }
             }
-            throw new FailedBuildException("ERROR releasing sonartype repo " + repoId + ": " + err, err);
+        }
+        if (!releases.isFailed()) {
+            return;
+        }
+        for (String repoId : releases.getUnreleased()) {
+            dropFailedStagingRepo(repoId, releases.getCause(repoId));
+        }
+        List<String> released = releases.getReleased();
+        if (!released.isEmpty()) {
+            echo("WARNING the staging repositories " + released + " were already released so could not be dropped");
+        }
+        throw new FailedBuildException(releases.getFailureMessage(), releases.getCause());
+    }
+
+    private static ExecutorService createReleaseExecutor() {
+        ThreadPoolExecutor answer = new ThreadPoolExecutor(RELEASE_THREADS, RELEASE_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamingThreadFactory(new DaemonThreadFactory(), "fabric8-pipelines-release"));
+        answer.allowCoreThreadTimeOut(true);
+        return answer;
+    }
+
+    /**
+     * Releases every nth staging repository starting at the given index until one of the releases fails
+     */
+    protected void releaseStagingRepos(StagingReleases releases, List<String> repoIds, int first, int step) {
+        for (int i = first; i < repoIds.size() && releases.canStart(); i += step) {
+            String repoId = repoIds.get(i);
+            try {
+                releaseStagingRepo(repoId);
+                releases.onReleased(repoId);
+            } catch (RuntimeException e) {
+                releases.onFailed(repoId, e);
+            }
+        }
+    }
+
+    /**
+     * Releases the given staging repository without dropping it on failure
+     */
+    protected String releaseStagingRepo(final String repoId) {
+        NexusStagingClient client = createNexusStagingClient();
+        if (client != null) {
+            try {
+                client.release(repoId, "Next release is ready", NexusStagingClient.DEFAULT_TIMEOUT);
+                echo("Released staging repository " + repoId + " using " + client);
+                return null;
+            } catch (IOException e) {
+                throw new FailedBuildException("Failed to release staging repository " + repoId + ": " + e, e);
+            }
+        }
+        // release the sonartype staging repo
+        return shOutput("mvn -B org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-release -DserverId=oss-sonatype-staging -DnexusUrl=https://oss.sonatype.org -DstagingRepositoryId=" + repoId + " -Ddescription=\"Next release is ready\" -DstagingProgressTimeoutMinutes=60");
+    }
+
+    protected void dropFailedStagingRepo(final String repoId, Throwable err) {
+        NexusStagingClient client = createNexusStagingClient();
+        try {
+            if (client != null) {
+                client.drop(repoId, "Error during release: " + err);
+                return;
+            }
+            sh("mvn org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-drop -DserverId=oss-sonatype-staging -DnexusUrl=https://oss.sonatype.org -DstagingRepositoryId=" + repoId + " -Ddescription=\"Error during release: " + err + "\" -DstagingProgressTimeoutMinutes=60");
+        } catch (Exception e) {
+            error("Failed to drop the staging repository " + e, e);
         }
     }
 
     public Object dropStagingRepo(final String repoId) {
         echo("Not a release so dropping staging repo " + repoId);
+        NexusStagingClient client = createNexusStagingClient();
         try {
+            if (client != null) {
+                client.drop(repoId, "Dry run");
+                return null;
+            }
             return shOutput("mvn org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-drop -DserverId=oss-sonatype-staging -DnexusUrl=https://oss.sonatype.org -DstagingRepositoryId=" + repoId + " -Ddescription=\"Dry run\" -DstagingProgressTimeoutMinutes=60");
         } catch (Exception e) {
             error("Failed to drop staging repository " + repoId + ". " + e, e);
@@ -420,6 +642,24 @@ public class Fabric8Commands extends CommandSupport {
         return null;
     }
 
+    /**
+     * Returns a client for the Nexus staging REST API if the <code>SONATYPE_USERNAME</code> and
+     * <code>SONATYPE_PASSWORD</code> environment variables are defined; otherwise staging repositories are released
+     * and dropped using the <code>nexus-staging-maven-plugin</code>
+     */
+    public NexusStagingClient createNexusStagingClient() {
+        String username = getenv(EnvironmentVariableNames.SONATYPE_USERNAME);
+        String password = getenv(EnvironmentVariableNames.SONATYPE_PASSWORD);
+        if (Strings.isNullOrBlank(username) || Strings.isNullOrBlank(password)) {
+            return null;
+        }
+        String nexusUrl = getenv(EnvironmentVariableNames.NEXUS_STAGING_URL);
+        if (Strings.isNullOrBlank(nexusUrl)) {
+            nexusUrl = NexusStagingClient.DEFAULT_NEXUS_URL;
+        }
+        return new NexusStagingClient(nexusUrl, username, password);
+    }
+
     public Object helm() {
         final Object pluginVersion = getReleaseVersion("io/fabric8/fabric8-maven-plugin");
         try {
@@ -457,13 +697,14 @@ public class Fabric8Commands extends CommandSupport {
     }
 
     public Boolean hasChangedSinceLastRelease() throws IOException {
-        sh("git log --name-status HEAD^..HEAD -1 --grep=\"prepare for next development iteration\" --author='fusesource-ci' >> gitlog.tmp");
-        File file = createFile("gitlog.tmp");
-        String myfile = IOHelpers.readFully(file).trim();
-        file.delete();
-        //sh "rm gitlog.tmp"
-        // if the file size is 0 it means the CI user was not the last commit so project has changed
-        return myfile.length() == 0;
+        final AtomicBoolean ciCommit = new AtomicBoolean();
+        shLines("git log --name-status HEAD^..HEAD -1 --grep=\"prepare for next development iteration\" --author='fusesource-ci'", line -> {
+            if (line.trim().length() > 0) {
+                ciCommit.set(true);
+            }
+        });
+        // if there is no output it means the CI user was not the last commit so project has changed
+        return !ciCommit.get();
     }
 
 
@@ -504,7 +745,7 @@ TODO
 
     @NonCPS
     public boolean isOpenShift() {
-        return new DefaultOpenShiftClient().isAdaptable(OpenShiftClient.class);
+        return KubernetesClientPool.getInstance().isOpenShift();
     }
 
     public List<GHIssueComment> getIssueComments(String project, String id, String githubToken) {
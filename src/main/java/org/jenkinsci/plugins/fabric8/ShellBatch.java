@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects shell commands so that they can be run as a single script; saving a separate <code>sh</code> step
+ * launch for each command.
+ * <p>
+ * Each command runs in its own subshell, like a separate <code>sh</code> step, and its output is surrounded by
+ * markers containing the exit status so that the output and failure of each command can be reported separately.
+ * The script stops at the first failing command.
+ */
+public class ShellBatch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> commands = new ArrayList<>();
+    private final String marker = "FABRIC8-BATCH-" + UUID.randomUUID().toString().replace("-", "");
+
+    /**
+     * Adds a command to the batch
+     */
+    public ShellBatch add(String command) {
+        commands.add(command);
+        return this;
+    }
+
+    public List<String> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Returns the script which runs all the commands. The script itself always succeeds so that its output is returned;
+     * use {@link #parse(String)} to find which commands failed
+     */
+    public String toScript() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < commands.size(); i++) {
+            builder.append("echo '").append(marker).append(" START ").append(i).append("'\n");
+            builder.append("( ").append(commands.get(i)).append("\n) 2>&1\n");
+            builder.append("rc=$?\n");
+            builder.append("echo \"").append(marker).append(" END ").append(i).append(" $rc\"\n");
+            builder.append("[ $rc -eq 0 ] || exit 0\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Parses the output of the script returning the result of each command which ran
+     *
+     * @throws FailedBuildException if any command failed or did not run
+     */
+    public List<Result> parse(String output) {
+        List<Result> answer = results(output);
+        if (!answer.isEmpty()) {
+            Result result = answer.get(answer.size() - 1);
+            if (result.getExitCode() != 0) {
+                throw new FailedBuildException("Command '" + result.getCommand() + "' failed with exit code " + result.getExitCode() + ": " + result.getOutput());
+            }
+        }
+        if (answer.size() < commands.size()) {
+            throw new FailedBuildException("Command '" + commands.get(answer.size()) + "' did not complete in batch: " + output);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the commands which ran and their output, in the order they ran, for the build log; as the output of the
+     * script is captured it is not otherwise shown like the output of separate <code>sh</code> steps
+     */
+    public String toLog(String output) {
+        StringBuilder builder = new StringBuilder();
+        for (Result result : results(output)) {
+            builder.append("+ ").append(result.getCommand()).append("\n");
+            if (result.getOutput().length() > 0) {
+                builder.append(result.getOutput()).append("\n");
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the result of each command which ran, stopping at the first failure
+     */
+    protected List<Result> results(String output) {
+        List<Result> answer = new ArrayList<>();
+        Pattern start = Pattern.compile("^" + marker + " START (\\d+)$");
+        Pattern end = Pattern.compile("^(.*?)" + marker + " END (\\d+) (\\d+)$");
+        StringBuilder commandOutput = null;
+        for (String line : (output != null ? output : "").split("\\r?\\n")) {
+            Matcher matcher = start.matcher(line);
+            if (matcher.matches()) {
+                commandOutput = new StringBuilder();
+                continue;
+            }
+            matcher = end.matcher(line);
+            if (matcher.matches() && commandOutput != null) {
+                // a command whose output does not end with a new line leaves the output before the marker
+                commandOutput.append(matcher.group(1));
+                int index = Integer.parseInt(matcher.group(2));
+                Result result = new Result(commands.get(index), Integer.parseInt(matcher.group(3)), commandOutput.toString().trim());
+                answer.add(result);
+                if (result.getExitCode() != 0) {
+                    break;
+                }
+                commandOutput = null;
+            } else if (commandOutput != null) {
+                commandOutput.append(line).append("\n");
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return "ShellBatch" + commands;
+    }
+
+    /**
+     * The exit code and output of a command in the batch
+     */
+    public static class Result implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String command;
+        private final int exitCode;
+        private final String output;
+
+        public Result(String command, int exitCode, String output) {
+            this.command = command;
+            this.exitCode = exitCode;
+            this.output = output;
+        }
+
+        @Override
+        public String toString() {
+            return command + " => " + exitCode;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8;
+
+import org.jenkinsci.plugins.fabric8.support.WaitScheduler;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A long lived shell which runs many commands one at a time over the same input and output streams rather than
+ * starting a new process for each command.
+ * <p>
+ * Each command is written to the shell in its own subshell with its stderr merged into stdout, followed by a marker
+ * line containing its exit code, so that the output of each command can be read back from the shared stream.
+ * <p>
+ * A command which runs for longer than the command timeout, or whose calling thread is interrupted such as when the
+ * build is aborted, closes the session so that the caller fails rather than blocking forever.
+ */
+public class ShellSession implements Closeable {
+    public static final long DEFAULT_COMMAND_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+    private static final long WATCHDOG_PERIOD = 1000;
+    private static final Pattern ENV_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Set<String> LOCAL_ENV_NAMES = new HashSet<>(Arrays.asList(
+            "HOME", "HOSTNAME", "LOGNAME", "OLDPWD", "PATH", "PWD", "SHELL", "SHLVL", "TERM", "USER", "_"));
+
+    private final OutputStream input;
+    private final BufferedReader output;
+    private final Closeable resource;
+    private final String marker = "FABRIC8-SESSION-" + UUID.randomUUID().toString().replace("-", "");
+    private final Pattern endPattern = Pattern.compile("^(.*?)" + marker + " END (\\d+)$");
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean closed;
+    private volatile long commandTimeout = DEFAULT_COMMAND_TIMEOUT;
+
+    /**
+     * @param input    the standard input of the shell
+     * @param output   the standard output of the shell
+     * @param resource closed when the session is closed
+     */
+    public ShellSession(OutputStream input, InputStream output, Closeable resource) {
+        this.input = input;
+        this.output = new BufferedReader(new InputStreamReader(output, StandardCharsets.UTF_8));
+        this.resource = resource;
+    }
+
+    /**
+     * Starts a local <code>sh</code> process
+     */
+    public static ShellSession local(File dir) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder("sh").redirectErrorStream(true);
+        if (dir != null) {
+            builder.directory(dir);
+        }
+        final Process process = builder.start();
+        return new ShellSession(process.getOutputStream(), process.getInputStream(), process::destroy);
+    }
+
+    /**
+     * Runs the command returning its exit code and output or returns null if another thread is using the session
+     *
+     * @throws IOException          if the command could not be sent in which case it did not run
+     * @throws FailedBuildException if the session broke while the command was running
+     */
+    public ShellBatch.Result tryRun(String command) throws IOException {
+        return tryRun(command, null);
+    }
+
+    /**
+     * Runs the command passing each line of its output to the consumer, rather than returning the output, or returns
+     * null if another thread is using the session
+     *
+     * @throws IOException          if the command could not be sent in which case it did not run
+     * @throws FailedBuildException if the session broke while the command was running
+     */
+    public ShellBatch.Result tryRun(String command, Consumer<String> lines) throws IOException {
+        return tryRun(command, null, lines);
+    }
+
+    /**
+     * Runs the command with the given environment variables passing each line of its output to the consumer, if there
+     * is one, or returns null if another thread is using the session
+     *
+     * @throws IOException          if the command could not be sent in which case it did not run
+     * @throws FailedBuildException if the session broke while the command was running
+     */
+    public ShellBatch.Result tryRun(String command, Map<String, String> env, Consumer<String> lines) throws IOException {
+        if (!lock.tryLock()) {
+            return null;
+        }
+        try {
+            return run(command, env, lines);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the command returning its exit code and output. The session is closed if it breaks
+     *
+     * @throws IOException          if the command could not be sent in which case it did not run
+     * @throws FailedBuildException if the session broke while the command was running
+     */
+    public ShellBatch.Result run(String command) throws IOException {
+        return run(command, null);
+    }
+
+    /**
+     * Runs the command returning its exit code. If a consumer is given each line of output is passed to it as it is
+     * read instead of being collected into the result. The session is closed if it breaks
+     *
+     * @throws IOException          if the command could not be sent in which case it did not run
+     * @throws FailedBuildException if the session broke while the command was running
+     */
+    public ShellBatch.Result run(String command, Consumer<String> lines) throws IOException {
+        return run(command, null, lines);
+    }
+
+    /**
+     * Runs the command with the given environment variables exported in its subshell. Variables which describe the
+     * machine the environment came from, like <code>PATH</code> or <code>HOME</code>, are not exported
+     *
+     * @see #run(String, Consumer)
+     */
+    public ShellBatch.Result run(String command, Map<String, String> env, Consumer<String> lines) throws IOException {
+        return execute(command, "( " + exports(env) + command + "\n) 2>&1 </dev/null\n", lines);
+    }
+
+    protected static String exports(Map<String, String> env) {
+        StringBuilder builder = new StringBuilder();
+        if (env != null) {
+            for (Map.Entry<String, String> entry : env.entrySet()) {
+                String name = entry.getKey();
+                if (name != null && entry.getValue() != null && ENV_NAME.matcher(name).matches() && !LOCAL_ENV_NAMES.contains(name)) {
+                    builder.append("export ").append(name).append("='").append(entry.getValue().replace("'", "'\\''")).append("'\n");
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Changes the working directory of all the following commands
+     *
+     * @throws IOException if the directory could not be changed
+     */
+    public void changeDirectory(String directory) throws IOException {
+        String command = "cd '" + directory.replace("'", "'\\''") + "'";
+        ShellBatch.Result result = execute(command, command + " 2>&1\n", null);
+        if (result.getExitCode() != 0) {
+            throw new IOException("Failed to change directory to " + directory + ": " + result.getOutput());
+        }
+    }
+
+    protected ShellBatch.Result execute(String command, String script, Consumer<String> lines) throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Shell session is closed");
+            }
+            script += "echo \"" + marker + " END $?\"\n";
+            try {
+                input.write(script.getBytes(StandardCharsets.UTF_8));
+                input.flush();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+
+            // the command may have started so lets not let the caller run it again
+            StringBuilder buffer = new StringBuilder();
+            AtomicReference<String> stopped = new AtomicReference<>();
+            ScheduledFuture<?> watchdog = watch(Thread.currentThread(), stopped);
+            try {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    Matcher matcher = endPattern.matcher(line);
+                    if (matcher.matches()) {
+                        if (lines == null) {
+                            buffer.append(matcher.group(1));
+                        } else if (matcher.group(1).length() > 0) {
+                            lines.accept(matcher.group(1));
+                        }
+                        return new ShellBatch.Result(command, Integer.parseInt(matcher.group(2)), buffer.toString().trim());
+                    }
+                    if (lines == null) {
+                        buffer.append(line).append("\n");
+                    } else {
+                        lines.accept(line);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                if (stopped.get() != null) {
+                    throw new FailedBuildException("Shell session command " + stopped.get() + ": " + command + " output: " + buffer, e);
+                }
+                throw new FailedBuildException("Shell session failed while running: " + command + ": " + e + " output: " + buffer, e);
+            } finally {
+                watchdog.cancel(false);
+            }
+            close();
+            if (stopped.get() != null) {
+                throw new FailedBuildException("Shell session command " + stopped.get() + ": " + command + " output: " + buffer);
+            }
+            throw new FailedBuildException("Shell session ended while running: " + command + " output: " + buffer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the session if the command times out or the caller is interrupted, which unblocks reading its output
+     */
+    protected ScheduledFuture<?> watch(final Thread caller, final AtomicReference<String> stopped) {
+        final long timeout = commandTimeout;
+        final long deadline = System.currentTimeMillis() + timeout;
+        long period = Math.max(1, Math.min(WATCHDOG_PERIOD, timeout));
+        return WaitScheduler.get().scheduleAtFixedRate(() -> {
+            if (caller.isInterrupted()) {
+                stopped.compareAndSet(null, "was aborted");
+            } else if (System.currentTimeMillis() >= deadline) {
+                stopped.compareAndSet(null, "timed out after " + timeout + "ms");
+            } else {
+                return;
+            }
+            close();
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a command may run before the session is closed
+     */
+    public long getCommandTimeout() {
+        return commandTimeout;
+    }
+
+    public void setCommandTimeout(long commandTimeout) {
+        this.commandTimeout = commandTimeout;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            input.write("exit\n".getBytes(StandardCharsets.UTF_8));
+            input.flush();
+        } catch (IOException e) {
+            // ignore
+        }
+        try {
+            resource.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
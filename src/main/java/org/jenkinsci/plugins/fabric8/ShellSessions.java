@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@link ShellSession}s of a build keyed by container name which {@link CommandSupport} uses to run commands
+ * without launching a new process for each one.
+ * <p>
+ * A session is opened lazily the first time a command runs in a container. If a session cannot be opened or breaks
+ * before a command was sent then the container is not tried again and {@link #run(String, String)} returns null so
+ * that the caller falls back to the {@link ShellFacade}. A session which breaks while a command is running fails
+ * the command rather than running it a second time.
+ * <p>
+ * The sessions hold exec streams open into the pod so must be closed when the build no longer needs them, after which
+ * commands fall back to the {@link ShellFacade}.
+ */
+public class ShellSessions implements Closeable {
+    private static final Logger LOG = Logger.getLogger(ShellSessions.class.getName());
+
+    private final Opener opener;
+    private final Map<String, ShellSession> sessions = new HashMap<>();
+    private final Set<String> failed = new HashSet<>();
+    private long commandTimeout = ShellSession.DEFAULT_COMMAND_TIMEOUT;
+    private boolean closed;
+
+    public ShellSessions(Opener opener) {
+        this.opener = opener;
+    }
+
+    /**
+     * Opens a shell session in a container
+     */
+    public interface Opener {
+        /**
+         * @param containerName the container to run the shell in
+         */
+        ShellSession open(String containerName) throws IOException;
+    }
+
+    /**
+     * Runs the command in the session of the container
+     *
+     * @return the result or null if there is no usable session for the container right now
+     */
+    public ShellBatch.Result run(String containerName, String command) {
+        return run(containerName, command, null);
+    }
+
+    /**
+     * Runs the command in the session of the container passing each line of output to the consumer if there is one
+     *
+     * @return the result or null if there is no usable session for the container right now
+     */
+    public ShellBatch.Result run(String containerName, String command, Consumer<String> lines) {
+        return run(containerName, command, null, lines);
+    }
+
+    /**
+     * Runs the command with the given environment variables in the session of the container passing each line of
+     * output to the consumer if there is one
+     *
+     * @return the result or null if there is no usable session for the container right now
+     */
+    public ShellBatch.Result run(String containerName, String command, Map<String, String> env, Consumer<String> lines) {
+        String key = containerName != null ? containerName : "";
+        ShellSession session = getSession(key, containerName);
+        if (session == null) {
+            return null;
+        }
+        try {
+            return session.tryRun(command, env, lines);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Shell session for container " + key + " failed so falling back to sh steps: " + e, e);
+            markFailed(key);
+            return null;
+        } catch (FailedBuildException e) {
+            markFailed(key);
+            throw e;
+        }
+    }
+
+    protected void markFailed(String key) {
+        synchronized (sessions) {
+            sessions.remove(key);
+            failed.add(key);
+        }
+    }
+
+    protected ShellSession getSession(String key, String containerName) {
+        synchronized (sessions) {
+            if (closed || failed.contains(key)) {
+                return null;
+            }
+            ShellSession session = sessions.get(key);
+            if (session == null || session.isClosed()) {
+                try {
+                    session = opener.open(containerName);
+                    session.setCommandTimeout(commandTimeout);
+                    sessions.put(key, session);
+                } catch (IOException | RuntimeException e) {
+                    LOG.log(Level.WARNING, "Could not open shell session for container " + key + " so using sh steps: " + e, e);
+                    failed.add(key);
+                    return null;
+                }
+            }
+            return session;
+        }
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a command may run in a session
+     */
+    public long getCommandTimeout() {
+        return commandTimeout;
+    }
+
+    public void setCommandTimeout(long commandTimeout) {
+        this.commandTimeout = commandTimeout;
+    }
+
+    @Override
+    public void close() {
+        synchronized (sessions) {
+            closed = true;
+            for (ShellSession session : sessions.values()) {
+                session.close();
+            }
+            sessions.clear();
+        }
+    }
+}
@@ -20,20 +20,19 @@ import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.environments.Environments;
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.pipelines.PipelineConfiguration;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.openshift.api.model.Build;
-import io.fabric8.openshift.api.model.ImageStream;
-import io.fabric8.openshift.api.model.ImageStreamStatus;
-import io.fabric8.openshift.api.model.NamedTagEventList;
-import io.fabric8.openshift.api.model.TagEvent;
-import io.fabric8.openshift.client.DefaultOpenShiftClient;
 import io.fabric8.openshift.client.OpenShiftAPIGroups;
 import io.fabric8.openshift.client.OpenShiftClient;
 import io.fabric8.utils.Strings;
 import jenkins.model.Jenkins;
 import org.apache.commons.beanutils.PropertyUtils;
 import org.jenkinsci.plugins.fabric8.helpers.GitHelper;
+import org.jenkinsci.plugins.fabric8.kubernetes.ConfigMapCache;
+import org.jenkinsci.plugins.fabric8.kubernetes.ImageStreamTagResolver;
+import org.jenkinsci.plugins.fabric8.kubernetes.KubernetesClientPool;
+import org.jenkinsci.plugins.fabric8.kubernetes.PodShellSessionOpener;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 
@@ -43,6 +42,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 
 /*
 import org.csanchez.jenkins.plugins.kubernetes.PodAnnotation;
@@ -50,6 +50,7 @@ import org.csanchez.jenkins.plugins.kubernetes.PodAnnotation;
 
 public class Utils extends CommandSupport {
     private static final long serialVersionUID = 1L;
+    private static final java.util.logging.Logger LOG = java.util.logging.Logger.getLogger(Utils.class.getName());
     public static final String CLIENTS = "clients";
 
     private String branch;
@@ -75,8 +76,45 @@ public class Utils extends CommandSupport {
         return namespace;
     }
 
+    /**
+     * Returns the shared client for this controller; callers must not close it
+     */
     public static KubernetesClient createKubernetesClient() {
-        return new DefaultKubernetesClient();
+        return KubernetesClientPool.getInstance().getKubernetesClient();
+    }
+
+    /**
+     * Creates the shell sessions which exec into the containers of the pod of a Kubernetes agent; commands fall back
+     * to <code>sh</code> steps for any container where the exec fails
+     *
+     * @param namespace the namespace of the pod or null for the default namespace
+     * @return the sessions or null if there is no such pod, such as when the agent is not a Kubernetes pod
+     */
+    public static ShellSessions createPodShellSessions(String podName, String namespace, String directory) {
+        if (Strings.isNullOrBlank(podName)) {
+            return null;
+        }
+        KubernetesClient client = createKubernetesClient();
+        if (Strings.isNullOrBlank(namespace)) {
+            namespace = defaultNamespace(client);
+        }
+        try {
+            if (client.pods().inNamespace(namespace).withName(podName).get() == null) {
+                LOG.warning("No pod " + podName + " in namespace " + namespace + " so not using shell sessions");
+                return null;
+            }
+        } catch (KubernetesClientException e) {
+            LOG.log(Level.WARNING, "Could not find pod " + podName + " in namespace " + namespace + " so not using shell sessions: " + e, e);
+            return null;
+        }
+        return new ShellSessions(new PodShellSessionOpener(client, namespace, podName, directory));
+    }
+
+    /**
+     * Returns the shared OpenShift client for this controller; callers must not close it
+     */
+    public static OpenShiftClient createOpenShiftClient() {
+        return KubernetesClientPool.getInstance().getOpenShiftClient();
     }
 
     public static String getNamespace() {
@@ -127,7 +165,7 @@ public class Utils extends CommandSupport {
     @NonCPS
     public PipelineConfiguration pipelineConfiguration() {
         KubernetesClient kubernetesClient = createKubernetesClient();
-        return PipelineConfiguration.loadPipelineConfiguration(kubernetesClient, defaultNamespace(kubernetesClient));
+        return ConfigMapCache.getInstance().getPipelineConfiguration(kubernetesClient, defaultNamespace(kubernetesClient));
     }
 
     /**
@@ -136,7 +174,7 @@ public class Utils extends CommandSupport {
     @NonCPS
     public PipelineConfiguration pipelineConfiguration(String namespace) {
         KubernetesClient kubernetesClient = createKubernetesClient();
-        return PipelineConfiguration.loadPipelineConfiguration(kubernetesClient, namespace);
+        return ConfigMapCache.getInstance().getPipelineConfiguration(kubernetesClient, namespace);
     }
 
     /**
@@ -174,7 +212,7 @@ public class Utils extends CommandSupport {
      */
     @NonCPS
     public boolean supportsOpenShiftS2I() {
-        OpenShiftClient client = new DefaultOpenShiftClient();
+        OpenShiftClient client = createOpenShiftClient();
         return client.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.IMAGE);
     }
 
@@ -213,9 +251,9 @@ public class Utils extends CommandSupport {
     @NonCPS
     public String getUsersPipelineConfig(final String k) {
         // first lets check if we have the new pipelines configmap in the users home namespace
-        KubernetesClient client = new DefaultKubernetesClient();
+        KubernetesClient client = createKubernetesClient();
         final String ns = getUsersNamespace();
-        ConfigMap r = client.configMaps().inNamespace(ns).withName("fabric8-pipelines").get();
+        ConfigMap r = ConfigMapCache.getInstance().getConfigMap(client, ns, "fabric8-pipelines");
         if (r == null) {
             error("no fabric8-pipelines configmap found in namespace " + ns);
             return null;
@@ -233,9 +271,9 @@ public class Utils extends CommandSupport {
     public String getConfigMap(String ns, final String cm, String key) {
 
         // first lets check if we have the new pipeliens configmap in the users home namespace
-        KubernetesClient client = new DefaultKubernetesClient();
+        KubernetesClient client = createKubernetesClient();
 
-        ConfigMap r = client.configMaps().inNamespace(ns).withName(cm).get();
+        ConfigMap r = ConfigMapCache.getInstance().getConfigMap(client, ns, cm);
         if (r == null) {
             error("no " + cm + " configmap found in namespace " + ns);
             return null;
@@ -261,67 +299,32 @@ public class Utils extends CommandSupport {
 
     @NonCPS
     public String getImageStreamSha(Object imageStreamName) {
-        OpenShiftClient oc = new DefaultOpenShiftClient();
+        OpenShiftClient oc = createOpenShiftClient();
         return findTagSha(oc, (String) imageStreamName, getNamespace());
     }
 
     @NonCPS
     public String findTagSha(OpenShiftClient client, final String imageStreamName, String namespace) {
-        Object currentImageStream = null;
-        for (int i = 0; i < 15; i++) {
-            if (i > 0) {
-                echo("Retrying to find tag on ImageStream " + imageStreamName);
-            }
-            ;
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                echo("interrupted " + e);
-            }
-            ;
-            currentImageStream = client.imageStreams().withName(imageStreamName).get();
-            if (currentImageStream == null) {
-                continue;
-            }
-
-            ImageStreamStatus status = ((ImageStream) currentImageStream).getStatus();
-            if (status == null) {
-                continue;
-            }
-
-            List<NamedTagEventList> tags = status.getTags();
-            if (tags == null || tags.isEmpty()) {
-                continue;
-            }
-
-            // latest tag is the first
-            TAG_EVENT_LIST:
-            for (NamedTagEventList list : tags) {
-                List<TagEvent> items = list.getItems();
-                if (items == null) {
-                    continue TAG_EVENT_LIST;
-                }
-
-                // latest item is the first
-                for (TagEvent item : items) {
-                    String image = item.getImage();
-                    if (image != null && !image.equals("")) {
-                        echo("Found tag on ImageStream " + imageStreamName + " tag: " + image);
-                        return image;
-                    }
-
-                }
+        return findTagSha(client, imageStreamName, namespace, ImageStreamTagResolver.DEFAULT_TIMEOUT);
+    }
 
-            }
+    /**
+     * Watches the ImageStream until it has a tag with an image or the timeout expires
+     */
+    @NonCPS
+    public String findTagSha(OpenShiftClient client, final String imageStreamName, String namespace, long timeoutMillis) {
+        ImageStreamTagResolver.Resolution resolution = ImageStreamTagResolver.resolve(client, namespace, imageStreamName, timeoutMillis);
+        String image = resolution.getImage();
+        if (image != null) {
+            echo("Found tag on ImageStream " + imageStreamName + " tag: " + image);
+            return image;
+        }
 
-            // No image found, even after several retries:
-            if (currentImageStream == null) {
-                error("Could not find a current ImageStream with name " + imageStreamName + " in namespace " + namespace);
-                return null;
-            } else {
-                error("Could not find a tag in the ImageStream " + imageStreamName);
-                return null;
-            }
+        // No image found before the timeout
+        if (resolution.getImageStream() == null) {
+            error("Could not find a current ImageStream with name " + imageStreamName + " in namespace " + namespace);
+        } else {
+            error("Could not find a tag in the ImageStream " + imageStreamName);
         }
         return null;
     }
@@ -332,7 +335,6 @@ public class Utils extends CommandSupport {
         if (flow.isOpenShift()) {
             String buildName = getValidOpenShiftBuildName();
             echo("Adding annotation \'" + annotation + ": " + value + "\' to Build " + buildName);
-            OpenShiftClient oClient = new DefaultOpenShiftClient();
             final String usersNamespace = getUsersNamespace();
             echo("looking for " + buildName + " in namespace " + usersNamespace);
         } else {
@@ -429,7 +431,7 @@ public class Utils extends CommandSupport {
         if (flow.isOpenShift()) {
             echo("Looking for matching Build " + buildName);
         }
-        OpenShiftClient oClient = new DefaultOpenShiftClient();
+        OpenShiftClient oClient = createOpenShiftClient();
         String usersNamespace = getUsersNamespace();
         Build build = oClient.builds().inNamespace(usersNamespace).withName(buildName).get();
         return build != null;
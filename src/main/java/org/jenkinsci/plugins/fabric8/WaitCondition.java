@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8;
+
+import java.io.Closeable;
+import java.io.Serializable;
+
+/**
+ * A condition which is checked repeatedly until it returns true. Conditions are serialized with the build so that
+ * they can be checked asynchronously on the controller without holding an executor
+ */
+public interface WaitCondition extends Serializable {
+    /**
+     * Returns true if the condition has been met
+     *
+     * @param step used to log and to access the build environment
+     */
+    Boolean check(CommandSupport step) throws Exception;
+
+    /**
+     * Registers a listener to be invoked when the condition may have changed, such as when a webhook is received, so
+     * that it is checked again straight away rather than at the next scheduled check
+     *
+     * @return the subscription to close once the wait is over or null if the condition can only be polled
+     */
+    default Closeable subscribe(Runnable listener) {
+        return null;
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8;
+
+import io.fabric8.utils.Strings;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how long {@link CommandSupport#waitUntil(WaitStrategy, long, java.util.concurrent.Callable)} sleeps between
+ * each check of a condition
+ */
+public abstract class WaitStrategy implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String FIXED = "fixed";
+    public static final String EXPONENTIAL = "exponential";
+    public static final String ADAPTIVE = "adaptive";
+
+    public static final long DEFAULT_INTERVAL = 250;
+    public static final long DEFAULT_MAX_INTERVAL = 60 * 1000;
+    public static final double DEFAULT_MULTIPLIER = 2.0;
+
+    /**
+     * Returns the number of milliseconds to sleep before the next check
+     *
+     * @param attempt        the number of checks which have failed so far, starting at 1
+     * @param remainingMillis the number of milliseconds until the deadline or -1 if there is no deadline
+     */
+    public abstract long nextDelay(int attempt, long remainingMillis);
+
+    /**
+     * Polls at the same interval forever
+     */
+    public static WaitStrategy fixed(long interval) {
+        return new Fixed(interval);
+    }
+
+    /**
+     * Doubles the interval after each failed check up to the maximum interval; each delay is picked at random between
+     * the initial interval and the current interval so that concurrent builds spread out their checks
+     */
+    public static WaitStrategy exponential(long initialInterval, long maxInterval) {
+        return new Exponential(initialInterval, maxInterval, DEFAULT_MULTIPLIER);
+    }
+
+    /**
+     * Backs off exponentially but never sleeps for more than half of the time remaining before the deadline so that
+     * the condition is still checked just before the deadline
+     */
+    public static WaitStrategy adaptive(long initialInterval, long maxInterval) {
+        return new Adaptive(initialInterval, maxInterval, DEFAULT_MULTIPLIER);
+    }
+
+    /**
+     * Creates a strategy from its name as used in the step <code>Arguments</code>; defaulting to {@link #FIXED}
+     */
+    public static WaitStrategy create(String name, long interval, long maxInterval) {
+        if (interval <= 0) {
+            interval = DEFAULT_INTERVAL;
+        }
+        if (maxInterval <= 0) {
+            maxInterval = DEFAULT_MAX_INTERVAL;
+        }
+        if (Strings.isNullOrBlank(name) || FIXED.equalsIgnoreCase(name)) {
+            return fixed(interval);
+        } else if (EXPONENTIAL.equalsIgnoreCase(name)) {
+            return exponential(interval, maxInterval);
+        } else if (ADAPTIVE.equalsIgnoreCase(name)) {
+            return adaptive(interval, maxInterval);
+        }
+        throw new FailedBuildException("Unknown wait strategy '" + name + "'. Expected one of " + FIXED + ", " + EXPONENTIAL + " or " + ADAPTIVE);
+    }
+
+    public static class Fixed extends WaitStrategy {
+        private static final long serialVersionUID = 1L;
+
+        private final long interval;
+
+        public Fixed(long interval) {
+            this.interval = interval;
+        }
+
+        @Override
+        public String toString() {
+            return "Fixed{" + interval + "ms}";
+        }
+
+        @Override
+        public long nextDelay(int attempt, long remainingMillis) {
+            return interval;
+        }
+    }
+
+    public static class Exponential extends WaitStrategy {
+        private static final long serialVersionUID = 1L;
+
+        private final long initialInterval;
+        private final long maxInterval;
+        private final double multiplier;
+
+        public Exponential(long initialInterval, long maxInterval, double multiplier) {
+            this.initialInterval = initialInterval;
+            this.maxInterval = Math.max(initialInterval, maxInterval);
+            this.multiplier = multiplier;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "{" + initialInterval + "ms..." + maxInterval + "ms}";
+        }
+
+        @Override
+        public long nextDelay(int attempt, long remainingMillis) {
+            double delay = initialInterval * Math.pow(multiplier, Math.max(0, attempt - 1));
+            long ceiling = (long) Math.min(maxInterval, delay);
+            // jitter so that concurrent builds do not all poll at the same time; unlike full jitter the delay
+            // never drops below the initial interval so a remote server is never polled faster than configured
+            if (ceiling > initialInterval) {
+                return ThreadLocalRandom.current().nextLong(initialInterval, ceiling + 1);
+            }
+            return ceiling;
+        }
+
+        public long getInitialInterval() {
+            return initialInterval;
+        }
+
+        public long getMaxInterval() {
+            return maxInterval;
+        }
+    }
+
+    public static class Adaptive extends Exponential {
+        private static final long serialVersionUID = 1L;
+
+        public Adaptive(long initialInterval, long maxInterval, double multiplier) {
+            super(initialInterval, maxInterval, multiplier);
+        }
+
+        @Override
+        public long nextDelay(int attempt, long remainingMillis) {
+            long delay = super.nextDelay(attempt, remainingMillis);
+            if (remainingMillis >= 0) {
+                delay = Math.min(delay, Math.max(getInitialInterval(), remainingMillis / 2));
+            }
+            return delay;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.fabric8.utils.Strings;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Copies images between docker registries using the registry API rather than pulling and pushing them through a
+ * docker daemon.
+ * <p>
+ * Only the blobs which are missing in the target repository are transferred; within the same registry they are
+ * mounted from the source repository and otherwise streamed from the source registry to the target registry
+ * without being written to disk.
+ * <p>
+ * If the target tag already points at the same manifest digest as the source then nothing is copied; the number of
+ * copies or pushes avoided and the bytes saved are recorded in {@link #getSkipped()} and {@link #getBytesSaved()}.
+ */
+public class ImageCopier {
+    private static final Logger LOG = Logger.getLogger(ImageCopier.class.getName());
+
+    /**
+     * Copies images by running <code>docker pull</code>, <code>docker tag</code> and <code>docker push</code>
+     */
+    public static final String DOCKER = "docker";
+
+    /**
+     * Copies images using the docker registry API
+     */
+    public static final String REGISTRY = "registry";
+
+    private final Set<String> insecureRegistries = new LinkedHashSet<>();
+    private final Map<String, String> credentials = new ConcurrentHashMap<>();
+    private final Map<String, RegistryClient> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * Returns true if the copy method of a step means images should be copied with the registry API
+     */
+    public static boolean isRegistryCopy(String copyMethod) {
+        return REGISTRY.equalsIgnoreCase(copyMethod);
+    }
+
+    /**
+     * Marks the registry host and port as only supporting plain http
+     */
+    public ImageCopier insecureRegistry(String host) {
+        insecureRegistries.add(host);
+        return this;
+    }
+
+    /**
+     * Authenticates to the registry host and port with basic auth, such as with a Jenkins credential bound by
+     * <code>withCredentials</code>; registries without credentials are accessed anonymously
+     */
+    public ImageCopier credentials(String host, String username, String password) {
+        if (Strings.isNotBlank(host) && Strings.isNotBlank(username) && password != null) {
+            credentials.put(host, Base64.encodeBase64String((username + ":" + password).getBytes(StandardCharsets.UTF_8)));
+        }
+        return this;
+    }
+
+    public Result copy(String source, String target) throws IOException {
+        return copy(ImageReference.parse(source), ImageReference.parse(target));
+    }
+
+    public Result copy(ImageReference source, ImageReference target) throws IOException {
+        RegistryClient sourceClient = getClient(source);
+        RegistryClient targetClient = getClient(target);
+        RegistryClient.Manifest manifest = sourceClient.getManifest(source.getRepository(), source.getTag());
+        if (manifest == null) {
+            throw new IOException("Image " + source + " does not exist");
+        }
+        Result result = new Result(source, target);
+        String targetDigest = targetClient.getManifestDigest(target.getRepository(), target.getTag());
+        if (manifest.getDigest().equals(targetDigest)) {
+            result.unchanged = true;
+            recordSkipped(imageSize(sourceClient, source, manifest));
+            return result;
+        }
+        if (manifest.isList()) {
+            for (JsonNode child : manifest.getJson().path("manifests")) {
+                String digest = child.path("digest").asText();
+                RegistryClient.Manifest childManifest = sourceClient.getManifest(source.getRepository(), digest);
+                if (childManifest == null) {
+                    throw new IOException("Manifest " + digest + " of image " + source + " does not exist");
+                }
+                copyImage(sourceClient, source, targetClient, target, childManifest, digest, result);
+            }
+            targetClient.putManifest(target.getRepository(), target.getTag(), manifest);
+        } else {
+            copyImage(sourceClient, source, targetClient, target, manifest, target.getTag(), result);
+        }
+        LOG.fine("Copied " + result);
+        return result;
+    }
+
+    /**
+     * Checks with manifest HEAD and GET requests whether the target tag already points at the same image as the source
+     * so that pushing it again can be avoided
+     *
+     * @return the total size of the image blobs if the target is unchanged or -1 if it needs to be pushed
+     */
+    public long sizeIfUnchanged(ImageReference source, ImageReference target) throws IOException {
+        String targetDigest = getClient(target).getManifestDigest(target.getRepository(), target.getTag());
+        if (targetDigest == null) {
+            return -1;
+        }
+        RegistryClient sourceClient = getClient(source);
+        RegistryClient.Manifest manifest = sourceClient.getManifest(source.getRepository(), source.getTag());
+        if (manifest == null || !targetDigest.equals(manifest.getDigest())) {
+            return -1;
+        }
+        return imageSize(sourceClient, source, manifest);
+    }
+
+    /**
+     * Returns true if the target tag already points at the same image as the source in which case the skipped push is
+     * recorded. Any failure to check is logged and treated as the image having changed
+     */
+    public boolean skipIfUnchanged(String source, String target) {
+        try {
+            long size = sizeIfUnchanged(ImageReference.parse(source), ImageReference.parse(target));
+            if (size >= 0) {
+                recordSkipped(size);
+                return true;
+            }
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Could not compare " + source + " with " + target + ": " + e, e);
+        }
+        return false;
+    }
+
+    /**
+     * Returns a summary of the pushes avoided because the target was unchanged
+     */
+    public String getSavings() {
+        return "Avoided " + skipped + " pushes of unchanged images saving " + bytesSaved + " bytes";
+    }
+
+    /**
+     * Returns the number of copies or pushes which were skipped as the target was unchanged
+     */
+    public int getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Returns the total size of the images which did not need to be copied or pushed
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    protected void recordSkipped(long size) {
+        skipped.incrementAndGet();
+        bytesSaved.addAndGet(Math.max(0, size));
+    }
+
+    /**
+     * Returns the total size of the config and layers of the image or of all the images in a manifest list
+     */
+    protected long imageSize(RegistryClient client, ImageReference image, RegistryClient.Manifest manifest) throws IOException {
+        JsonNode json = manifest.getJson();
+        long answer = 0;
+        if (manifest.isList()) {
+            for (JsonNode child : json.path("manifests")) {
+                RegistryClient.Manifest childManifest = client.getManifest(image.getRepository(), child.path("digest").asText());
+                if (childManifest != null) {
+                    answer += imageSize(client, image, childManifest);
+                }
+            }
+            return answer;
+        }
+        answer += json.path("config").path("size").asLong(0);
+        for (JsonNode layer : json.path("layers")) {
+            answer += layer.path("size").asLong(0);
+        }
+        return answer;
+    }
+
+    protected void copyImage(RegistryClient sourceClient, ImageReference source, RegistryClient targetClient, ImageReference target,
+                             RegistryClient.Manifest manifest, String reference, Result result) throws IOException {
+        JsonNode json = manifest.getJson();
+        Set<String> digests = new LinkedHashSet<>();
+        digests.add(json.path("config").path("digest").asText());
+        for (JsonNode layer : json.path("layers")) {
+            digests.add(layer.path("digest").asText());
+        }
+        for (String digest : digests) {
+            copyBlob(sourceClient, source, targetClient, target, digest, result);
+        }
+        targetClient.putManifest(target.getRepository(), reference, manifest);
+    }
+
+    protected void copyBlob(RegistryClient sourceClient, ImageReference source, RegistryClient targetClient, ImageReference target,
+                            String digest, Result result) throws IOException {
+        String targetRepository = target.getRepository();
+        if (targetClient.hasBlob(targetRepository, digest)) {
+            result.existing++;
+            return;
+        }
+        String location = null;
+        if (source.isSameRegistry(target)) {
+            location = targetClient.mountBlob(targetRepository, digest, source.getRepository());
+            if (location == null) {
+                result.mounted++;
+                return;
+            }
+        }
+        if (location == null) {
+            location = targetClient.startUpload(targetRepository);
+        }
+        RegistryClient.Blob blob = sourceClient.openBlob(source.getRepository(), digest);
+        try (InputStream in = new CountingInputStream(blob.getInputStream(), result)) {
+            targetClient.uploadBlob(targetRepository, location, digest, in, blob.getLength());
+        }
+        result.copied++;
+    }
+
+    protected RegistryClient getClient(ImageReference image) throws IOException {
+        String host = image.getApiHost();
+        RegistryClient client = clients.get(host);
+        if (client == null) {
+            String auth = credentials.get(host);
+            if (auth == null) {
+                auth = credentials.get(image.getRegistry());
+            }
+            client = new RegistryClient(host, insecureRegistries.contains(host) || insecureRegistries.contains(image.getRegistry()), auth);
+            clients.put(host, client);
+        }
+        return client;
+    }
+
+    /**
+     * The blobs which needed to be transferred for a copy
+     */
+    public static class Result {
+        private final ImageReference source;
+        private final ImageReference target;
+        private int existing;
+        private int mounted;
+        private int copied;
+        private long bytesCopied;
+        private boolean unchanged;
+
+        public Result(ImageReference source, ImageReference target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        public String toString() {
+            if (unchanged) {
+                return source + " to " + target + ": already up to date";
+            }
+            return source + " to " + target + ": " + existing + " blobs already present, " + mounted + " mounted, "
+                    + copied + " copied (" + bytesCopied + " bytes)";
+        }
+
+        public ImageReference getSource() {
+            return source;
+        }
+
+        public ImageReference getTarget() {
+            return target;
+        }
+
+        /**
+         * Returns the number of blobs which were already in the target repository
+         */
+        public int getExisting() {
+            return existing;
+        }
+
+        /**
+         * Returns the number of blobs mounted from the source repository in the same registry
+         */
+        public int getMounted() {
+            return mounted;
+        }
+
+        /**
+         * Returns the number of blobs streamed from the source registry
+         */
+        public int getCopied() {
+            return copied;
+        }
+
+        public long getBytesCopied() {
+            return bytesCopied;
+        }
+
+        /**
+         * Returns true if the target tag already pointed at the same manifest so nothing was copied
+         */
+        public boolean isUnchanged() {
+            return unchanged;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final Result result;
+
+        CountingInputStream(InputStream in, Result result) {
+            super(in);
+            this.result = result;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int answer = super.read();
+            if (answer >= 0) {
+                result.bytesCopied++;
+            }
+            return answer;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int answer = super.read(b, off, len);
+            if (answer > 0) {
+                result.bytesCopied += answer;
+            }
+            return answer;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.docker;
+
+import java.io.Serializable;
+
+/**
+ * A reference to a docker image of the form <code>[registry/]repository[:tag]</code> such as
+ * <code>fabric8-docker-registry:80/fabric8/jenkins:1.0.1</code>.
+ * <p>
+ * Images without a registry are on docker hub and single name repositories on docker hub are in the
+ * <code>library</code> namespace
+ */
+public class ImageReference implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String DOCKER_HUB = "docker.io";
+    public static final String DOCKER_HUB_API = "registry-1.docker.io";
+    public static final String LATEST = "latest";
+
+    private final String registry;
+    private final String repository;
+    private final String tag;
+
+    public ImageReference(String registry, String repository, String tag) {
+        this.registry = registry;
+        this.repository = repository;
+        this.tag = tag;
+    }
+
+    public static ImageReference parse(String image) {
+        String registry = DOCKER_HUB;
+        String remaining = image;
+        int slash = image.indexOf('/');
+        if (slash > 0) {
+            String first = image.substring(0, slash);
+            // the first part is a registry if it looks like a host name
+            if (first.contains(".") || first.contains(":") || first.equals("localhost")) {
+                registry = first;
+                remaining = image.substring(slash + 1);
+            }
+        }
+        String tag = LATEST;
+        int colon = remaining.lastIndexOf(':');
+        if (colon > remaining.lastIndexOf('/')) {
+            tag = remaining.substring(colon + 1);
+            remaining = remaining.substring(0, colon);
+        }
+        if (isDockerHub(registry) && !remaining.contains("/")) {
+            remaining = "library/" + remaining;
+        }
+        return new ImageReference(registry, remaining, tag);
+    }
+
+    protected static boolean isDockerHub(String registry) {
+        return DOCKER_HUB.equals(registry) || "index.docker.io".equals(registry) || DOCKER_HUB_API.equals(registry);
+    }
+
+    @Override
+    public String toString() {
+        return registry + "/" + repository + ":" + tag;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ImageReference that = (ImageReference) o;
+        return registry.equals(that.registry) && repository.equals(that.repository) && tag.equals(that.tag);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * registry.hashCode() + repository.hashCode()) + tag.hashCode();
+    }
+
+    /**
+     * Returns a reference to the same repository with a different tag
+     */
+    public ImageReference withTag(String newTag) {
+        return new ImageReference(registry, repository, newTag);
+    }
+
+    /**
+     * Returns true if both images are in the same registry so that blobs can be mounted between them
+     */
+    public boolean isSameRegistry(ImageReference other) {
+        return getApiHost().equals(other.getApiHost());
+    }
+
+    /**
+     * Returns the host and optional port to use for the registry API
+     */
+    public String getApiHost() {
+        return isDockerHub(registry) ? DOCKER_HUB_API : registry;
+    }
+
+    public String getRegistry() {
+        return registry;
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+}
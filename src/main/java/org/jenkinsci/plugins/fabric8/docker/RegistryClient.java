@@ -0,0 +1,425 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.docker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.utils.IOHelpers;
+import io.fabric8.utils.Strings;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal <a href="https://docs.docker.com/registry/spec/api/">Docker Registry HTTP API V2</a> client which can
+ * read and write manifests and check, mount, download and upload blobs.
+ * <p>
+ * Requests are authenticated with basic auth or with bearer tokens obtained from the realm in the
+ * <code>WWW-Authenticate</code> challenge; the tokens are cached per repository.
+ */
+public class RegistryClient {
+    private static final Logger LOG = Logger.getLogger(RegistryClient.class.getName());
+
+    public static final String MANIFEST_V2 = "application/vnd.docker.distribution.manifest.v2+json";
+    public static final String MANIFEST_LIST_V2 = "application/vnd.docker.distribution.manifest.list.v2+json";
+    public static final String OCI_MANIFEST = "application/vnd.oci.image.manifest.v1+json";
+    public static final String OCI_INDEX = "application/vnd.oci.image.index.v1+json";
+    public static final String ACCEPT_MANIFESTS = MANIFEST_V2 + ", " + MANIFEST_LIST_V2 + ", " + OCI_MANIFEST + ", " + OCI_INDEX;
+
+    public static final int TIMEOUT = (int) TimeUnit.SECONDS.toMillis(60);
+
+    private static final Pattern CHALLENGE_PARAMETER = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String host;
+    private final URL baseUrl;
+    private final String basicAuth;
+    private final Map<String, String> authorizations = new ConcurrentHashMap<>();
+
+    /**
+     * @param host      the host and optional port of the registry
+     * @param insecure  whether to use plain http
+     * @param basicAuth the base64 encoded <code>user:password</code> or null for anonymous access
+     */
+    public RegistryClient(String host, boolean insecure, String basicAuth) throws IOException {
+        this.host = host;
+        this.baseUrl = new URL((insecure ? "http://" : "https://") + host + "/");
+        this.basicAuth = basicAuth;
+    }
+
+    @Override
+    public String toString() {
+        return "RegistryClient{" + baseUrl + '}';
+    }
+
+    /**
+     * Returns the manifest for the tag or digest or null if it does not exist
+     */
+    public Manifest getManifest(String repository, String reference) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Accept", ACCEPT_MANIFESTS);
+        HttpURLConnection connection = send("GET", "v2/" + repository + "/manifests/" + reference, repository, headers);
+        int code = connection.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+            drain(connection);
+            return null;
+        }
+        checkResponse(connection, code, "get manifest " + repository + ":" + reference);
+        byte[] body = readFully(connection);
+        String digest = connection.getHeaderField("Docker-Content-Digest");
+        if (Strings.isNullOrBlank(digest)) {
+            digest = "sha256:" + DigestUtils.sha256Hex(body);
+        }
+        String contentType = connection.getContentType();
+        JsonNode json = mapper.readTree(body);
+        String mediaType = json.path("mediaType").asText(null);
+        if (Strings.isNullOrBlank(contentType) || !contentType.contains("+json") || contentType.contains("prettyjws")) {
+            contentType = mediaType;
+        }
+        if (json.path("schemaVersion").asInt() != 2) {
+            throw new IOException("Unsupported manifest schema version for " + repository + ":" + reference + " only version 2 manifests can be copied");
+        }
+        return new Manifest(contentType, digest, body, json);
+    }
+
+    /**
+     * Returns the digest of the manifest for the tag from a HEAD request or null if it does not exist
+     */
+    public String getManifestDigest(String repository, String reference) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Accept", ACCEPT_MANIFESTS);
+        HttpURLConnection connection = send("HEAD", "v2/" + repository + "/manifests/" + reference, repository, headers);
+        int code = connection.getResponseCode();
+        drain(connection);
+        if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+            return null;
+        }
+        checkResponse(connection, code, "check manifest " + repository + ":" + reference);
+        return connection.getHeaderField("Docker-Content-Digest");
+    }
+
+    public void putManifest(String repository, String reference, Manifest manifest) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", manifest.getContentType());
+        HttpURLConnection connection = send("PUT", "v2/" + repository + "/manifests/" + reference, repository, headers, manifest.getBody());
+        checkResponse(connection, connection.getResponseCode(), "put manifest " + repository + ":" + reference);
+        drain(connection);
+    }
+
+    public boolean hasBlob(String repository, String digest) throws IOException {
+        HttpURLConnection connection = send("HEAD", "v2/" + repository + "/blobs/" + digest, repository, null);
+        int code = connection.getResponseCode();
+        drain(connection);
+        if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+            return false;
+        }
+        checkResponse(connection, code, "check blob " + digest + " in " + repository);
+        return true;
+    }
+
+    /**
+     * Tries to mount the blob from another repository in this registry
+     *
+     * @return null if the blob was mounted or the location to upload the blob to if the registry could not mount it
+     */
+    public String mountBlob(String repository, String digest, String fromRepository) throws IOException {
+        String path = "v2/" + repository + "/blobs/uploads/?mount=" + encode(digest) + "&from=" + encode(fromRepository);
+        HttpURLConnection connection = send("POST", path, repository, null, new byte[0], "repository:" + fromRepository + ":pull");
+        int code = connection.getResponseCode();
+        drain(connection);
+        if (code == HttpURLConnection.HTTP_CREATED) {
+            return null;
+        }
+        checkResponse(connection, code, "mount blob " + digest + " from " + fromRepository + " into " + repository);
+        return connection.getHeaderField("Location");
+    }
+
+    /**
+     * Starts an upload returning the location to upload the blob to
+     */
+    public String startUpload(String repository) throws IOException {
+        HttpURLConnection connection = send("POST", "v2/" + repository + "/blobs/uploads/", repository, null, new byte[0]);
+        checkResponse(connection, connection.getResponseCode(), "start upload to " + repository);
+        drain(connection);
+        return connection.getHeaderField("Location");
+    }
+
+    /**
+     * Uploads the blob to the location returned by {@link #startUpload(String)} in a single request
+     */
+    public void uploadBlob(String repository, String location, String digest, InputStream in, long length) throws IOException {
+        URL url = new URL(baseUrl, location);
+        String spec = url.toString() + (url.getQuery() == null ? "?" : "&") + "digest=" + encode(digest);
+        HttpURLConnection connection = open("PUT", spec, repository);
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+        if (length >= 0) {
+            connection.setFixedLengthStreamingMode(length);
+        } else {
+            connection.setChunkedStreamingMode(64 * 1024);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            IOHelpers.copy(in, out);
+        }
+        checkResponse(connection, connection.getResponseCode(), "upload blob " + digest + " to " + repository);
+        drain(connection);
+    }
+
+    /**
+     * Opens a stream of the blob; following any redirect to external storage without our credentials
+     */
+    public Blob openBlob(String repository, String digest) throws IOException {
+        HttpURLConnection connection = send("GET", "v2/" + repository + "/blobs/" + digest, repository, null);
+        int code = connection.getResponseCode();
+        for (int redirects = 0; isRedirect(code) && redirects < 5; redirects++) {
+            String location = connection.getHeaderField("Location");
+            drain(connection);
+            connection = (HttpURLConnection) new URL(connection.getURL(), location).openConnection();
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+            connection.setInstanceFollowRedirects(false);
+            code = connection.getResponseCode();
+        }
+        checkResponse(connection, code, "get blob " + digest + " from " + repository);
+        return new Blob(connection.getInputStream(), connection.getContentLengthLong());
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected HttpURLConnection send(String method, String path, String repository, Map<String, String> headers, String... extraScopes) throws IOException {
+        return send(method, path, repository, headers, null, extraScopes);
+    }
+
+    /**
+     * Sends the request and if the registry challenges us then authenticates and sends it again
+     */
+    protected HttpURLConnection send(String method, String path, String repository, Map<String, String> headers, byte[] body, String... extraScopes) throws IOException {
+        String spec = new URL(baseUrl, path).toString();
+        HttpURLConnection connection = sendOnce(method, spec, repository, headers, body);
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_UNAUTHORIZED) {
+            String challenge = connection.getHeaderField("WWW-Authenticate");
+            drain(connection);
+            authenticate(repository, challenge, extraScopes);
+            connection = sendOnce(method, spec, repository, headers, body);
+        }
+        return connection;
+    }
+
+    protected HttpURLConnection sendOnce(String method, String spec, String repository, Map<String, String> headers, byte[] body) throws IOException {
+        HttpURLConnection connection = open(method, spec, repository);
+        if (headers != null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                connection.setRequestProperty(entry.getKey(), entry.getValue());
+            }
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        return connection;
+    }
+
+    protected HttpURLConnection open(String method, String spec, String repository) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(spec).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        connection.setInstanceFollowRedirects(false);
+        String authorization = authorizations.get(repository);
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+        return connection;
+    }
+
+    protected void authenticate(String repository, String challenge, String... extraScopes) throws IOException {
+        if (challenge == null) {
+            throw new IOException("Registry " + host + " returned 401 without a WWW-Authenticate challenge");
+        }
+        if (challenge.regionMatches(true, 0, "Basic", 0, 5)) {
+            if (basicAuth == null) {
+                throw new IOException("Registry " + host + " requires credentials for " + repository);
+            }
+            authorizations.put(repository, "Basic " + basicAuth);
+            return;
+        }
+        Map<String, String> parameters = new LinkedHashMap<>();
+        Matcher matcher = CHALLENGE_PARAMETER.matcher(challenge);
+        while (matcher.find()) {
+            parameters.put(matcher.group(1), matcher.group(2));
+        }
+        String realm = parameters.get("realm");
+        if (realm == null) {
+            throw new IOException("Unsupported WWW-Authenticate challenge from " + host + ": " + challenge);
+        }
+        StringBuilder tokenUrl = new StringBuilder(realm).append(realm.contains("?") ? "&" : "?");
+        if (parameters.containsKey("service")) {
+            tokenUrl.append("service=").append(encode(parameters.get("service"))).append("&");
+        }
+        tokenUrl.append("scope=").append(encode("repository:" + repository + ":pull,push"));
+        for (String scope : extraScopes) {
+            tokenUrl.append("&scope=").append(encode(scope));
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(tokenUrl.toString()).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        if (basicAuth != null) {
+            connection.setRequestProperty("Authorization", "Basic " + basicAuth);
+        }
+        checkResponse(connection, connection.getResponseCode(), "get token from " + realm);
+        JsonNode json = mapper.readTree(readFully(connection));
+        String token = json.path("token").asText(json.path("access_token").asText(null));
+        if (token == null) {
+            throw new IOException("No token returned from " + realm);
+        }
+        LOG.fine("Authenticated with " + host + " for " + repository);
+        authorizations.put(repository, "Bearer " + token);
+    }
+
+    protected static void checkResponse(HttpURLConnection connection, int code, String operation) throws IOException {
+        if (code < 200 || code >= 300) {
+            String message = "";
+            InputStream errorStream = connection.getErrorStream();
+            if (errorStream != null) {
+                message = ": " + IOHelpers.readFully(errorStream);
+            }
+            throw new IOException("Failed to " + operation + " on " + connection.getURL().getHost() + " status " + code + message);
+        }
+    }
+
+    protected static byte[] readFully(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            IOHelpers.copy(in, buffer);
+            return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * Reads any response body so that the connection can be reused
+     */
+    protected static void drain(HttpURLConnection connection) {
+        try {
+            InputStream in = connection.getResponseCode() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if (in != null) {
+                try {
+                    byte[] buffer = new byte[8192];
+                    while (in.read(buffer) >= 0) {
+                        // discard
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    protected static boolean isRedirect(int code) {
+        return code == HttpURLConnection.HTTP_MOVED_PERM || code == HttpURLConnection.HTTP_MOVED_TEMP
+                || code == HttpURLConnection.HTTP_SEE_OTHER || code == 307 || code == 308;
+    }
+
+    protected static String encode(String value) throws IOException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
+    /**
+     * An image manifest or manifest list
+     */
+    public static class Manifest {
+        private final String contentType;
+        private final String digest;
+        private final byte[] body;
+        private final JsonNode json;
+
+        public Manifest(String contentType, String digest, byte[] body, JsonNode json) {
+            this.contentType = contentType;
+            this.digest = digest;
+            this.body = body;
+            this.json = json;
+        }
+
+        /**
+         * Returns true if this is a list of manifests for different platforms
+         */
+        public boolean isList() {
+            return MANIFEST_LIST_V2.equals(contentType) || OCI_INDEX.equals(contentType);
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public JsonNode getJson() {
+            return json;
+        }
+    }
+
+    /**
+     * The content of a blob being downloaded
+     */
+    public static class Blob {
+        private final InputStream inputStream;
+        private final long length;
+
+        public Blob(InputStream inputStream, long length) {
+            this.inputStream = inputStream;
+            this.length = length;
+        }
+
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+
+        /**
+         * Returns the size in bytes or -1 if it is not known
+         */
+        public long getLength() {
+            return length;
+        }
+    }
+}
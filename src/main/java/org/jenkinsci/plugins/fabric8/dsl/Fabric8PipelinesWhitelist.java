@@ -39,6 +39,17 @@ public class Fabric8PipelinesWhitelist extends Whitelist {
             "org.jenkinsci.plugins.fabric8.steps"
     ));
 
+    /**
+     * Individual classes from packages which also contain classes that should not be exposed to sandboxed scripts
+     */
+    private Set<String> validClasses = new HashSet<>(Arrays.asList(
+            "org.jenkinsci.plugins.fabric8.docker.ImageCopier",
+            "org.jenkinsci.plugins.fabric8.docker.ImageCopier$Result",
+            "org.jenkinsci.plugins.fabric8.docker.ImageReference",
+            "org.jenkinsci.plugins.fabric8.maven.StagingReleases",
+            "org.jenkinsci.plugins.fabric8.maven.StagingRepositories"
+    ));
+
     @Override
     public boolean permitsMethod(@Nonnull Method method, @Nonnull Object o, @Nonnull Object[] objects) {
         return permitClass(method.getDeclaringClass());
@@ -75,6 +86,6 @@ public class Fabric8PipelinesWhitelist extends Whitelist {
     }
 
     protected boolean permitClass(Class<?> clazz) {
-        return validPackages.contains(clazz.getPackage().getName());
+        return validPackages.contains(clazz.getPackage().getName()) || validClasses.contains(clazz.getName());
     }
 }
@@ -0,0 +1,340 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.dsl;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.fabric8.CommandSupport;
+import org.jenkinsci.plugins.fabric8.Fabric8Commands;
+import org.jenkinsci.plugins.fabric8.FailedBuildException;
+import org.jenkinsci.plugins.fabric8.Logger;
+import org.jenkinsci.plugins.fabric8.ShellFacade;
+import org.jenkinsci.plugins.fabric8.WaitCondition;
+import org.jenkinsci.plugins.fabric8.WaitStrategy;
+import org.jenkinsci.plugins.fabric8.WaitTimeoutException;
+import org.jenkinsci.plugins.fabric8.support.WaitScheduler;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An asynchronous step which checks a {@link WaitCondition} on the controller using the {@link WaitScheduler}
+ * and resumes the pipeline with true when the condition is met or fails with a {@link WaitTimeoutException}
+ * when the timeout expires.
+ * <p>
+ * This is used by the {@link org.jenkinsci.plugins.fabric8.WaitFacade} injected into steps so that long waits, such as
+ * waiting for an artifact to sync to maven central, do not hold an executor or a CPS VM thread. Conditions which
+ * support {@link WaitCondition#subscribe(Runnable)} are checked again as soon as they are notified.
+ * <p>
+ * Conditions are checked on the {@link WaitScheduler#getBlockingExecutor()}; any shell commands they run are
+ * launched directly on the node of the enclosing {@code node} or {@code container} block rather than via {@code sh}
+ * steps, which can only be invoked from the pipeline itself.
+ */
+public class WaitUntilStep extends Step {
+    private final WaitCondition condition;
+    private final WaitStrategy strategy;
+    private final long timeout;
+
+    public WaitUntilStep(WaitCondition condition, WaitStrategy strategy, long timeout) {
+        this.condition = condition;
+        this.strategy = strategy != null ? strategy : WaitStrategy.fixed(WaitStrategy.DEFAULT_INTERVAL);
+        this.timeout = timeout;
+    }
+
+    @Override
+    public StepExecution start(StepContext context) throws Exception {
+        return new Execution(context, condition, strategy, timeout);
+    }
+
+    public WaitCondition getCondition() {
+        return condition;
+    }
+
+    public WaitStrategy getStrategy() {
+        return strategy;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public static class Execution extends StepExecution {
+        private static final long serialVersionUID = 1L;
+
+        private final WaitCondition condition;
+        private final WaitStrategy strategy;
+        private final long timeout;
+        private final long endTime;
+        private volatile int attempt;
+        private volatile String lastFailure;
+        private transient volatile boolean done;
+        private transient volatile boolean woken;
+        private transient volatile ScheduledFuture<?> task;
+        private transient Closeable subscription;
+        private transient CommandSupport support;
+
+        public Execution(StepContext context, WaitCondition condition, WaitStrategy strategy, long timeout) {
+            super(context);
+            this.condition = condition;
+            this.strategy = strategy;
+            this.timeout = timeout;
+            this.endTime = timeout > 0 ? System.currentTimeMillis() + timeout : 0L;
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            subscribe();
+            schedule(0);
+            return false;
+        }
+
+        @Override
+        public void onResume() {
+            if (!done) {
+                subscribe();
+                schedule(0);
+            }
+        }
+
+        @Override
+        public void stop(Throwable cause) throws Exception {
+            finish();
+            ScheduledFuture<?> current = task;
+            if (current != null) {
+                current.cancel(false);
+            }
+            getContext().onFailure(cause);
+        }
+
+        @Override
+        public String getStatus() {
+            return "waiting for " + condition + " after " + attempt + " checks using " + strategy;
+        }
+
+        protected void schedule(long delay) {
+            // the timer only hands the check off as the condition may block on a remote server
+            task = WaitScheduler.get().schedule(() -> WaitScheduler.getBlockingExecutor().execute(this::check), delay, TimeUnit.MILLISECONDS);
+        }
+
+        protected void subscribe() {
+            try {
+                subscription = condition.subscribe(this::wakeup);
+            } catch (Exception e) {
+                // lets just poll
+            }
+        }
+
+        /**
+         * Checks the condition straight away rather than waiting for the next scheduled check
+         */
+        protected void wakeup() {
+            if (done) {
+                return;
+            }
+            woken = true;
+            ScheduledFuture<?> current = task;
+            // if the check is running it will see the woken flag when it schedules the next one
+            if (current != null && current.cancel(false)) {
+                schedule(0);
+            }
+        }
+
+        protected void finish() {
+            done = true;
+            Closeable current = subscription;
+            subscription = null;
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        /**
+         * Checks the condition; each check schedules the next so checks never overlap, though they are
+         * synchronized so that the attempt count and last failure are consistent with each other
+         */
+        protected synchronized void check() {
+            if (done) {
+                return;
+            }
+            woken = false;
+            attempt++;
+            CommandSupport step;
+            try {
+                step = getSupport();
+            } catch (Exception e) {
+                finish();
+                getContext().onFailure(e);
+                return;
+            }
+            Boolean value = null;
+            try {
+                value = condition.check(step);
+            } catch (Exception e) {
+                String failure = e.toString();
+                if (!failure.equals(lastFailure)) {
+                    step.error("Failed waiting for condition", e);
+                    lastFailure = failure;
+                }
+            }
+            if (done) {
+                return;
+            }
+            if (value != null && value.booleanValue()) {
+                finish();
+                getContext().onSuccess(true);
+                return;
+            }
+            long remaining = -1L;
+            if (endTime > 0L) {
+                remaining = endTime - System.currentTimeMillis();
+                if (remaining < 0) {
+                    finish();
+                    getContext().onFailure(new WaitTimeoutException("Timed out after " + timeout + " millis waiting for " + condition));
+                    return;
+                }
+            }
+            long delay = strategy.nextDelay(attempt, remaining);
+            if (remaining >= 0) {
+                delay = Math.min(delay, remaining);
+            }
+            if (woken) {
+                delay = 0;
+            }
+            schedule(delay);
+        }
+
+        protected CommandSupport getSupport() throws Exception {
+            if (support == null) {
+                Fabric8Commands answer = new Fabric8Commands();
+                EnvVars env = getContext().get(EnvVars.class);
+                if (env != null) {
+                    answer.setEnv(env);
+                }
+                TaskListener listener = getContext().get(TaskListener.class);
+                if (listener != null) {
+                    answer.setLogger(new Logger(listener.getLogger()));
+                }
+                Launcher launcher = getContext().get(Launcher.class);
+                FilePath workspace = getContext().get(FilePath.class);
+                answer.setShellFacade(new LauncherShellFacade(launcher, workspace, env, listener));
+                support = answer;
+            }
+            return support;
+        }
+    }
+
+    /**
+     * Runs the shell commands of a condition with the {@link Launcher} of the step as the condition is checked
+     * outside of the pipeline so it cannot invoke {@code sh} steps
+     */
+    protected static class LauncherShellFacade implements ShellFacade {
+        private final Launcher launcher;
+        private final FilePath workspace;
+        private final EnvVars env;
+        private final TaskListener listener;
+
+        public LauncherShellFacade(Launcher launcher, FilePath workspace, EnvVars env, TaskListener listener) {
+            this.launcher = launcher;
+            this.workspace = workspace;
+            this.env = env;
+            this.listener = listener;
+        }
+
+        @Override
+        public String apply(String cmd, boolean returnStdout, String containerName) {
+            if (launcher == null || workspace == null) {
+                throw new FailedBuildException("Cannot run command while waiting outside of a node block: " + cmd);
+            }
+            if (containerName != null && !containerName.isEmpty()) {
+                throw new FailedBuildException("Cannot switch to container " + containerName
+                        + " while waiting; call fabric8WaitUntil inside the container block instead");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Launcher.ProcStarter starter = launcher.launch().cmds("sh", "-c", cmd).pwd(workspace);
+            if (env != null) {
+                starter.envs(env);
+            }
+            if (listener != null) {
+                starter.stderr(listener.getLogger());
+                starter.stdout(returnStdout ? out : listener.getLogger());
+            } else {
+                starter.stdout(out);
+            }
+            int exitCode;
+            try {
+                exitCode = starter.join();
+            } catch (IOException e) {
+                throw new FailedBuildException("Failed to run command: " + cmd, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FailedBuildException("Interrupted running command: " + cmd, e);
+            }
+            if (exitCode != 0) {
+                throw new FailedBuildException("Command exited with code " + exitCode + ": " + cmd);
+            }
+            return returnStdout ? new String(out.toByteArray(), StandardCharsets.UTF_8).trim() : null;
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+        @Override
+        public String getFunctionName() {
+            return "fabric8WaitUntil";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Waits asynchronously until a fabric8 condition is met";
+        }
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Collections.singleton(TaskListener.class);
+        }
+
+        @Override
+        public Step newInstance(Map<String, Object> arguments) throws Exception {
+            Object condition = arguments.get("condition");
+            if (!(condition instanceof WaitCondition)) {
+                throw new IllegalArgumentException("fabric8WaitUntil requires a condition argument but was given " + condition);
+            }
+            Object strategy = arguments.get("strategy");
+            Object timeout = arguments.get("timeout");
+            return new WaitUntilStep((WaitCondition) condition,
+                    strategy instanceof WaitStrategy ? (WaitStrategy) strategy : null,
+                    timeout instanceof Number ? ((Number) timeout).longValue() : -1L);
+        }
+    }
+}
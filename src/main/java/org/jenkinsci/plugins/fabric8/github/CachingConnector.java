@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.github;
+
+import org.kohsuke.github.HttpConnector;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * A {@link HttpConnector} which revalidates GET requests against a {@link GitHubResponseCache} using
+ * <code>If-None-Match</code> and serves the cached body when GitHub replies <code>304 Not Modified</code>
+ */
+public class CachingConnector implements HttpConnector {
+    private final HttpConnector connector;
+    private final GitHubResponseCache cache;
+
+    public CachingConnector(HttpConnector connector, GitHubResponseCache cache) {
+        this.connector = connector;
+        this.cache = cache;
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        return new CachingHttpURLConnection(connector.connect(url), cache);
+    }
+
+    @Override
+    public String toString() {
+        return "CachingConnector{" + cache + '}';
+    }
+
+    public GitHubResponseCache getCache() {
+        return cache;
+    }
+}
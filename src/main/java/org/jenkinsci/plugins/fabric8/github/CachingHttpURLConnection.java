@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.github;
+
+import io.fabric8.utils.IOHelpers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A {@link HttpURLConnection} which adds <code>If-None-Match</code> to GET requests that have a cached response and
+ * turns a <code>304 Not Modified</code> into a <code>200 OK</code> with the cached body and headers so that callers
+ * such as the GitHub API, which treats a 304 as an empty response, see the full resource.
+ * <p>
+ * The <code>delegate</code> field is declared again here as the GitHub API only looks for that field on the
+ * concrete class when it sends <code>PATCH</code> requests
+ */
+public class CachingHttpURLConnection extends DelegatingHttpURLConnection {
+    private static final String ETAG = "ETag";
+
+    /**
+     * Headers which describe the body so must come from the cached response rather than the 304
+     */
+    private static final TreeSet<String> ENTITY_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        ENTITY_HEADERS.addAll(Arrays.asList("Content-Encoding", "Content-Length", "Content-Type", ETAG, "Last-Modified"));
+    }
+
+    private final HttpURLConnection delegate;
+    private final GitHubResponseCache cache;
+    private String authorization;
+    private String key;
+    private GitHubResponseCache.Entry cached;
+    private boolean prepared;
+    private boolean resolved;
+    private boolean fromCache;
+    private int responseCode = -1;
+
+    public CachingHttpURLConnection(HttpURLConnection delegate, GitHubResponseCache cache) {
+        super(delegate, connection -> {
+        });
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public String toString() {
+        return "CachingHttpURLConnection{" + delegate + '}';
+    }
+
+    /**
+     * Returns true if the response was served from the cache after a <code>304 Not Modified</code>
+     */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
+    // Request methods
+    //-------------------------------------------------------------------------
+
+    @Override
+    public void setRequestProperty(String key, String value) {
+        // the JDK hides the Authorization header from getRequestProperty() so lets remember it for the cache key
+        if ("Authorization".equalsIgnoreCase(key)) {
+            authorization = value;
+        }
+        super.setRequestProperty(key, value);
+    }
+
+    @Override
+    public void addRequestProperty(String key, String value) {
+        if ("Authorization".equalsIgnoreCase(key)) {
+            authorization = value;
+        }
+        super.addRequestProperty(key, value);
+    }
+
+    @Override
+    public void connect() throws IOException {
+        prepare();
+        super.connect();
+    }
+
+    // Response methods
+    //-------------------------------------------------------------------------
+
+    @Override
+    public int getResponseCode() throws IOException {
+        resolve();
+        return responseCode;
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        resolve();
+        if (fromCache) {
+            return "OK";
+        }
+        return super.getResponseMessage();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        resolve();
+        if (fromCache) {
+            return new ByteArrayInputStream(cached.getBody());
+        }
+        String etag = super.getHeaderField(ETAG);
+        if (key == null || responseCode != HTTP_OK || etag == null) {
+            return super.getInputStream();
+        }
+        byte[] body;
+        try (InputStream in = super.getInputStream()) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            IOHelpers.copy(in, buffer);
+            body = buffer.toByteArray();
+        }
+        cache.put(key, new GitHubResponseCache.Entry(etag, super.getHeaderFields(), body));
+        return new ByteArrayInputStream(body);
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        if (fromCache) {
+            return null;
+        }
+        return super.getErrorStream();
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        if (resolveQuietly() && name != null && (ENTITY_HEADERS.contains(name) || super.getHeaderField(name) == null)) {
+            return cached.getHeader(name);
+        }
+        return super.getHeaderField(name);
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        if (!resolveQuietly()) {
+            return super.getHeaderFields();
+        }
+        Map<String, List<String>> answer = new LinkedHashMap<>(cached.getHeaders());
+        for (Map.Entry<String, List<String>> entry : super.getHeaderFields().entrySet()) {
+            String name = entry.getKey();
+            if (name != null && !ENTITY_HEADERS.contains(name)) {
+                answer.put(name, entry.getValue());
+            }
+        }
+        answer.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+        return Collections.unmodifiableMap(answer);
+    }
+
+    @Override
+    public String getHeaderField(int n) {
+        if (!resolveQuietly()) {
+            return super.getHeaderField(n);
+        }
+        List<Map.Entry<String, List<String>>> entries = new ArrayList<>(getHeaderFields().entrySet());
+        return n >= 0 && n < entries.size() ? entries.get(n).getValue().get(0) : null;
+    }
+
+    @Override
+    public String getHeaderFieldKey(int n) {
+        if (!resolveQuietly()) {
+            return super.getHeaderFieldKey(n);
+        }
+        List<Map.Entry<String, List<String>>> entries = new ArrayList<>(getHeaderFields().entrySet());
+        return n >= 0 && n < entries.size() ? entries.get(n).getKey() : null;
+    }
+
+    @Override
+    public int getHeaderFieldInt(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(getHeaderField(name));
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public long getHeaderFieldLong(String name, long defaultValue) {
+        try {
+            return Long.parseLong(getHeaderField(name));
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeaderField("Content-Type");
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return getHeaderField("Content-Encoding");
+    }
+
+    @Override
+    public int getContentLength() {
+        return getHeaderFieldInt("Content-Length", -1);
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return getHeaderFieldLong("Content-Length", -1);
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    /**
+     * Looks up the cached response before the request is sent so that we can add <code>If-None-Match</code>
+     */
+    protected void prepare() {
+        if (prepared) {
+            return;
+        }
+        prepared = true;
+        if (!"GET".equals(getRequestMethod())) {
+            return;
+        }
+        key = GitHubResponseCache.key(getURL().toString(), authorization, super.getRequestProperty("Accept"));
+        cached = cache.get(key);
+        if (cached != null) {
+            super.setRequestProperty("If-None-Match", cached.getEtag());
+        }
+    }
+
+    protected void resolve() throws IOException {
+        if (resolved) {
+            return;
+        }
+        prepare();
+        responseCode = super.getResponseCode();
+        resolved = true;
+        if (responseCode == HTTP_NOT_MODIFIED && cached != null) {
+            fromCache = true;
+            responseCode = HTTP_OK;
+            cache.onHit();
+        }
+    }
+
+    /**
+     * Resolves the response for the header methods which cannot throw; returning true if it came from the cache
+     */
+    protected boolean resolveQuietly() {
+        try {
+            resolve();
+        } catch (IOException e) {
+            // the caller will see the failure when it asks for the response code or body
+        }
+        return fromCache;
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.github;
+
+import io.fabric8.utils.IOHelpers;
+import io.fabric8.utils.Strings;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpConnector;
+import org.kohsuke.github.RateLimitHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A controller wide cache of {@link GitHub} clients keyed by a hash of their credentials. All clients share the same
+ * underlying {@link HttpConnector} and each set of credentials has its own {@link RateLimitingConnector} as GitHub
+ * rate limits are per user. GET requests are revalidated against the on disk {@link GitHubResponseCache} so that
+ * polling unchanged resources does not use up the quota.
+ */
+public class GitHubClients {
+    private static final GitHubClients instance = new GitHubClients();
+
+    public static final String DEFAULT_TOKEN_FILE = "/home/jenkins/.apitoken/hub";
+
+    private final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private HttpConnector connector = HttpConnector.DEFAULT;
+    private GitHubResponseCache responseCache;
+    private boolean responseCacheEnabled = true;
+    private TokenFile tokenFile;
+
+    public static GitHubClients getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the client for the given user and password if specified, otherwise the OAuth token with the optional
+     * user, otherwise an anonymous client
+     */
+    public GitHub getGitHub(String user, String password, String oauthToken) throws IOException {
+        String key = DigestUtils.sha256Hex(user + "|" + password + "|" + oauthToken);
+        Client client = clients.get(key);
+        if (client == null) {
+            synchronized (clients) {
+                client = clients.get(key);
+                if (client == null) {
+                    client = createClient(user, password, oauthToken);
+                    clients.put(key, client);
+                }
+            }
+        }
+        return client.gitHub;
+    }
+
+    /**
+     * Returns the trimmed contents of the token file, only reading the file again if it has changed
+     */
+    public synchronized String loadTokenFile(File file) throws IOException {
+        TokenFile cached = tokenFile;
+        if (cached != null && cached.matches(file)) {
+            return cached.token;
+        }
+        String token = IOHelpers.readFully(file).trim();
+        tokenFile = new TokenFile(file, token);
+        return token;
+    }
+
+    /**
+     * Returns the lowest remaining rate limit quota of all the clients or -1 if no client has made a request yet
+     */
+    public int getRemainingQuota() {
+        int answer = -1;
+        for (Client client : clients.values()) {
+            int remaining = client.connector.getRemaining();
+            if (remaining >= 0 && (answer < 0 || remaining < answer)) {
+                answer = remaining;
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the rate limiting connectors of each client for monitoring
+     */
+    public Collection<RateLimitingConnector> getConnectors() {
+        List<RateLimitingConnector> answer = new ArrayList<>();
+        for (Client client : clients.values()) {
+            answer.add(client.connector);
+        }
+        return answer;
+    }
+
+    public void clear() {
+        clients.clear();
+        synchronized (this) {
+            tokenFile = null;
+        }
+    }
+
+    public HttpConnector getConnector() {
+        return connector;
+    }
+
+    public void setConnector(HttpConnector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * Returns the response cache used by new clients or null if it is disabled
+     */
+    public synchronized GitHubResponseCache getResponseCache() {
+        if (!responseCacheEnabled) {
+            return null;
+        }
+        if (responseCache == null) {
+            responseCache = GitHubResponseCache.getInstance();
+        }
+        return responseCache;
+    }
+
+    public synchronized void setResponseCache(GitHubResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public boolean isResponseCacheEnabled() {
+        return responseCacheEnabled;
+    }
+
+    public void setResponseCacheEnabled(boolean responseCacheEnabled) {
+        this.responseCacheEnabled = responseCacheEnabled;
+    }
+
+    protected Client createClient(String user, String password, String oauthToken) throws IOException {
+        HttpConnector httpConnector = connector;
+        GitHubResponseCache cache = getResponseCache();
+        if (cache != null) {
+            httpConnector = new CachingConnector(httpConnector, cache);
+        }
+        RateLimitingConnector rateLimitingConnector = new RateLimitingConnector(httpConnector);
+        GitHubBuilder ghb = new GitHubBuilder()
+                .withConnector(rateLimitingConnector)
+                .withRateLimitHandler(RateLimitHandler.WAIT);
+        if (Strings.isNotBlank(user) && Strings.isNotBlank(password)) {
+            ghb.withPassword(user, password);
+        } else if (Strings.notEmpty(oauthToken)) {
+            if (Strings.notEmpty(user)) {
+                ghb.withOAuthToken(oauthToken, user);
+            } else {
+                ghb.withOAuthToken(oauthToken);
+            }
+        }
+        return new Client(ghb.build(), rateLimitingConnector);
+    }
+
+    protected static class Client {
+        private final GitHub gitHub;
+        private final RateLimitingConnector connector;
+
+        public Client(GitHub gitHub, RateLimitingConnector connector) {
+            this.gitHub = gitHub;
+            this.connector = connector;
+        }
+    }
+
+    protected static class TokenFile {
+        private final String path;
+        private final long lastModified;
+        private final long length;
+        private final String token;
+
+        public TokenFile(File file, String token) {
+            this.path = file.getAbsolutePath();
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.token = token;
+        }
+
+        public boolean matches(File file) {
+            return path.equals(file.getAbsolutePath()) && lastModified == file.lastModified() && length == file.length();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.github;
+
+import io.fabric8.utils.Systems;
+import jenkins.model.Jenkins;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded on disk cache of GitHub API responses which have an <code>ETag</code> so that they can be revalidated
+ * with <code>If-None-Match</code>. GitHub does not count <code>304 Not Modified</code> responses against the rate
+ * limit so polling an unchanged resource costs neither quota nor payload.
+ * <p>
+ * The cache lives under <code>JENKINS_HOME/fabric8-pipelines/github-cache</code> so it is shared by all builds and
+ * survives restarts. Files are named after a hash of the URL and credentials; the least recently used files are
+ * removed once the total size exceeds {@link #getMaxSize()}.
+ */
+public class GitHubResponseCache {
+    private static final Logger LOG = Logger.getLogger(GitHubResponseCache.class.getName());
+
+    public static final String CACHE_DIR = "fabric8-pipelines/github-cache";
+    public static final long DEFAULT_MAX_SIZE = 50 * 1024 * 1024;
+    public static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static GitHubResponseCache instance;
+
+    private final File directory;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long maxSize = DEFAULT_MAX_SIZE;
+    private int maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
+    private long size = -1;
+
+    public GitHubResponseCache(File directory) {
+        this.directory = directory;
+    }
+
+    public static synchronized GitHubResponseCache getInstance() {
+        if (instance == null) {
+            instance = new GitHubResponseCache(defaultDirectory());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cache key for a GET of the given URL using the given credentials and accepted media type
+     */
+    public static String key(String url, String authorization, String accept) {
+        return DigestUtils.sha256Hex(url + "|" + authorization + "|" + accept);
+    }
+
+    /**
+     * Returns the cached response for the key or null if there is none
+     */
+    public Entry get(String key) {
+        File file = new File(directory, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Entry answer = Entry.read(in);
+            // lets track recent use for the eviction order
+            file.setLastModified(System.currentTimeMillis());
+            return answer;
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Ignoring unreadable cache file " + file + ": " + e, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the response for the key unless it is larger than {@link #getMaxEntrySize()}
+     */
+    public void put(String key, Entry entry) {
+        if (entry.getBody().length > maxEntrySize) {
+            return;
+        }
+        File file = new File(directory, key);
+        File tempFile = new File(directory, key + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+        try {
+            directory.mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                entry.write(out);
+            }
+            synchronized (this) {
+                long oldLength = file.length();
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                stores.incrementAndGet();
+                if (size >= 0) {
+                    size += file.length() - oldLength;
+                }
+                evictIfNecessary();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to write GitHub cache file " + file + ": " + e, e);
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Records that a response was served from the cache
+     */
+    public void onHit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Removes all the cached responses and resets the statistics
+     */
+    public synchronized void clear() {
+        for (File file : listFiles()) {
+            file.delete();
+        }
+        size = 0;
+        hits.set(0);
+        stores.set(0);
+        evictions.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "GitHubResponseCache{" +
+                "directory=" + directory +
+                ", hits=" + hits +
+                ", stores=" + stores +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the total size in bytes of the cached responses
+     */
+    public synchronized long getSize() {
+        if (size < 0) {
+            long answer = 0;
+            for (File file : listFiles()) {
+                answer += file.length();
+            }
+            size = answer;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of requests answered by a <code>304 Not Modified</code> and the cached body
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of responses written to the cache
+     */
+    public long getStores() {
+        return stores.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(int maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected static File defaultDirectory() {
+        File home;
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins != null) {
+            home = jenkins.getRootDir();
+        } else {
+            home = new File(Systems.getEnvVarOrSystemProperty("JENKINS_HOME", System.getProperty("java.io.tmpdir")));
+        }
+        return new File(home, CACHE_DIR);
+    }
+
+    protected synchronized void evictIfNecessary() {
+        if (getSize() <= maxSize) {
+            return;
+        }
+        List<File> files = listFiles();
+        Collections.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (size <= maxSize) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    protected List<File> listFiles() {
+        File[] files = directory.listFiles((dir, name) -> !name.endsWith(TEMP_SUFFIX));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    /**
+     * A cached response
+     */
+    public static class Entry {
+        private final String etag;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+
+        public Entry(String etag, Map<String, List<String>> headers, byte[] body) {
+            this.etag = etag;
+            this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                // the status line is stored under a null key
+                if (header.getKey() != null && header.getValue() != null) {
+                    this.headers.put(header.getKey(), header.getValue());
+                }
+            }
+            this.body = body;
+        }
+
+        public static Entry read(DataInputStream in) throws IOException {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported cache format version " + version);
+            }
+            String etag = in.readUTF();
+            int headerCount = in.readInt();
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (int i = 0; i < headerCount; i++) {
+                String name = in.readUTF();
+                int valueCount = in.readInt();
+                List<String> values = new ArrayList<>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    values.add(in.readUTF());
+                }
+                headers.put(name, values);
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Entry(etag, headers, body);
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(etag);
+            out.writeInt(headers.size());
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeInt(header.getValue().size());
+                for (String value : header.getValue()) {
+                    out.writeUTF(value);
+                }
+            }
+            out.writeInt(body.length);
+            out.write(body);
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Returns the response headers keyed case insensitively
+         */
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        public String getHeader(String name) {
+            List<String> values = headers.get(name);
+            if (values == null || values.isEmpty()) {
+                return null;
+            }
+            return values.get(values.size() - 1);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
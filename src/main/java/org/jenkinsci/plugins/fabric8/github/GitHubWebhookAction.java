@@ -0,0 +1,196 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.github;
+
+import hudson.Extension;
+import hudson.model.UnprotectedRootAction;
+import hudson.security.csrf.CrumbExclusion;
+import io.fabric8.utils.Strings;
+import io.fabric8.utils.Systems;
+import org.apache.commons.codec.binary.Hex;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Receives GitHub <code>pull_request</code> and <code>status</code> webhooks at
+ * <code>JENKINS_URL/fabric8-github-webhook/</code> and passes them to {@link PullRequestEvents} so that pipelines
+ * waiting for a pull request to merge are woken straight away.
+ * <p>
+ * Payloads must be signed with the secret in the <code>FABRIC8_GITHUB_WEBHOOK_SECRET</code> environment variable or
+ * system property via the <code>X-Hub-Signature</code> header. Unsigned payloads are rejected unless
+ * <code>FABRIC8_GITHUB_WEBHOOK_ALLOW_UNSIGNED</code> is <code>true</code>; as anyone could send them they only wake
+ * waiting pipelines, which check the pull request with GitHub, and never slow down polling.
+ */
+@Extension
+public class GitHubWebhookAction implements UnprotectedRootAction {
+    private static final Logger LOG = Logger.getLogger(GitHubWebhookAction.class.getName());
+
+    public static final String URL_NAME = "fabric8-github-webhook";
+    public static final String SECRET_ENV_VAR = "FABRIC8_GITHUB_WEBHOOK_SECRET";
+    public static final String ALLOW_UNSIGNED_ENV_VAR = "FABRIC8_GITHUB_WEBHOOK_ALLOW_UNSIGNED";
+    /**
+     * The largest payload GitHub sends
+     */
+    public static final int MAX_PAYLOAD_SIZE = 25 * 1024 * 1024;
+
+    private static final String SIGNATURE_PREFIX = "sha1=";
+    private static final String FORM_PAYLOAD_PREFIX = "payload=";
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Fabric8 GitHub Webhook";
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    @RequirePOST
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        if (req.getContentLength() > MAX_PAYLOAD_SIZE) {
+            rsp.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        byte[] body;
+        try (InputStream in = req.getInputStream()) {
+            body = readPayload(in, MAX_PAYLOAD_SIZE);
+        }
+        if (body == null) {
+            LOG.warning("Rejecting webhook larger than " + MAX_PAYLOAD_SIZE + " bytes");
+            rsp.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+        int status = handle(req.getHeader("X-GitHub-Event"), req.getHeader("X-Hub-Signature"), req.getContentType(), body);
+        rsp.setStatus(status);
+    }
+
+    /**
+     * Reads the payload as long as it is no larger than the maximum size
+     *
+     * @return the payload or null if it is too large
+     */
+    protected static byte[] readPayload(InputStream in, int maxSize) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] bytes = new byte[8192];
+        int count;
+        while ((count = in.read(bytes)) >= 0) {
+            if (buffer.size() + count > maxSize) {
+                return null;
+            }
+            buffer.write(bytes, 0, count);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Validates and processes a webhook request
+     *
+     * @return the HTTP status code to reply with
+     */
+    public int handle(String eventType, String signature, String contentType, byte[] body) {
+        if (Strings.isNullOrBlank(eventType)) {
+            return HttpServletResponse.SC_BAD_REQUEST;
+        }
+        String secret = getSecret();
+        boolean verified = Strings.isNotBlank(secret);
+        if (verified && !isValidSignature(secret, signature, body)) {
+            LOG.warning("Rejecting " + eventType + " webhook with an invalid X-Hub-Signature");
+            return HttpServletResponse.SC_FORBIDDEN;
+        }
+        if (!verified && !isAllowUnsigned()) {
+            LOG.warning("Rejecting unsigned " + eventType + " webhook as " + SECRET_ENV_VAR + " is not set and " + ALLOW_UNSIGNED_ENV_VAR + " is not true");
+            return HttpServletResponse.SC_FORBIDDEN;
+        }
+        String payload = new String(body, StandardCharsets.UTF_8);
+        try {
+            if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+                if (!payload.startsWith(FORM_PAYLOAD_PREFIX)) {
+                    return HttpServletResponse.SC_BAD_REQUEST;
+                }
+                payload = URLDecoder.decode(payload.substring(FORM_PAYLOAD_PREFIX.length()), "UTF-8");
+            }
+            if (PullRequestEvents.getInstance().onEvent(eventType, payload, verified)) {
+                return HttpServletResponse.SC_OK;
+            }
+            return HttpServletResponse.SC_ACCEPTED;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to process " + eventType + " webhook: " + e, e);
+            return HttpServletResponse.SC_BAD_REQUEST;
+        }
+    }
+
+    protected String getSecret() {
+        return Systems.getEnvVarOrSystemProperty(SECRET_ENV_VAR);
+    }
+
+    protected boolean isAllowUnsigned() {
+        return "true".equalsIgnoreCase(Systems.getEnvVarOrSystemProperty(ALLOW_UNSIGNED_ENV_VAR));
+    }
+
+    protected static boolean isValidSignature(String secret, String signature, byte[] body) {
+        if (signature == null || !signature.startsWith(SIGNATURE_PREFIX)) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+            String expected = SIGNATURE_PREFIX + Hex.encodeHexString(mac.doFinal(body));
+            return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), signature.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            LOG.log(Level.WARNING, "Failed to validate webhook signature: " + e, e);
+            return false;
+        }
+    }
+
+    /**
+     * GitHub cannot send a CSRF crumb so lets exclude the webhook URL from crumb checks
+     */
+    @Extension
+    public static class CrumbExclusionImpl extends CrumbExclusion {
+        @Override
+        public boolean process(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
+            String path = request.getPathInfo();
+            if (path != null && (path.equals("/" + URL_NAME) || path.startsWith("/" + URL_NAME + "/"))) {
+                chain.doFilter(request, response);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.github;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A controller wide index of the latest <code>pull_request</code> and <code>status</code> webhook events received
+ * by {@link GitHubWebhookAction} keyed by repository and pull request number.
+ * <p>
+ * Pipelines waiting on a pull request {@link #subscribe(String, int, Runnable)} to be woken as soon as an event
+ * arrives for it so that they only need to poll GitHub as a slow fallback.
+ */
+public class PullRequestEvents {
+    private static final Logger LOG = Logger.getLogger(PullRequestEvents.class.getName());
+
+    public static final String PULL_REQUEST_EVENT = "pull_request";
+    public static final String STATUS_EVENT = "status";
+    public static final String PING_EVENT = "ping";
+    public static final int MAX_ENTRIES = 1000;
+    public static final long DEFAULT_RECEIVING_EVENTS_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+    private static final PullRequestEvents instance = new PullRequestEvents();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, State> states = createLruMap();
+    private final Map<String, String> pullRequestsByHeadSha = createLruMap();
+    private final Map<String, Long> repositoryEvents = createLruMap();
+    private final Map<String, Set<Runnable>> listeners = new ConcurrentHashMap<>();
+    private final AtomicLong events = new AtomicLong();
+    private long receivingEventsTimeout = DEFAULT_RECEIVING_EVENTS_TIMEOUT;
+
+    public static PullRequestEvents getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the key used to index a pull request
+     */
+    public static String key(String project, int id) {
+        return project.toLowerCase() + "#" + id;
+    }
+
+    /**
+     * Processes the JSON payload of a webhook
+     *
+     * @param eventType the value of the <code>X-GitHub-Event</code> header
+     * @param verified  true if the payload was signed by GitHub; only verified events mark the repository as
+     *                  {@link #isReceivingEvents(String)} so that forged events cannot slow down polling
+     * @return true if the event was understood or false if it is ignored
+     */
+    public boolean onEvent(String eventType, String payload, boolean verified) throws IOException {
+        if (PING_EVENT.equals(eventType)) {
+            return true;
+        }
+        if (!PULL_REQUEST_EVENT.equals(eventType) && !STATUS_EVENT.equals(eventType)) {
+            return false;
+        }
+        JsonNode json = mapper.readTree(payload);
+        String project = json.path("repository").path("full_name").asText(null);
+        if (project == null) {
+            throw new IOException("No repository.full_name in " + eventType + " event");
+        }
+        events.incrementAndGet();
+        if (verified) {
+            synchronized (repositoryEvents) {
+                repositoryEvents.put(project.toLowerCase(), System.currentTimeMillis());
+            }
+        }
+        if (PULL_REQUEST_EVENT.equals(eventType)) {
+            onPullRequest(project, json);
+        } else {
+            onStatus(project, json);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the state of the pull request from the last event received or null if there has been none
+     */
+    public State getState(String project, int id) {
+        synchronized (states) {
+            return states.get(key(project, id));
+        }
+    }
+
+    /**
+     * Returns true if a verified webhook event has been received for the repository within the
+     * {@link #getReceivingEventsTimeout()} so pipelines can rely on them; if the webhook stops being delivered
+     * pipelines go back to polling GitHub
+     */
+    public boolean isReceivingEvents(String project) {
+        Long lastEvent;
+        synchronized (repositoryEvents) {
+            lastEvent = repositoryEvents.get(project.toLowerCase());
+        }
+        return lastEvent != null && System.currentTimeMillis() - lastEvent < receivingEventsTimeout;
+    }
+
+    /**
+     * Invokes the listener each time an event is received for the pull request
+     *
+     * @return the subscription which should be closed when the caller stops waiting
+     */
+    public Closeable subscribe(String project, int id, Runnable listener) {
+        String key = key(project, id);
+        listeners.computeIfAbsent(key, k -> new CopyOnWriteArraySet<>()).add(listener);
+        return () -> listeners.computeIfPresent(key, (k, set) -> {
+            set.remove(listener);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * Returns the number of events processed
+     */
+    public long getEvents() {
+        return events.get();
+    }
+
+    public void clear() {
+        synchronized (states) {
+            states.clear();
+        }
+        synchronized (pullRequestsByHeadSha) {
+            pullRequestsByHeadSha.clear();
+        }
+        synchronized (repositoryEvents) {
+            repositoryEvents.clear();
+        }
+        listeners.clear();
+        events.set(0);
+    }
+
+    public long getReceivingEventsTimeout() {
+        return receivingEventsTimeout;
+    }
+
+    public void setReceivingEventsTimeout(long receivingEventsTimeout) {
+        this.receivingEventsTimeout = receivingEventsTimeout;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected void onPullRequest(String project, JsonNode json) {
+        JsonNode pullRequest = json.path("pull_request");
+        int id = json.path("number").asInt(pullRequest.path("number").asInt(0));
+        if (id <= 0) {
+            return;
+        }
+        String key = key(project, id);
+        String headSha = pullRequest.path("head").path("sha").asText(null);
+        State state = new State(pullRequest.path("state").asText(null), pullRequest.path("merged").asBoolean(false),
+                pullRequest.path("mergeable_state").asText(null), headSha);
+        synchronized (states) {
+            states.put(key, state);
+        }
+        if (headSha != null) {
+            synchronized (pullRequestsByHeadSha) {
+                pullRequestsByHeadSha.put(headSha, key);
+            }
+        }
+        LOG.fine("Received " + json.path("action").asText() + " event for " + key + " " + state);
+        notifyListeners(key);
+    }
+
+    protected void onStatus(String project, JsonNode json) {
+        String sha = json.path("sha").asText(null);
+        String key = null;
+        if (sha != null) {
+            synchronized (pullRequestsByHeadSha) {
+                key = pullRequestsByHeadSha.get(sha);
+            }
+        }
+        if (key != null) {
+            notifyListeners(key);
+        } else {
+            // we don't know which pull request the commit belongs to so lets wake all the waiters on the repository
+            String prefix = project.toLowerCase() + "#";
+            for (String listenerKey : listeners.keySet()) {
+                if (listenerKey.startsWith(prefix)) {
+                    notifyListeners(listenerKey);
+                }
+            }
+        }
+    }
+
+    protected void notifyListeners(String key) {
+        Set<Runnable> set = listeners.get(key);
+        if (set == null) {
+            return;
+        }
+        for (Runnable listener : set) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to notify listener of " + key + ": " + e, e);
+            }
+        }
+    }
+
+    private static <V> Map<String, V> createLruMap() {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * The state of a pull request as reported by the last <code>pull_request</code> event
+     */
+    public static class State {
+        private final String state;
+        private final boolean merged;
+        private final String mergeableState;
+        private final String headSha;
+        private final long received = System.currentTimeMillis();
+
+        public State(String state, boolean merged, String mergeableState, String headSha) {
+            this.state = state;
+            this.merged = merged;
+            this.mergeableState = mergeableState;
+            this.headSha = headSha;
+        }
+
+        @Override
+        public String toString() {
+            return "State{" +
+                    "state='" + state + '\'' +
+                    ", merged=" + merged +
+                    ", mergeableState='" + mergeableState + '\'' +
+                    '}';
+        }
+
+        public boolean isClosed() {
+            return "closed".equalsIgnoreCase(state);
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public boolean isMerged() {
+            return merged;
+        }
+
+        public String getMergeableState() {
+            return mergeableState;
+        }
+
+        public String getHeadSha() {
+            return headSha;
+        }
+
+        /**
+         * Returns the time in millis when the event was received
+         */
+        public long getReceived() {
+            return received;
+        }
+    }
+}
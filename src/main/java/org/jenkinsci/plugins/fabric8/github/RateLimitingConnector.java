@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.github;
+
+import org.kohsuke.github.HttpConnector;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A {@link HttpConnector} for a single set of GitHub credentials which tracks the <code>X-RateLimit-*</code> response
+ * headers and slows down callers as the remaining quota runs low so that the requests are spread out until the quota
+ * resets rather than exhausting it
+ */
+public class RateLimitingConnector implements HttpConnector {
+    private static final Logger LOG = Logger.getLogger(RateLimitingConnector.class.getName());
+
+    public static final long DEFAULT_MAX_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private final HttpConnector connector;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttledMillis = new AtomicLong();
+    private volatile int limit = -1;
+    private volatile int remaining = -1;
+    private volatile long resetTime;
+    private long maxDelay = DEFAULT_MAX_DELAY;
+
+    public RateLimitingConnector(HttpConnector connector) {
+        this.connector = connector;
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        throttle();
+        requests.incrementAndGet();
+        return new DelegatingHttpURLConnection(connector.connect(url), this::onResponse);
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitingConnector{" +
+                "remaining=" + remaining +
+                ", limit=" + limit +
+                ", requests=" + requests +
+                ", throttledMillis=" + throttledMillis +
+                '}';
+    }
+
+    /**
+     * Returns how long the next request should be delayed; which is zero until less than 10% of the quota remains
+     * and then the time until the quota resets divided by the remaining requests
+     */
+    public long nextDelay(long now) {
+        int currentLimit = limit;
+        int currentRemaining = remaining;
+        long reset = resetTime;
+        if (currentLimit <= 0 || currentRemaining < 0 || reset <= now) {
+            return 0;
+        }
+        if (currentRemaining > currentLimit / 10) {
+            return 0;
+        }
+        return Math.min(maxDelay, (reset - now) / (currentRemaining + 1));
+    }
+
+    protected void throttle() throws IOException {
+        long delay = nextDelay(System.currentTimeMillis());
+        if (delay > 0) {
+            LOG.fine("Only " + remaining + " of " + limit + " GitHub requests remain so delaying for " + delay + "ms");
+            throttledMillis.addAndGet(delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the GitHub rate limit", e);
+            }
+        }
+    }
+
+    protected void onResponse(HttpURLConnection connection) {
+        int newLimit = connection.getHeaderFieldInt("X-RateLimit-Limit", -1);
+        int newRemaining = connection.getHeaderFieldInt("X-RateLimit-Remaining", -1);
+        long newReset = connection.getHeaderFieldLong("X-RateLimit-Reset", -1);
+        if (newLimit >= 0 && newRemaining >= 0) {
+            limit = newLimit;
+            remaining = newRemaining;
+            if (newReset > 0) {
+                resetTime = TimeUnit.SECONDS.toMillis(newReset);
+            }
+        }
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    /**
+     * Returns the remaining number of requests in the current rate limit window or -1 if not known yet
+     */
+    public int getRemaining() {
+        return remaining;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the time in millis when the rate limit resets
+     */
+    public long getResetTime() {
+        return resetTime;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getThrottledMillis() {
+        return throttledMillis.get();
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+}
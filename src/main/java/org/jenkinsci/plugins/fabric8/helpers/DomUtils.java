@@ -22,12 +22,20 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.net.URL;
 
 
 /**
  */
 public class DomUtils {
+    private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
 
     /**
      * Returns the first element in the document with the given name
@@ -54,13 +62,93 @@ public class DomUtils {
     }
 
     public static String parseXmlForURLAndReturnFirstElementText(Logger logger, String url, String elementName) {
-        Document doc;
-        try {
-            doc = XmlUtils.parseDoc(new URL(url).openStream());
+        try (InputStream in = new URL(url).openStream()) {
+            return firstElementText(logger, in, elementName, url);
         } catch (Exception e) {
             logger.error("Failed to parse pom.xml", e);
             return null;
         }
-        return firstElementText(logger, doc, elementName, url);
+    }
+
+    /**
+     * Returns the text of the first element in the file with the given name; reading only as much of the file as is
+     * required to find the element
+     */
+    public static String firstElementText(Logger logger, File file, String elementName, String message) {
+        try (InputStream in = new FileInputStream(file)) {
+            return firstElementText(logger, in, elementName, message);
+        } catch (Exception e) {
+            logger.error("Failed to parse " + message, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the text of the first element in the stream with the given name; stopping reading as soon as the element
+     * has been found
+     */
+    public static String firstElementText(Logger logger, InputStream in, String elementName, String message) {
+        String answer;
+        try {
+            answer = streamFirstElementText(in, elementName);
+        } catch (XMLStreamException e) {
+            logger.error("Failed to parse " + message, e);
+            return null;
+        }
+        if (answer == null) {
+            logger.error(message + " does not contain a <" + elementName + "> element!");
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the text content of the first element with the given name or null if there is no such element
+     */
+    public static String streamFirstElementText(InputStream in, String elementName) throws XMLStreamException {
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && elementName.equals(reader.getLocalName())) {
+                    return readTextContent(reader);
+                }
+            }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the text of the current element and all of its descendants like {@link Node#getTextContent()}
+     */
+    private static String readTextContent(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder builder = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    builder.append(reader.getText());
+                    break;
+                default:
+            }
+        }
+        return builder.toString();
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory answer = XMLInputFactory.newInstance();
+        answer.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        answer.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        answer.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        answer.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return answer;
     }
 }
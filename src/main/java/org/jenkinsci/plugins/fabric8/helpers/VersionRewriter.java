@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.helpers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the versions of many properties in <code>package.json</code> files or the <code>ENV</code> instructions of
+ * <code>Dockerfile</code>s in a single pass over each file.
+ * <p>
+ * Files are streamed a line at a time into a temporary file which atomically replaces the original only if a version
+ * actually changed, so line endings and formatting are preserved and unchanged files are never touched.
+ */
+public abstract class VersionRewriter {
+    protected static final String VERSION = "[0-9]{1,3}(?:\\.[0-9]{1,3}){1,3}(?:-development)?";
+
+    protected final Map<String, String> versions;
+    protected final Pattern pattern;
+
+    protected VersionRewriter(Map<String, String> versions, Pattern pattern) {
+        this.versions = new LinkedHashMap<>(versions);
+        this.pattern = pattern;
+    }
+
+    /**
+     * Updates the versions of dependencies like <code>"fabric8-console": "2.3.12"</code> in <code>package.json</code> files
+     */
+    public static VersionRewriter packageJson(Map<String, String> versions) {
+        return new VersionRewriter(versions, Pattern.compile("(\"(" + alternatives(versions) + ")\"\\s*:\\s*\")" + VERSION + "(\")")) {
+            @Override
+            protected String replacement(Matcher matcher) {
+                return matcher.group(1) + versions.get(matcher.group(2)) + matcher.group(3);
+            }
+        };
+    }
+
+    /**
+     * Updates environment variables like <code>ENV FABRIC8_VERSION 2.3.12</code> or <code>ENV FABRIC8_VERSION=2.3.12</code>
+     * in <code>Dockerfile</code>s
+     */
+    public static VersionRewriter dockerfileEnv(Map<String, String> versions) {
+        return new VersionRewriter(versions, Pattern.compile("^(\\s*ENV\\s+(" + alternatives(versions) + ")(?:\\s+|\\s*=\\s*))(.*?)(\\s*)$")) {
+            @Override
+            protected String replacement(Matcher matcher) {
+                return matcher.group(1) + versions.get(matcher.group(2)) + matcher.group(4);
+            }
+        };
+    }
+
+    protected static String alternatives(Map<String, String> versions) {
+        if (versions.isEmpty()) {
+            throw new IllegalArgumentException("No versions to update");
+        }
+        StringBuilder builder = new StringBuilder();
+        for (String name : versions.keySet()) {
+            if (builder.length() > 0) {
+                builder.append("|");
+            }
+            builder.append(Pattern.quote(name));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the text which replaces the match
+     */
+    protected abstract String replacement(Matcher matcher);
+
+    /**
+     * Rewrites the file if any version changes
+     *
+     * @return true if the file was changed
+     */
+    public boolean rewrite(File file) throws IOException {
+        Path path = file.toPath();
+        Path tmp = path.resolveSibling("." + path.getFileName() + ".tmp");
+        boolean changed = false;
+        try {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+                 BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                StringBuilder line = new StringBuilder();
+                while (readLine(reader, line)) {
+                    changed |= rewriteLine(line, writer);
+                }
+            }
+            if (changed) {
+                try {
+                    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return changed;
+    }
+
+    /**
+     * Rewrites the files using up to the given number of threads
+     *
+     * @return the files which were changed in the order they were given
+     */
+    public List<File> rewriteAll(Collection<File> files, int parallelism) throws IOException {
+        List<File> paths = new ArrayList<>(files);
+        List<Boolean> results = rewriteEach(paths, parallelism);
+        List<File> answer = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            if (results.get(i)) {
+                answer.add(paths.get(i));
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Rewrites the files using up to the given number of threads. A file given more than once is only rewritten once.
+     *
+     * @return whether the file at the same index was changed
+     */
+    public List<Boolean> rewriteEach(List<File> files, int parallelism) throws IOException {
+        List<Boolean> answer = new ArrayList<>();
+        if (files.isEmpty()) {
+            return answer;
+        }
+        Map<File, Future<Boolean>> futures = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, files.size())));
+        try {
+            for (final File file : files) {
+                if (!futures.containsKey(file)) {
+                    futures.put(file, executor.submit(() -> rewrite(file)));
+                }
+            }
+            for (File file : files) {
+                answer.add(futures.get(file).get());
+            }
+            return answer;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to update versions: " + cause, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted updating versions", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the line, with any terminator removed before matching, to the writer
+     *
+     * @return true if the line changed
+     */
+    protected boolean rewriteLine(StringBuilder line, Writer writer) throws IOException {
+        int end = line.length();
+        while (end > 0 && (line.charAt(end - 1) == '\n' || line.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        String content = line.substring(0, end);
+        Matcher matcher = pattern.matcher(content);
+        if (!matcher.find()) {
+            writer.append(line);
+            return false;
+        }
+        StringBuffer buffer = new StringBuffer();
+        do {
+            matcher.appendReplacement(buffer, Matcher.quoteReplacement(replacement(matcher)));
+        } while (matcher.find());
+        matcher.appendTail(buffer);
+        writer.append(buffer).append(line, end, line.length());
+        return !buffer.toString().equals(content);
+    }
+
+    /**
+     * Reads the next line including its terminator into the builder
+     *
+     * @return false if there are no more lines
+     */
+    protected static boolean readLine(Reader reader, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = reader.read()) >= 0) {
+            line.append((char) c);
+            if (c == '\n') {
+                break;
+            }
+        }
+        return line.length() > 0;
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.kubernetes;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.pipelines.PipelineConfiguration;
+import io.fabric8.kubernetes.api.pipelines.PipelineKind;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps an in memory copy of the {@link ConfigMap} resources used by the pipelines, such as the
+ * <code>fabric8-pipelines</code> ConfigMap, which is kept up to date using a watch.
+ * <p>
+ * The first lookup of a ConfigMap performs a GET then watches from the returned resource version; subsequent lookups
+ * are in memory reads. If the watch closes the next lookup performs a fresh GET and watch.
+ * <p>
+ * Watches which have not been used for the {@link #getIdleTimeout()} are closed and at most {@link #getMaxSize()}
+ * ConfigMaps are watched at once, closing the least recently used first. Callers are given copies so they may
+ * modify the results without affecting other builds.
+ */
+public class ConfigMapCache {
+    private static final Logger LOG = Logger.getLogger(ConfigMapCache.class.getName());
+
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private static final ConfigMapCache instance = new ConfigMapCache();
+
+    private final Map<String, WatchedConfigMap> configMaps = new ConcurrentHashMap<>();
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    public static ConfigMapCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns a copy of the ConfigMap with the given name in the namespace or null if it does not exist
+     */
+    public ConfigMap getConfigMap(KubernetesClient client, String namespace, String name) {
+        ConfigMap answer = getWatchedConfigMap(namespace, name).get(client);
+        return answer != null ? new ConfigMapBuilder(answer).build() : null;
+    }
+
+    /**
+     * Returns a copy of the {@link PipelineConfiguration} loaded from the <code>fabric8-pipelines</code> ConfigMap in the given namespace
+     */
+    public PipelineConfiguration getPipelineConfiguration(KubernetesClient client, String namespace) {
+        return copy(getWatchedConfigMap(namespace, PipelineConfiguration.FABRIC8_PIPELINES).getPipelineConfiguration(client));
+    }
+
+    /**
+     * Closes all the watches and clears the cache
+     */
+    public void clear() {
+        for (WatchedConfigMap watched : configMaps.values()) {
+            watched.evict();
+        }
+        configMaps.clear();
+    }
+
+    public int size() {
+        return configMaps.size();
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected WatchedConfigMap getWatchedConfigMap(String namespace, String name) {
+        evictIdleConfigMaps();
+        WatchedConfigMap answer = configMaps.computeIfAbsent(namespace + "/" + name, k -> new WatchedConfigMap(namespace, name));
+        answer.lastAccess = System.currentTimeMillis();
+        evictLeastRecentlyUsed();
+        return answer;
+    }
+
+    protected void evictIdleConfigMaps() {
+        long now = System.currentTimeMillis();
+        Iterator<WatchedConfigMap> iter = configMaps.values().iterator();
+        while (iter.hasNext()) {
+            WatchedConfigMap watched = iter.next();
+            if (now - watched.lastAccess > idleTimeout) {
+                iter.remove();
+                watched.evict();
+            }
+        }
+    }
+
+    protected void evictLeastRecentlyUsed() {
+        while (configMaps.size() > maxSize) {
+            Map.Entry<String, WatchedConfigMap> oldest = null;
+            for (Map.Entry<String, WatchedConfigMap> entry : configMaps.entrySet()) {
+                if (oldest == null || entry.getValue().lastAccess < oldest.getValue().lastAccess) {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            if (configMaps.remove(oldest.getKey(), oldest.getValue())) {
+                oldest.getValue().evict();
+            }
+        }
+    }
+
+    /**
+     * Performs the GET of the ConfigMap
+     */
+    protected ConfigMap getResource(KubernetesClient client, String namespace, String name) {
+        return client.configMaps().inNamespace(namespace).withName(name).get();
+    }
+
+    /**
+     * Watches the ConfigMap from the given resource version or from now if it is null
+     */
+    protected Watch watchResource(KubernetesClient client, String namespace, String name, String resourceVersion, Watcher<ConfigMap> watcher) {
+        if (resourceVersion != null) {
+            return client.configMaps().inNamespace(namespace).withName(name).watch(resourceVersion, watcher);
+        }
+        return client.configMaps().inNamespace(namespace).withName(name).watch(watcher);
+    }
+
+    protected static String resourceVersion(ConfigMap configMap) {
+        if (configMap != null) {
+            ObjectMeta metadata = configMap.getMetadata();
+            if (metadata != null) {
+                return metadata.getResourceVersion();
+            }
+        }
+        return null;
+    }
+
+    protected static PipelineConfiguration copy(PipelineConfiguration configuration) {
+        PipelineConfiguration answer = new PipelineConfiguration();
+        Map<String, String> data = configuration.getData();
+        answer.setData(data != null ? new LinkedHashMap<>(data) : null);
+        Map<String, PipelineKind> jobNameToKindMap = configuration.getJobNameToKindMap();
+        answer.setJobNameToKindMap(jobNameToKindMap != null ? new LinkedHashMap<>(jobNameToKindMap) : null);
+        answer.setCiBranchPatterns(copy(configuration.getCiBranchPatterns()));
+        answer.setCdBranchPatterns(copy(configuration.getCdBranchPatterns()));
+        Map<String, List<String>> cdBranchPatterns = configuration.getCdGitHostAndOrganisationToBranchPatterns();
+        if (cdBranchPatterns != null) {
+            Map<String, List<String>> map = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> entry : cdBranchPatterns.entrySet()) {
+                map.put(entry.getKey(), copy(entry.getValue()));
+            }
+            answer.setCdGitHostAndOrganisationToBranchPatterns(map);
+        } else {
+            answer.setCdGitHostAndOrganisationToBranchPatterns(null);
+        }
+        answer.setDisableITestsCD(configuration.isDisableITestsCD());
+        answer.setDisableITestsCI(configuration.isDisableITestsCI());
+        answer.setUseDockerSocketFlag(configuration.getUseDockerSocketFlag());
+        answer.setSpaceNamespace(configuration.getSpaceNamespace());
+        return answer;
+    }
+
+    private static List<String> copy(List<String> list) {
+        return list != null ? new ArrayList<>(list) : null;
+    }
+
+    protected class WatchedConfigMap implements Watcher<ConfigMap> {
+        private final String namespace;
+        private final String name;
+        private volatile ConfigMap configMap;
+        private volatile boolean synced;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private boolean evicted;
+        private Watch watch;
+        private PipelineConfiguration pipelineConfiguration;
+        private String pipelineConfigurationVersion;
+
+        public WatchedConfigMap(String namespace, String name) {
+            this.namespace = namespace;
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return "WatchedConfigMap{" + namespace + "/" + name + '}';
+        }
+
+        public synchronized ConfigMap get(KubernetesClient client) {
+            if (!synced) {
+                close();
+                configMap = getResource(client, namespace, name);
+                if (evicted) {
+                    // a caller which looked this up before it was evicted must not open a watch nobody will close
+                    return configMap;
+                }
+                try {
+                    watch = watchResource(client, namespace, name, resourceVersion(configMap), this);
+                    synced = true;
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Failed to watch ConfigMap " + namespace + "/" + name + " so will GET it again next time: " + e, e);
+                }
+            }
+            return configMap;
+        }
+        public synchronized PipelineConfiguration getPipelineConfiguration(KubernetesClient client) {
+            ConfigMap current = get(client);
+            String version = resourceVersion(current);
+            if (pipelineConfiguration == null || version == null || !version.equals(pipelineConfigurationVersion)) {
+                PipelineConfiguration answer = current != null ? PipelineConfiguration.getPipelineConfiguration(current) : PipelineConfiguration.createDefault();
+                answer.setSpaceNamespace(namespace);
+                pipelineConfiguration = answer;
+                pipelineConfigurationVersion = version;
+            }
+            return pipelineConfiguration;
+        }
+
+        /**
+         * Closes the watch for good once the ConfigMap has been removed from the cache
+         */
+        public synchronized void evict() {
+            evicted = true;
+            close();
+        }
+
+        public synchronized void close() {
+            synced = false;
+            if (watch != null) {
+                try {
+                    watch.close();
+                } catch (Exception e) {
+                    LOG.log(Level.FINE, "Failed to close watch on " + this + ": " + e, e);
+                }
+                watch = null;
+            }
+        }
+
+        @Override
+        public void eventReceived(Action action, ConfigMap resource) {
+            switch (action) {
+                case ADDED:
+                case MODIFIED:
+                    configMap = resource;
+                    break;
+                case DELETED:
+                    configMap = null;
+                    break;
+                default:
+                    synced = false;
+            }
+        }
+
+        @Override
+        public void onClose(KubernetesClientException cause) {
+            if (cause != null) {
+                LOG.log(Level.INFO, "Watch on ConfigMap " + namespace + "/" + name + " closed: " + cause, cause);
+            }
+            synced = false;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.kubernetes;
+
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.Resource;
+import io.fabric8.openshift.api.model.DoneableImageStream;
+import io.fabric8.openshift.api.model.ImageStream;
+import io.fabric8.openshift.api.model.ImageStreamStatus;
+import io.fabric8.openshift.api.model.NamedTagEventList;
+import io.fabric8.openshift.api.model.TagEvent;
+import io.fabric8.openshift.client.OpenShiftClient;
+import io.fabric8.utils.Strings;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resolves the latest image of an {@link ImageStream} by watching it until a {@link TagEvent} with an image appears
+ * rather than polling it.
+ */
+public class ImageStreamTagResolver implements Watcher<ImageStream> {
+    private static final Logger LOG = Logger.getLogger(ImageStreamTagResolver.class.getName());
+
+    public static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toMillis(15);
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile ImageStream imageStream;
+    private volatile String image;
+
+    /**
+     * Waits up to the given timeout for the image stream to have a tag with an image
+     *
+     * @return the resolution which contains the image if one was found
+     */
+    public static Resolution resolve(OpenShiftClient client, String namespace, String imageStreamName, long timeoutMillis) {
+        Resource<ImageStream, DoneableImageStream> resource;
+        if (Strings.isNotBlank(namespace)) {
+            resource = client.imageStreams().inNamespace(namespace).withName(imageStreamName);
+        } else {
+            resource = client.imageStreams().withName(imageStreamName);
+        }
+        return resolve(imageStreamName, resource::get, watcher -> resource.watch(watcher), timeoutMillis);
+    }
+
+    /**
+     * Watches then gets the image stream using the given functions, waiting up to the timeout for a tag with an image
+     */
+    protected static Resolution resolve(String imageStreamName, Supplier<ImageStream> get, Function<Watcher<ImageStream>, Watch> watcher, long timeoutMillis) {
+        ImageStreamTagResolver resolver = new ImageStreamTagResolver();
+
+        // lets start watching before the GET so that we cannot miss an update
+        Watch watch = null;
+        try {
+            watch = watcher.apply(resolver);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to watch ImageStream " + imageStreamName + " so only using GET: " + e, e);
+        }
+        try {
+            resolver.onImageStream(get.get());
+            if (watch != null && resolver.image == null) {
+                try {
+                    resolver.latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (resolver.image == null) {
+                    // the watch may have closed early so lets check one last time
+                    resolver.onImageStream(get.get());
+                }
+            }
+        } finally {
+            if (watch != null) {
+                watch.close();
+            }
+        }
+        return new Resolution(resolver.imageStream, resolver.image);
+    }
+
+    /**
+     * Returns the image of the latest {@link TagEvent} in the image stream or null if there is none
+     */
+    public static String findLatestImage(ImageStream imageStream) {
+        if (imageStream == null) {
+            return null;
+        }
+        ImageStreamStatus status = imageStream.getStatus();
+        if (status == null) {
+            return null;
+        }
+        List<NamedTagEventList> tags = status.getTags();
+        if (tags == null) {
+            return null;
+        }
+
+        // latest tag is the first
+        for (NamedTagEventList list : tags) {
+            List<TagEvent> items = list.getItems();
+            if (items == null) {
+                continue;
+            }
+
+            // latest item is the first
+            for (TagEvent item : items) {
+                String image = item.getImage();
+                if (image != null && !image.equals("")) {
+                    return image;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void eventReceived(Action action, ImageStream resource) {
+        if (action == Action.ADDED || action == Action.MODIFIED) {
+            onImageStream(resource);
+        }
+    }
+
+    @Override
+    public void onClose(KubernetesClientException cause) {
+        if (cause != null) {
+            LOG.log(Level.FINE, "Watch on ImageStream closed: " + cause, cause);
+        }
+        latch.countDown();
+    }
+
+    protected void onImageStream(ImageStream resource) {
+        if (resource == null) {
+            return;
+        }
+        imageStream = resource;
+        String latest = findLatestImage(resource);
+        if (latest != null) {
+            image = latest;
+            latch.countDown();
+        }
+    }
+
+    /**
+     * The result of resolving the image of an image stream
+     */
+    public static class Resolution {
+        private final ImageStream imageStream;
+        private final String image;
+
+        public Resolution(ImageStream imageStream, String image) {
+            this.imageStream = imageStream;
+            this.image = image;
+        }
+
+        /**
+         * Returns the last seen image stream or null if it was not found
+         */
+        public ImageStream getImageStream() {
+            return imageStream;
+        }
+
+        /**
+         * Returns the latest image or null if no tag was found before the timeout
+         */
+        public String getImage() {
+            return image;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.kubernetes;
+
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.utils.HttpClientUtils;
+import io.fabric8.openshift.client.DefaultOpenShiftClient;
+import io.fabric8.openshift.client.OpenShiftClient;
+import io.fabric8.openshift.client.OpenShiftConfig;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A controller wide registry of {@link KubernetesClient} and {@link OpenShiftClient} instances keyed by the master URL
+ * and credentials so that steps reuse warm HTTP connections rather than creating a new client each time.
+ * <p>
+ * All clients share a single OkHttp {@link Dispatcher} and {@link ConnectionPool}. Clients which have not been
+ * requested for {@link #getIdleTimeoutMillis()} are evicted from the registry the next time the pool is accessed.
+ * Clients are shared, so callers must not close them; evicted clients are never closed either as a step may still be
+ * using them and closing a client would shut down the shared dispatcher.
+ */
+public class KubernetesClientPool {
+    private static final Logger LOG = Logger.getLogger(KubernetesClientPool.class.getName());
+
+    private static final KubernetesClientPool instance = new KubernetesClientPool();
+
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+    public static final long DEFAULT_CONFIG_REFRESH = TimeUnit.MINUTES.toMillis(1);
+
+    private final Dispatcher dispatcher = new Dispatcher();
+    private final ConnectionPool connectionPool = new ConnectionPool(10, 5, TimeUnit.MINUTES);
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT;
+    private long configRefreshMillis = DEFAULT_CONFIG_REFRESH;
+    private Config defaultConfig;
+    private long defaultConfigLoadTime;
+
+    public KubernetesClientPool() {
+        dispatcher.setMaxRequests(128);
+        dispatcher.setMaxRequestsPerHost(64);
+    }
+
+    public static KubernetesClientPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the shared client for the default configuration of this controller
+     */
+    public KubernetesClient getKubernetesClient() {
+        return getKubernetesClient(getDefaultConfig());
+    }
+
+    /**
+     * Returns the shared client for the given configuration
+     */
+    public KubernetesClient getKubernetesClient(Config config) {
+        return getEntry(config).getKubernetesClient();
+    }
+
+    /**
+     * Returns the shared OpenShift client for the default configuration of this controller
+     */
+    public OpenShiftClient getOpenShiftClient() {
+        return getOpenShiftClient(getDefaultConfig());
+    }
+
+    /**
+     * Returns the shared OpenShift client for the given configuration
+     */
+    public OpenShiftClient getOpenShiftClient(Config config) {
+        return getEntry(config).getOpenShiftClient();
+    }
+
+    /**
+     * Returns true if the default cluster is OpenShift; the result is cached for the lifetime of the pooled client
+     */
+    public boolean isOpenShift() {
+        return getEntry(getDefaultConfig()).isOpenShift();
+    }
+
+    /**
+     * Removes all clients from the pool
+     */
+    public synchronized void clear() {
+        entries.clear();
+        defaultConfig = null;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public long getConfigRefreshMillis() {
+        return configRefreshMillis;
+    }
+
+    public void setConfigRefreshMillis(long configRefreshMillis) {
+        this.configRefreshMillis = configRefreshMillis;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected synchronized Entry getEntry(Config config) {
+        long now = System.currentTimeMillis();
+        evictIdleEntries(now);
+        String key = createKey(config);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(config);
+            entries.put(key, entry);
+            LOG.fine("Created pooled kubernetes client for " + config.getMasterUrl());
+        }
+        entry.lastUsed = now;
+        return entry;
+    }
+
+    /**
+     * Returns the auto configured {@link Config}, only parsing the kube config and service account files again
+     * after {@link #getConfigRefreshMillis()} so that rotated tokens are picked up
+     */
+    protected synchronized Config getDefaultConfig() {
+        long now = System.currentTimeMillis();
+        if (defaultConfig == null || now - defaultConfigLoadTime > configRefreshMillis) {
+            defaultConfig = new ConfigBuilder().build();
+            defaultConfigLoadTime = now;
+        }
+        return defaultConfig;
+    }
+
+    protected void evictIdleEntries(long now) {
+        Iterator<Entry> iter = entries.values().iterator();
+        while (iter.hasNext()) {
+            Entry entry = iter.next();
+            if (now - entry.lastUsed > idleTimeoutMillis) {
+                LOG.fine("Evicting idle pooled kubernetes client for " + entry.config.getMasterUrl());
+                iter.remove();
+            }
+        }
+    }
+
+    protected static String createKey(Config config) {
+        String credentials = config.getUsername() + "|" + config.getPassword() + "|" + config.getOauthToken() + "|"
+                + config.getClientCertFile() + "|" + config.getClientCertData() + "|"
+                + config.getClientKeyFile() + "|" + config.getClientKeyData();
+        return config.getMasterUrl() + "|" + DigestUtils.sha256Hex(credentials);
+    }
+
+    protected OkHttpClient createHttpClient(Config config) {
+        return HttpClientUtils.createHttpClient(config).newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(connectionPool)
+                .build();
+    }
+
+    protected class Entry {
+        private final Config config;
+        private KubernetesClient kubernetesClient;
+        private OpenShiftClient openShiftClient;
+        private Boolean openShift;
+        private long lastUsed;
+
+        protected Entry(Config config) {
+            this.config = config;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "masterUrl='" + config.getMasterUrl() + '\'' +
+                    '}';
+        }
+
+        protected synchronized KubernetesClient getKubernetesClient() {
+            if (kubernetesClient == null) {
+                kubernetesClient = new DefaultKubernetesClient(createHttpClient(config), config);
+            }
+            return kubernetesClient;
+        }
+
+        protected synchronized OpenShiftClient getOpenShiftClient() {
+            if (openShiftClient == null) {
+                openShiftClient = new DefaultOpenShiftClient(createHttpClient(config), OpenShiftConfig.wrap(config));
+            }
+            return openShiftClient;
+        }
+
+        protected synchronized boolean isOpenShift() {
+            if (openShift == null) {
+                try {
+                    openShift = getOpenShiftClient().isAdaptable(OpenShiftClient.class);
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Failed to detect if " + config.getMasterUrl() + " is OpenShift: " + e, e);
+                    return false;
+                }
+            }
+            return openShift.booleanValue();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.kubernetes;
+
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.dsl.ExecWatch;
+import io.fabric8.kubernetes.client.dsl.PodResource;
+import io.fabric8.kubernetes.api.model.DoneablePod;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.utils.Strings;
+import org.jenkinsci.plugins.fabric8.ShellSession;
+import org.jenkinsci.plugins.fabric8.ShellSessions;
+
+import java.io.IOException;
+
+/**
+ * Opens {@link ShellSession}s with a single exec stream into a named container of the pod of a Kubernetes agent,
+ * changing to the workspace directory once when the session starts
+ */
+public class PodShellSessionOpener implements ShellSessions.Opener {
+    private final KubernetesClient client;
+    private final String namespace;
+    private final String podName;
+    private final String directory;
+
+    public PodShellSessionOpener(KubernetesClient client, String namespace, String podName, String directory) {
+        this.client = client;
+        this.namespace = namespace;
+        this.podName = podName;
+        this.directory = directory;
+    }
+
+    @Override
+    public ShellSession open(String containerName) throws IOException {
+        if (Strings.isNullOrBlank(containerName)) {
+            // the default container of the pod may not be the container the pipeline is running commands in
+            throw new IOException("No container name given for a shell in pod " + podName);
+        }
+        PodResource<Pod, DoneablePod> pod = client.pods().inNamespace(namespace).withName(podName);
+        ExecWatch watch = pod.inContainer(containerName).redirectingInput().redirectingOutput().exec("sh");
+        ShellSession session = new ShellSession(watch.getInput(), watch.getOutput(), watch::close);
+        try {
+            // this also checks the exec stream works before any real command is sent
+            session.changeDirectory(Strings.isNotBlank(directory) ? directory : ".");
+        } catch (IOException | RuntimeException e) {
+            session.close();
+            throw new IOException("Failed to start shell in pod " + podName + " container " + containerName + ": " + e, e);
+        }
+        return session;
+    }
+
+    @Override
+    public String toString() {
+        return "PodShellSessionOpener{" + namespace + "/" + podName + "}";
+    }
+}
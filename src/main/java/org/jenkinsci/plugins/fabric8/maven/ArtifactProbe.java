@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks if an artifact exists in a repository using a HEAD request, falling back to a ranged GET for repositories
+ * which do not support HEAD, without downloading the artifact.
+ * <p>
+ * Response bodies are always drained and closed rather than disconnected so that the JDK keeps the connection alive
+ * for the next probe of the same repository.
+ */
+public class ArtifactProbe implements AvailabilityWatcher.Probe {
+    public static final int DEFAULT_CONNECT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(10);
+    public static final int DEFAULT_READ_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(30);
+
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private int readTimeout = DEFAULT_READ_TIMEOUT;
+
+    public enum Status {
+        AVAILABLE, NOT_FOUND, SERVER_ERROR, TIMEOUT, ERROR;
+
+        /**
+         * Classifies the HTTP response code
+         */
+        public static Status fromResponseCode(int code) {
+            if (code >= 200 && code < 300) {
+                return AVAILABLE;
+            } else if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+                return NOT_FOUND;
+            } else if (code == HttpURLConnection.HTTP_CLIENT_TIMEOUT || code == HttpURLConnection.HTTP_GATEWAY_TIMEOUT) {
+                return TIMEOUT;
+            } else if (code >= 500) {
+                return SERVER_ERROR;
+            }
+            return ERROR;
+        }
+    }
+
+    @Override
+    public Result probe(String url) {
+        long start = System.currentTimeMillis();
+        try {
+            int code = request(url, "HEAD");
+            if (code == HttpURLConnection.HTTP_BAD_METHOD || code == HttpURLConnection.HTTP_NOT_IMPLEMENTED || code == HttpURLConnection.HTTP_FORBIDDEN) {
+                // some repositories and proxies do not support HEAD
+                code = request(url, "GET");
+                return new Result(url, "GET", code, Status.fromResponseCode(code), System.currentTimeMillis() - start, null);
+            }
+            return new Result(url, "HEAD", code, Status.fromResponseCode(code), System.currentTimeMillis() - start, null);
+        } catch (SocketTimeoutException e) {
+            return new Result(url, null, -1, Status.TIMEOUT, System.currentTimeMillis() - start, e);
+        } catch (IOException e) {
+            return new Result(url, null, -1, Status.ERROR, System.currentTimeMillis() - start, e);
+        }
+    }
+
+    protected int request(String url, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setInstanceFollowRedirects(true);
+        if ("GET".equals(method)) {
+            connection.setRequestProperty("Range", "bytes=0-0");
+        }
+        int code = connection.getResponseCode();
+        InputStream body = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (body != null) {
+            try (InputStream in = body) {
+                byte[] buffer = new byte[4096];
+                // a server which ignores the Range header may stream the whole artifact so only drain small bodies
+                long remaining = 64 * 1024;
+                int count;
+                while (remaining > 0 && (count = in.read(buffer)) >= 0) {
+                    remaining -= count;
+                }
+            }
+        }
+        return code;
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * The outcome of probing a URL
+     */
+    public static class Result {
+        private final String url;
+        private final String method;
+        private final int responseCode;
+        private final Status status;
+        private final long latencyMillis;
+        private final Exception failure;
+
+        public Result(String url, String method, int responseCode, Status status, long latencyMillis, Exception failure) {
+            this.url = url;
+            this.method = method;
+            this.responseCode = responseCode;
+            this.status = status;
+            this.latencyMillis = latencyMillis;
+            this.failure = failure;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(status.name());
+            if (responseCode > 0) {
+                builder.append(" (").append(method).append(" ").append(responseCode).append(")");
+            }
+            if (failure != null) {
+                builder.append(" ").append(failure);
+            }
+            return builder.append(" in ").append(latencyMillis).append("ms").toString();
+        }
+
+        public boolean isAvailable() {
+            return status == Status.AVAILABLE;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public Exception getFailure() {
+            return failure;
+        }
+    }
+}
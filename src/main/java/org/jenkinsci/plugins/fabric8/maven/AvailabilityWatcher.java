@@ -0,0 +1,381 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.jenkinsci.plugins.fabric8.support.WaitScheduler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A controller wide service which checks if URLs in a repository, such as released artifacts in maven central, are available.
+ * <p>
+ * No matter how many builds are waiting on the same URL it is only requested at most once every {@link #getPollInterval()};
+ * builds which {@link #subscribe(String, Runnable)} share a single poll loop per URL and are all notified as soon as the
+ * URL becomes available. Once available a URL is assumed to stay available.
+ * <p>
+ * Probes run on a bounded pool of their own rather than on the {@link WaitScheduler} timer threads and listeners
+ * are notified on that pool too, so neither a slow repository nor a slow listener can delay other timers.
+ */
+public class AvailabilityWatcher {
+    private static final Logger LOG = Logger.getLogger(AvailabilityWatcher.class.getName());
+
+    private static final AvailabilityWatcher instance = new AvailabilityWatcher();
+
+    public static final long DEFAULT_POLL_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+    private static final int PROBE_THREADS = Integer.getInteger(AvailabilityWatcher.class.getName() + ".probeThreads", 16);
+
+    private static final ExecutorService probeExecutor = createProbeExecutor();
+
+    private final Map<String, Poller> pollers = new ConcurrentHashMap<>();
+    private long pollInterval = DEFAULT_POLL_INTERVAL;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private Probe probe = new ArtifactProbe();
+
+    public static AvailabilityWatcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns true if the URL is available; performing a request only if the URL has not been checked within the poll interval
+     */
+    public boolean isAvailable(String url) {
+        return check(url).isAvailable();
+    }
+
+    /**
+     * Returns the result of probing the URL; which may be the cached result of another caller if the URL is available
+     * or was checked within the poll interval
+     */
+    public ArtifactProbe.Result check(String url) {
+        evictIdlePollers();
+        Poller poller = getPoller(url);
+        poller.lastAccess = System.currentTimeMillis();
+        return poller.checkIfStale();
+    }
+
+    /**
+     * Checks all of the URLs concurrently using at most the given number of threads from a controller wide bounded
+     * pool so that builds do not create threads on every check
+     *
+     * @return the results keyed by URL in the order of the given URLs
+     */
+    public Map<String, ArtifactProbe.Result> checkAll(Collection<String> urls, int parallelism) throws InterruptedException, ExecutionException {
+        final List<String> list = new ArrayList<>(urls);
+        final ArtifactProbe.Result[] results = new ArtifactProbe.Result[list.size()];
+        int tasks = Math.max(1, Math.min(parallelism, list.size()));
+        if (tasks == 1) {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = check(list.get(i));
+            }
+        } else {
+            // each task checks every nth URL so that a check never uses more threads than the parallelism
+            List<Callable<Void>> callables = new ArrayList<>();
+            for (int t = 0; t < tasks; t++) {
+                final int first = t;
+                final int step = tasks;
+                callables.add(() -> {
+                    for (int i = first; i < results.length; i += step) {
+                        results[i] = check(list.get(i));
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : probeExecutor.invokeAll(callables)) {
+                future.get();
+            }
+        }
+        Map<String, ArtifactProbe.Result> answer = new LinkedHashMap<>();
+        for (int i = 0; i < results.length; i++) {
+            answer.put(list.get(i), results[i]);
+        }
+        return answer;
+    }
+
+    /**
+     * Invokes the listener once the URL is available, polling the URL until then if no other subscriber is doing so already
+     *
+     * @return the subscription which should be closed if the caller stops waiting
+     */
+    public Closeable subscribe(String url, Runnable listener) {
+        evictIdlePollers();
+        Poller poller = getPoller(url);
+        poller.lastAccess = System.currentTimeMillis();
+        poller.addListener(listener);
+        return () -> poller.listeners.remove(listener);
+    }
+
+    /**
+     * Invokes the listener each time one of the URLs becomes available
+     *
+     * @return the subscription to all of the URLs which should be closed if the caller stops waiting
+     */
+    public Closeable subscribe(Collection<String> urls, Runnable listener) {
+        List<Closeable> subscriptions = new ArrayList<>();
+        for (String url : urls) {
+            subscriptions.add(subscribe(url, listener));
+        }
+        return () -> {
+            for (Closeable subscription : subscriptions) {
+                subscription.close();
+            }
+        };
+    }
+
+    /**
+     * Blocks until the URL is available or the timeout expires
+     *
+     * @return true if the URL is available
+     */
+    public boolean awaitAvailable(String url, long timeout, TimeUnit unit) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        try (Closeable ignored = subscribe(url, latch::countDown)) {
+            return latch.await(timeout, unit);
+        } catch (IOException e) {
+            return isAvailable(url);
+        }
+    }
+
+    /**
+     * Removes all cached results and stops polling
+     */
+    public void clear() {
+        for (Poller poller : pollers.values()) {
+            poller.stop();
+        }
+        pollers.clear();
+    }
+
+    public int size() {
+        return pollers.size();
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    public void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public Probe getProbe() {
+        return probe;
+    }
+
+    public void setProbe(Probe probe) {
+        this.probe = probe;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    private static ExecutorService createProbeExecutor() {
+        ThreadPoolExecutor answer = new ThreadPoolExecutor(PROBE_THREADS, PROBE_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamingThreadFactory(new DaemonThreadFactory(), "fabric8-pipelines-probe"));
+        answer.allowCoreThreadTimeOut(true);
+        return answer;
+    }
+
+    protected Poller getPoller(String url) {
+        return pollers.computeIfAbsent(url, Poller::new);
+    }
+
+    protected void evictIdlePollers() {
+        long now = System.currentTimeMillis();
+        Iterator<Poller> iter = pollers.values().iterator();
+        while (iter.hasNext()) {
+            Poller poller = iter.next();
+            if (poller.listeners.isEmpty() && now - poller.lastAccess > idleTimeout) {
+                poller.stop();
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Checks if a URL is available
+     */
+    public interface Probe {
+        ArtifactProbe.Result probe(String url);
+    }
+
+    protected class Poller implements Runnable {
+        private final String url;
+        private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+        private volatile boolean available;
+        private volatile ArtifactProbe.Result lastResult;
+        private volatile long lastChecked;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private ScheduledFuture<?> task;
+        private CompletableFuture<ArtifactProbe.Result> inflight;
+
+        public Poller(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public String toString() {
+            return "Poller{" + url + ", available=" + available + ", listeners=" + listeners.size() + '}';
+        }
+
+        /**
+         * Invoked by the timer which only hands the probe off to the probe pool
+         */
+        @Override
+        public void run() {
+            probeExecutor.execute(() -> {
+                try {
+                    checkIfStale();
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Failed to probe " + url + ": " + e, e);
+                }
+                stopIfDone();
+            });
+        }
+
+        /**
+         * Checks the URL unless it is already known to be available or another caller checked it within the poll interval.
+         * The probe is performed without holding the lock of the poller; concurrent callers wait for the same probe
+         */
+        protected ArtifactProbe.Result checkIfStale() {
+            CompletableFuture<ArtifactProbe.Result> current;
+            boolean owner = false;
+            synchronized (this) {
+                if (lastResult != null && (available || System.currentTimeMillis() - lastChecked < pollInterval)) {
+                    return lastResult;
+                }
+                if (inflight == null) {
+                    inflight = new CompletableFuture<>();
+                    owner = true;
+                }
+                current = inflight;
+            }
+            if (owner) {
+                return probe(current);
+            }
+            try {
+                return current.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        protected ArtifactProbe.Result probe(CompletableFuture<ArtifactProbe.Result> future) {
+            ArtifactProbe.Result result;
+            try {
+                result = probe.probe(url);
+            } catch (RuntimeException | Error e) {
+                synchronized (this) {
+                    inflight = null;
+                }
+                future.completeExceptionally(e);
+                throw e;
+            }
+            LOG.fine("Probed " + url + ": " + result);
+            boolean notify;
+            synchronized (this) {
+                lastResult = result;
+                lastChecked = System.currentTimeMillis();
+                available = result.isAvailable();
+                inflight = null;
+                notify = available;
+            }
+            future.complete(result);
+            if (notify) {
+                notifyListeners();
+            }
+            return result;
+        }
+
+        /**
+         * Notifies each listener once on the probe pool
+         */
+        protected void notifyListeners() {
+            for (Runnable listener : listeners) {
+                if (!listeners.remove(listener)) {
+                    continue;
+                }
+                probeExecutor.execute(() -> {
+                    try {
+                        listener.run();
+                    } catch (Exception e) {
+                        LOG.log(Level.WARNING, "Listener failed for " + url + ": " + e, e);
+                    }
+                });
+            }
+        }
+
+        protected synchronized void addListener(Runnable listener) {
+            listeners.add(listener);
+            if (available) {
+                notifyListeners();
+            } else if (task == null) {
+                task = WaitScheduler.get().scheduleWithFixedDelay(this, 0, pollInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        protected synchronized void stopIfDone() {
+            if (available || listeners.isEmpty()) {
+                stop();
+            }
+        }
+
+        protected synchronized void stop() {
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import io.fabric8.utils.Strings;
+
+import java.io.Serializable;
+
+/**
+ * The coordinates of a maven artifact which can be parsed from <code>groupId:artifactId:version</code> or
+ * <code>groupId:artifactId:extension:version</code>
+ */
+public class MavenCoordinates implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String groupId;
+    private final String artifactId;
+    private final String extension;
+    private final String version;
+
+    public MavenCoordinates(String groupId, String artifactId, String extension, String version) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.extension = Strings.isNotBlank(extension) ? extension : "jar";
+        this.version = version;
+    }
+
+    /**
+     * Parses the coordinates using the default version if none is specified
+     */
+    public static MavenCoordinates parse(String text, String defaultVersion) {
+        String[] values = text.trim().split(":");
+        switch (values.length) {
+            case 2:
+                return new MavenCoordinates(values[0], values[1], null, defaultVersion);
+            case 3:
+                return new MavenCoordinates(values[0], values[1], null, values[2]);
+            case 4:
+                return new MavenCoordinates(values[0], values[1], values[2], values[3]);
+            default:
+                throw new IllegalArgumentException("Invalid maven coordinates '" + text + "'. Expected groupId:artifactId[:extension]:version");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return groupId + ":" + artifactId + ":" + extension + ":" + version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return toString().equals(o.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    /**
+     * Returns the URL of the artifact in the given repository
+     */
+    public String toUrl(String repositoryUrl) {
+        return Strings.stripSuffix(repositoryUrl, "/") + "/" + groupId.replace('.', '/') + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + "." + extension;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+}
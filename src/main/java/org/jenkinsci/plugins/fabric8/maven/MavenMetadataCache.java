@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import io.fabric8.utils.IOHelpers;
+import org.jenkinsci.plugins.fabric8.Logger;
+import org.jenkinsci.plugins.fabric8.helpers.DomUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A controller wide cache of <code>maven-metadata.xml</code> files keyed by URL.
+ * <p>
+ * Entries are used without any request for {@link #getTimeToLive()}; after that they are revalidated with a conditional
+ * GET using the <code>ETag</code> and <code>Last-Modified</code> headers. The least recently used entries are evicted
+ * when there are more than {@link #getMaxEntries()}.
+ */
+public class MavenMetadataCache {
+    private static final MavenMetadataCache instance = new MavenMetadataCache();
+
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(5);
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final int TIMEOUT = (int) TimeUnit.SECONDS.toMillis(30);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private long timeToLive = DEFAULT_TIME_TO_LIVE;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    public static MavenMetadataCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the text of the first element with the given name in the metadata at the URL or null if it could not
+     * be loaded or does not contain the element
+     */
+    public String getFirstElementText(Logger logger, String url, String elementName) {
+        Entry entry;
+        try {
+            entry = getEntry(url);
+        } catch (Exception e) {
+            logger.error("Failed to load " + url, e);
+            return null;
+        }
+        return entry.getFirstElementText(logger, url, elementName);
+    }
+
+    /**
+     * Removes all the entries and resets the statistics
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits.set(0);
+        misses.set(0);
+        revalidations.set(0);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "MavenMetadataCache{" +
+                "size=" + size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", revalidations=" + revalidations +
+                '}';
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    /**
+     * Returns the number of lookups which were answered without a request
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups which downloaded the metadata
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of lookups which were answered by a <code>304 Not Modified</code> response
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    // Implementation methods
+    //-------------------------------------------------------------------------
+
+    protected Entry getEntry(String url) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(url);
+        }
+        long now = System.currentTimeMillis();
+        if (entry != null && now - entry.validatedAt < timeToLive) {
+            hits.incrementAndGet();
+            return entry;
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        if (entry != null) {
+            if (entry.etag != null) {
+                connection.setRequestProperty("If-None-Match", entry.etag);
+            }
+            if (entry.lastModified > 0) {
+                connection.setIfModifiedSince(entry.lastModified);
+            }
+        }
+        int code = connection.getResponseCode();
+        byte[] body = null;
+        // lets always consume the response so that the JDK can reuse the keep-alive connection
+        InputStream in = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        try {
+            if (code == HttpURLConnection.HTTP_OK && in != null) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                IOHelpers.copy(in, buffer);
+                body = buffer.toByteArray();
+            }
+        } finally {
+            drainAndClose(in);
+        }
+        if (entry != null && code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            revalidations.incrementAndGet();
+            entry.validatedAt = now;
+            return entry;
+        }
+        if (body == null) {
+            throw new IOException("Server returned HTTP response code: " + code + " for URL: " + url);
+        }
+        misses.incrementAndGet();
+        Entry answer = new Entry(body, connection.getHeaderField("ETag"), connection.getLastModified(), now);
+        synchronized (this) {
+            entries.put(url, answer);
+        }
+        return answer;
+    }
+
+    protected static void drainAndClose(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try (InputStream body = in) {
+            byte[] buffer = new byte[4096];
+            while (body.read(buffer) >= 0) {
+                // discard
+            }
+        } catch (IOException e) {
+            // the connection will just not be reused
+        }
+    }
+
+    protected static class Entry {
+        private final byte[] body;
+        private final String etag;
+        private final long lastModified;
+        private final Map<String, String> elementTexts = new ConcurrentHashMap<>();
+        private volatile long validatedAt;
+
+        public Entry(byte[] body, String etag, long lastModified, long validatedAt) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.validatedAt = validatedAt;
+        }
+
+        public String getFirstElementText(Logger logger, String url, String elementName) {
+            String answer = elementTexts.get(elementName);
+            if (answer == null) {
+                answer = DomUtils.firstElementText(logger, new ByteArrayInputStream(body), elementName, url);
+                if (answer != null) {
+                    elementTexts.put(elementName, answer);
+                }
+            }
+            return answer;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.utils.IOHelpers;
+import org.apache.commons.codec.binary.Base64;
+import org.jenkinsci.plugins.fabric8.WaitStrategy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A client for the Nexus staging REST API which lists, closes, releases and drops staging repositories in process
+ * rather than starting a maven build with the <code>nexus-staging-maven-plugin</code> for each operation.
+ * <p>
+ * Closing and releasing are asynchronous in Nexus and the repository may still report its old state for a moment
+ * after the request, so the client waits for the transition to start before polling the staging repository until it
+ * is no longer transitioning and then checks it reached the expected state.
+ */
+public class NexusStagingClient {
+    private static final Logger LOG = Logger.getLogger(NexusStagingClient.class.getName());
+
+    public static final String DEFAULT_NEXUS_URL = "https://oss.sonatype.org";
+    public static final long DEFAULT_TIMEOUT = TimeUnit.MINUTES.toMillis(60);
+    public static final int DEFAULT_CONNECT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_READ_TIMEOUT = (int) TimeUnit.MINUTES.toMillis(5);
+    public static final long DEFAULT_TRANSITION_DELAY = TimeUnit.SECONDS.toMillis(3);
+    public static final long DEFAULT_TRANSITION_START_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+
+    public static final String OPEN = "open";
+    public static final String CLOSED = "closed";
+    public static final String RELEASED = "released";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String nexusUrl;
+    private final String authorization;
+    private WaitStrategy pollStrategy = WaitStrategy.exponential(TimeUnit.SECONDS.toMillis(2), TimeUnit.SECONDS.toMillis(30));
+    private long transitionDelay = DEFAULT_TRANSITION_DELAY;
+    private long transitionStartTimeout = DEFAULT_TRANSITION_START_TIMEOUT;
+
+    public NexusStagingClient(String nexusUrl, String username, String password) {
+        this.nexusUrl = nexusUrl.endsWith("/") ? nexusUrl.substring(0, nexusUrl.length() - 1) : nexusUrl;
+        this.authorization = "Basic " + Base64.encodeBase64String((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String toString() {
+        return "NexusStagingClient{" + nexusUrl + '}';
+    }
+
+    /**
+     * Returns all the staging repositories of the user
+     */
+    public List<StagingRepository> list() throws IOException {
+        List<StagingRepository> answer = new ArrayList<>();
+        JsonNode json = request("GET", "/service/local/staging/profile_repositories", null);
+        for (JsonNode data : json.path("data")) {
+            answer.add(new StagingRepository(data));
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the staging repository or null if it does not exist
+     */
+    public StagingRepository getRepository(String repositoryId) throws IOException {
+        JsonNode json = request("GET", "/service/local/staging/repository/" + repositoryId, null);
+        return json != null ? new StagingRepository(json) : null;
+    }
+
+    /**
+     * Closes the staging repository and waits until Nexus has finished validating it
+     */
+    public StagingRepository close(String repositoryId, String description, long timeoutMillis) throws IOException {
+        bulk("close", repositoryId, description, false);
+        StagingRepository repository = waitForTransition(repositoryId, OPEN, timeoutMillis);
+        if (repository == null || !CLOSED.equals(repository.getType())) {
+            throw new IOException("Failed to close staging repository " + repositoryId + " it is now " + repository);
+        }
+        return repository;
+    }
+
+    /**
+     * Releases the staging repository, closing it first if it is still open, and waits until the release completes.
+     * The staging repository is dropped by Nexus once it has been released.
+     */
+    public void release(String repositoryId, String description, long timeoutMillis) throws IOException {
+        StagingRepository repository = getRepository(repositoryId);
+        if (repository == null) {
+            throw new IOException("Staging repository " + repositoryId + " does not exist");
+        }
+        if (repository.isTransitioning()) {
+            repository = waitForTransition(repositoryId, timeoutMillis);
+        }
+        if (repository != null && OPEN.equals(repository.getType())) {
+            close(repositoryId, description, timeoutMillis);
+        }
+        bulk("promote", repositoryId, description, true);
+        repository = waitForTransition(repositoryId, CLOSED, timeoutMillis);
+        if (repository != null && !RELEASED.equals(repository.getType())) {
+            throw new IOException("Failed to release staging repository " + repositoryId + " it is now " + repository);
+        }
+    }
+
+    /**
+     * Drops the staging repository
+     */
+    public void drop(String repositoryId, String description) throws IOException {
+        bulk("drop", repositoryId, description, false);
+    }
+
+    /**
+     * Polls the staging repository until it is no longer transitioning between states
+     *
+     * @return the staging repository or null if it no longer exists
+     */
+    public StagingRepository waitForTransition(String repositoryId, long timeoutMillis) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (int attempt = 1; ; attempt++) {
+            StagingRepository repository = getRepository(repositoryId);
+            if (repository == null || !repository.isTransitioning()) {
+                return repository;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new IOException("Timed out after " + timeoutMillis + "ms waiting for staging repository " + repository);
+            }
+            LOG.fine("Waiting for " + repository);
+            sleep(repositoryId, Math.min(remaining, pollStrategy.nextDelay(attempt, remaining)));
+        }
+    }
+
+    /**
+     * Waits for the transition requested by a bulk operation to complete. As Nexus may still report the repository
+     * as not transitioning in its old state for a moment after the request this first waits for the transition delay
+     * and then until the repository starts transitioning or changes type; giving up waiting for the transition to
+     * start after the transition start timeout
+     *
+     * @param fromType the type of the repository before the operation
+     * @return the staging repository or null if it no longer exists
+     */
+    public StagingRepository waitForTransition(String repositoryId, String fromType, long timeoutMillis) throws IOException {
+        long start = System.currentTimeMillis();
+        long deadline = start + timeoutMillis;
+        sleep(repositoryId, Math.min(transitionDelay, timeoutMillis));
+        boolean started = false;
+        for (int attempt = 1; ; attempt++) {
+            StagingRepository repository = getRepository(repositoryId);
+            if (repository == null) {
+                return null;
+            }
+            if (repository.isTransitioning()) {
+                started = true;
+            } else if (started || !fromType.equals(repository.getType())) {
+                return repository;
+            } else if (System.currentTimeMillis() - start > transitionStartTimeout) {
+                LOG.warning("Staging repository " + repository + " did not start transitioning from " + fromType + " after " + transitionStartTimeout + "ms");
+                return repository;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new IOException("Timed out after " + timeoutMillis + "ms waiting for staging repository " + repository);
+            }
+            LOG.fine("Waiting for " + repository);
+            sleep(repositoryId, Math.min(remaining, pollStrategy.nextDelay(attempt, remaining)));
+        }
+    }
+
+    protected void sleep(String repositoryId, long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for staging repository " + repositoryId);
+        }
+    }
+
+    protected void bulk(String operation, String repositoryId, String description, boolean autoDrop) throws IOException {
+        ObjectNode body = mapper.createObjectNode();
+        ObjectNode data = body.putObject("data");
+        data.putArray("stagedRepositoryIds").add(repositoryId);
+        data.put("description", description);
+        if (autoDrop) {
+            data.put("autoDropAfterRelease", true);
+        }
+        request("POST", "/service/local/staging/bulk/" + operation, mapper.writeValueAsBytes(body));
+    }
+
+    /**
+     * Sends the request and returns the JSON response or null if the resource does not exist
+     */
+    protected JsonNode request(String method, String path, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(nexusUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(DEFAULT_CONNECT_TIMEOUT);
+        connection.setReadTimeout(DEFAULT_READ_TIMEOUT);
+        connection.setRequestProperty("Authorization", authorization);
+        connection.setRequestProperty("Accept", "application/json");
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int code = connection.getResponseCode();
+        if (code == HttpURLConnection.HTTP_NOT_FOUND && body == null) {
+            readFully(connection.getErrorStream());
+            return null;
+        }
+        if (code < 200 || code >= 300) {
+            throw new IOException("Failed to " + method + " " + path + " on " + nexusUrl + " status " + code + ": " + new String(readFully(connection.getErrorStream()), StandardCharsets.UTF_8));
+        }
+        byte[] response = readFully(connection.getInputStream());
+        return response.length > 0 ? mapper.readTree(response) : mapper.createObjectNode();
+    }
+
+    protected static byte[] readFully(InputStream stream) throws IOException {
+        if (stream == null) {
+            return new byte[0];
+        }
+        try (InputStream in = stream) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            IOHelpers.copy(in, buffer);
+            return buffer.toByteArray();
+        }
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public String getNexusUrl() {
+        return nexusUrl;
+    }
+
+    public WaitStrategy getPollStrategy() {
+        return pollStrategy;
+    }
+
+    public void setPollStrategy(WaitStrategy pollStrategy) {
+        this.pollStrategy = pollStrategy;
+    }
+
+    /**
+     * Returns how long to wait after a close or release request before polling the staging repository
+     */
+    public long getTransitionDelay() {
+        return transitionDelay;
+    }
+
+    public void setTransitionDelay(long transitionDelay) {
+        this.transitionDelay = transitionDelay;
+    }
+
+    /**
+     * Returns how long to wait for a requested transition to start before using the current state of the repository
+     */
+    public long getTransitionStartTimeout() {
+        return transitionStartTimeout;
+    }
+
+    public void setTransitionStartTimeout(long transitionStartTimeout) {
+        this.transitionStartTimeout = transitionStartTimeout;
+    }
+
+    /**
+     * The state of a staging repository
+     */
+    public static class StagingRepository {
+        private final String repositoryId;
+        private final String type;
+        private final boolean transitioning;
+        private final String description;
+
+        public StagingRepository(JsonNode json) {
+            this.repositoryId = json.path("repositoryId").asText();
+            this.type = json.path("type").asText();
+            this.transitioning = json.path("transitioning").asBoolean();
+            this.description = json.path("description").asText(null);
+        }
+
+        @Override
+        public String toString() {
+            return repositoryId + "{" + type + (transitioning ? " transitioning" : "") + "}";
+        }
+
+        public String getRepositoryId() {
+            return repositoryId;
+        }
+
+        /**
+         * Returns one of {@link #OPEN}, {@link #CLOSED} or {@link #RELEASED}
+         */
+        public String getType() {
+            return type;
+        }
+
+        public boolean isTransitioning() {
+            return transitioning;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+}
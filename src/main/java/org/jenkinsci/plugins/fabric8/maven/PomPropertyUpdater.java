@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Updates the value of a version property such as <code>&lt;fabric8.version&gt;2.3.12&lt;/fabric8.version&gt;</code>
+ * in every <code>pom.xml</code> below a directory.
+ * <p>
+ * The poms are processed concurrently and each one is streamed a line at a time; a pom is only rewritten if the value
+ * of the property actually changes and everything other than the value is preserved byte for byte.
+ */
+public class PomPropertyUpdater {
+    public static final String POM_FILE = "pom.xml";
+    public static final String SNAPSHOT_SUFFIX = "-SNAPSHOT";
+
+    private static final String VERSION = "[0-9]{1,3}(?:\\.[0-9]{1,3}){1,3}";
+
+    private final File rootDir;
+    private int parallelism = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    public PomPropertyUpdater(File rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    /**
+     * Returns the name of the property; removing the angle brackets if the property is given as an element
+     * such as <code>&lt;fabric8.version&gt;</code>
+     */
+    public static String propertyName(String property) {
+        String answer = property.trim();
+        if (answer.startsWith("<")) {
+            answer = answer.substring(1);
+        }
+        if (answer.endsWith(">")) {
+            answer = answer.substring(0, answer.length() - 1);
+        }
+        return answer;
+    }
+
+    /**
+     * Creates the pattern which matches the property element with a release version or a SNAPSHOT version
+     */
+    public static Pattern createPattern(String property, boolean snapshot) {
+        String name = Pattern.quote(propertyName(property));
+        return Pattern.compile("(<" + name + ">\\s*)" + VERSION + (snapshot ? Pattern.quote(SNAPSHOT_SUFFIX) : "") + "(\\s*</" + name + ">)");
+    }
+
+    /**
+     * Sets the property to the new version in all the poms; if snapshot is true only SNAPSHOT values are updated and
+     * the new value keeps the <code>-SNAPSHOT</code> suffix
+     *
+     * @return the paths of the poms which were changed relative to the root directory
+     */
+    public List<String> update(String property, String newVersion, boolean snapshot) throws IOException {
+        final Pattern pattern = createPattern(property, snapshot);
+        final String replacement = "$1" + Matcher.quoteReplacement(newVersion + (snapshot ? SNAPSHOT_SUFFIX : "")) + "$2";
+        List<Path> poms = findPoms();
+        if (poms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Path, Future<Boolean>> futures = new TreeMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, poms.size()));
+        try {
+            for (final Path pom : poms) {
+                futures.put(pom, executor.submit(() -> updatePom(pom, pattern, replacement)));
+            }
+            List<String> answer = new ArrayList<>();
+            for (Map.Entry<Path, Future<Boolean>> entry : futures.entrySet()) {
+                if (entry.getValue().get()) {
+                    answer.add(rootDir.toPath().relativize(entry.getKey()).toString());
+                }
+            }
+            return answer;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to update " + property + " in " + rootDir + ": " + cause, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted updating " + property + " in " + rootDir, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns all the poms in the module tree ignoring build output and hidden directories
+     */
+    protected List<Path> findPoms() throws IOException {
+        final List<Path> answer = new ArrayList<>();
+        if (!rootDir.isDirectory()) {
+            return answer;
+        }
+        final Path root = rootDir.toPath();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                String name = dir.getFileName() != null ? dir.getFileName().toString() : "";
+                if (!dir.equals(root) && (name.startsWith(".") || name.equals("target") || name.equals("node_modules"))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && file.getFileName().toString().equals(POM_FILE)) {
+                    answer.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return answer;
+    }
+
+    /**
+     * Rewrites the pom if the property changes by streaming it into a temporary file which atomically replaces the pom
+     *
+     * @return true if the pom was changed
+     */
+    protected boolean updatePom(Path pom, Pattern pattern, String replacement) throws IOException {
+        Path tmp = pom.resolveSibling("." + pom.getFileName() + ".tmp");
+        boolean changed = false;
+        try {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(pom), StandardCharsets.UTF_8));
+                 Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                StringBuilder line = new StringBuilder();
+                int c;
+                while ((c = reader.read()) >= 0) {
+                    line.append((char) c);
+                    if (c == '\n') {
+                        changed |= writeLine(writer, line, pattern, replacement);
+                        line.setLength(0);
+                    }
+                }
+                changed |= writeLine(writer, line, pattern, replacement);
+            }
+            if (changed) {
+                try {
+                    Files.move(tmp, pom, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, pom, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return changed;
+    }
+
+    private static boolean writeLine(Writer writer, CharSequence line, Pattern pattern, String replacement) throws IOException {
+        if (line.length() == 0) {
+            return false;
+        }
+        Matcher matcher = pattern.matcher(line);
+        if (!matcher.find()) {
+            writer.append(line);
+            return false;
+        }
+        String text = matcher.replaceAll(replacement);
+        writer.write(text);
+        return !text.contentEquals(line);
+    }
+
+    // Properties
+    //-------------------------------------------------------------------------
+
+    public File getRootDir() {
+        return rootDir;
+    }
+
+    /**
+     * Returns the maximum number of poms updated at the same time
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+}
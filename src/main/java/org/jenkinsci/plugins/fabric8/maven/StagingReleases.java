@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the release of a number of staging repositories so that every implementation of
+ * <code>releaseSonartypeRepos</code> follows the same policy: once any release fails no more releases are started,
+ * the releases already in progress are allowed to finish and then every staging repository which was not released
+ * is dropped before failing the build.
+ */
+public class StagingReleases implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> repoIds;
+    private final Set<String> released = new LinkedHashSet<>();
+    private final Map<String, Throwable> failures = new LinkedHashMap<>();
+
+    public StagingReleases(List<String> repoIds) {
+        this.repoIds = new ArrayList<>(repoIds);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StagingReleases{released=" + released + ", failures=" + failures.keySet() + '}';
+    }
+
+    /**
+     * Returns true if another release may be started; which is only until the first release fails
+     */
+    public synchronized boolean canStart() {
+        return failures.isEmpty();
+    }
+
+    public synchronized void onReleased(String repoId) {
+        released.add(repoId);
+    }
+
+    public synchronized void onFailed(String repoId, Throwable cause) {
+        failures.put(repoId, cause);
+    }
+
+    public synchronized boolean isFailed() {
+        return !failures.isEmpty();
+    }
+
+    public synchronized List<String> getReleased() {
+        return new ArrayList<>(released);
+    }
+
+    /**
+     * Returns the staging repositories which were not released, in their original order, which should be dropped
+     */
+    public synchronized List<String> getUnreleased() {
+        List<String> answer = new ArrayList<>();
+        for (String repoId : repoIds) {
+            if (!released.contains(repoId)) {
+                answer.add(repoId);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the first failure or null if no release has failed
+     */
+    public synchronized Throwable getCause() {
+        return failures.isEmpty() ? null : failures.values().iterator().next();
+    }
+
+    /**
+     * Returns the failure of the given staging repository or the first failure if it was never started
+     */
+    public synchronized Throwable getCause(String repoId) {
+        Throwable answer = failures.get(repoId);
+        return answer != null ? answer : getCause();
+    }
+
+    public synchronized String getFailureMessage() {
+        return "ERROR releasing sonartype repos " + failures.keySet() + ": " + getCause();
+    }
+}
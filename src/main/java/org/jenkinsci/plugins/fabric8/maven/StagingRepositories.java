@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the ids of the staging repositories which the <code>nexus-staging-maven-plugin</code> writes into
+ * <code>target/nexus-staging/staging/*.properties</code> during a deploy.
+ * <p>
+ * The properties are read a line at a time so that the files of a large multi module build are parsed in a single
+ * pass without loading them all into memory.
+ */
+public class StagingRepositories {
+    public static final String STAGING_DIR = "target/nexus-staging/staging";
+    public static final String REPOSITORY_ID_PROPERTY = "stagingRepository.id";
+
+    /**
+     * Returns the staging repository ids in the properties files of the staging directory in the order of the file names
+     */
+    public static List<String> findRepoIds(File stagingDir) throws IOException {
+        Set<String> answer = new LinkedHashSet<>();
+        File[] files = stagingDir.listFiles((dir, name) -> name.endsWith(".properties"));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.ISO_8859_1)) {
+                    parseRepoIds(reader, answer);
+                }
+            }
+        }
+        return new ArrayList<>(answer);
+    }
+
+    /**
+     * Returns the staging repository ids in the given text which may be the concatenation of many properties files
+     */
+    public static List<String> parseRepoIds(String text) throws IOException {
+        Set<String> answer = new LinkedHashSet<>();
+        if (text != null) {
+            parseRepoIds(new StringReader(text), answer);
+        }
+        return new ArrayList<>(answer);
+    }
+
+    /**
+     * Adds the value of every <code>stagingRepository.id</code> property in the reader to the collection
+     */
+    public static void parseRepoIds(Reader reader, Collection<String> answer) throws IOException {
+        BufferedReader buffered = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        String line;
+        while ((line = buffered.readLine()) != null) {
+            String repoId = parseRepoId(line);
+            if (repoId != null) {
+                answer.add(repoId);
+            }
+        }
+    }
+
+    /**
+     * Returns the staging repository id if the line is the <code>stagingRepository.id</code> property or null
+     */
+    public static String parseRepoId(String line) {
+        line = line.trim();
+        if (!line.startsWith(REPOSITORY_ID_PROPERTY)) {
+            return null;
+        }
+        String rest = line.substring(REPOSITORY_ID_PROPERTY.length()).trim();
+        if (rest.startsWith("=") || rest.startsWith(":")) {
+            String value = rest.substring(1).trim();
+            if (!value.isEmpty()) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -47,16 +47,14 @@ public class PromoteArtifacts extends CommandSupport implements Function<Promote
         final String containerName = config.containerName;
 
         container(containerName, (Callable<GHPullRequest>) () -> {
-            sh("chmod 600 /root/.ssh-git/ssh-key");
-            sh("chmod 600 /root/.ssh-git/ssh-key.pub");
-            sh("chmod 700 /root/.ssh-git");
+            shBatch("chmod 600 /root/.ssh-git/ssh-key",
+                    "chmod 600 /root/.ssh-git/ssh-key.pub",
+                    "chmod 700 /root/.ssh-git");
 
             Fabric8Commands flow = new Fabric8Commands(PromoteArtifacts.this);
 
             echo("About to release " + project + " repo ids " + repoIds);
-            for (String repoId : repoIds) {
-                flow.releaseSonartypeRepo(repoId);
-            }
+            flow.releaseSonartypeRepos(repoIds, config.getParallelism());
 
             if (config.isHelmPush()) {
                 flow.helm();
@@ -92,6 +90,8 @@ public class PromoteArtifacts extends CommandSupport implements Function<Promote
         private boolean updateNextDevelopmentVersion;
         @Argument
         private String updateNextDevelopmentVersionArguments = "";
+        @Argument
+        private int parallelism = 4;
 
         private StepExtension stepExtension;
 
@@ -176,6 +176,17 @@ public class PromoteArtifacts extends CommandSupport implements Function<Promote
             this.updateNextDevelopmentVersionArguments = updateNextDevelopmentVersionArguments;
         }
 
+        /**
+         * Returns the maximum number of staging repositories released at the same time
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
         public StepExtension getStepExtension() {
             return stepExtension;
         }
@@ -19,19 +19,33 @@ import com.google.common.base.Strings;
 import io.jenkins.functions.Argument;
 import io.jenkins.functions.Step;
 import org.jenkinsci.plugins.fabric8.CommandSupport;
+import org.jenkinsci.plugins.fabric8.EnvironmentVariableNames;
 import org.jenkinsci.plugins.fabric8.Fabric8Commands;
+import org.jenkinsci.plugins.fabric8.FailedBuildException;
 import org.jenkinsci.plugins.fabric8.StepExtension;
+import org.jenkinsci.plugins.fabric8.docker.ImageCopier;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 
 /**
  * Promote images
+ * <p>
+ * When images are copied with the registry API they are promoted concurrently by up to <code>parallelism</code>
+ * workers. Images promoted with the docker daemon are promoted one at a time as the <code>sh</code> step can only be
+ * invoked from the pipeline thread; the <code>promoteImages</code> DSL uses <code>parallel</code> branches instead.
+ * Every image is attempted before the step fails with the list of images which could not be promoted
  */
 @Step(displayName = "Promotes docker images to a docker registry like hub.docker.com")
 public class PromoteImages extends CommandSupport implements Function<PromoteImages.Arguments, String> {
@@ -65,22 +79,91 @@ public class PromoteImages extends CommandSupport implements Function<PromoteIma
 
         return container("docker", () -> {
             Fabric8Commands flow = new Fabric8Commands(PromoteImages.this);
-            for (final String image : images) {
-                if (flow.isSingleNode()) {
-                    sh("docker tag " + org + "/" + image + ":" + tag + " " + toRegistry + "/" + org + "/" + image + ":" + tag);
-                } else {
-                    String registryHost = getDockerRegistryHost();
-                    String registryPort = getDockerRegistryPort();
-
-                    sh("docker pull " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag);
-                    sh("docker tag " + registryHost + ":" + registryPort + "/" + org + "/" + image + ":" + tag + " " + toRegistry + "/" + org + "/" + image + ":" + tag);
-                }
 
-                retry(3, (Callable<String>) () -> {
-                    sh("docker push " + toRegistry + "/" + org + "/" + image + ":" + tag);
-                    return null;
-                });
+            // if we're running on a single node then we already have the images on this host so no need to pull them
+            final boolean singleNode = flow.isSingleNode();
+            final boolean registryCopy = isRegistryCopy(config, singleNode);
+            // credentials for the target registry come from a Jenkins credential bound by withCredentials
+            final ImageCopier copier = new ImageCopier().insecureRegistry(getDockerRegistryHost() + ":" + getDockerRegistryPort())
+                    .credentials(toRegistry, getenv(EnvironmentVariableNames.DOCKER_REGISTRY_USERNAME), getenv(EnvironmentVariableNames.DOCKER_REGISTRY_PASSWORD));
+            Map<String, Throwable> failures = new LinkedHashMap<>();
+            if (registryCopy) {
+                // the registry API is plain HTTP from the controller so lets copy the images concurrently
+                int parallelism = Math.max(1, Math.min(config.getParallelism(), images.size()));
+                echo("Promoting " + images.size() + " images to " + toRegistry + " using " + parallelism + " workers");
+
+                Map<String, Future<?>> futures = new LinkedHashMap<>();
+                ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+                try {
+                    for (final String image : images) {
+                        futures.put(image, executor.submit(() -> promoteImage(image, tag, org, toRegistry, singleNode, copier, true)));
+                    }
+                    for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+                        try {
+                            entry.getValue().get();
+                        } catch (ExecutionException e) {
+                            error("Failed to promote image " + entry.getKey(), e.getCause());
+                            failures.put(entry.getKey(), e.getCause());
+                        }
+                    }
+                } finally {
+                    executor.shutdownNow();
+                }
+            } else {
+                echo("Promoting " + images.size() + " images to " + toRegistry);
+                for (String image : images) {
+                    try {
+                        promoteImage(image, tag, org, toRegistry, singleNode, copier, false);
+                    } catch (Exception e) {
+                        error("Failed to promote image " + image, e);
+                        failures.put(image, e);
+                    }
+                }
             }
+            if (!failures.isEmpty()) {
+                throw new FailedBuildException("Failed to promote " + failures.size() + " of " + images.size() + " images " + failures.keySet(),
+                        failures.values().iterator().next());
+            }
+            echo(copier.getSavings());
+            return null;
+        });
+    }
+
+    /**
+     * Returns true if images should be copied with the registry API rather than the docker daemon
+     */
+    protected boolean isRegistryCopy(Arguments config, boolean singleNode) {
+        if (!ImageCopier.isRegistryCopy(config.getCopyMethod())) {
+            return false;
+        }
+        if (singleNode) {
+            // the images are only in the local docker daemon
+            echo("Running on a single node so using docker to promote images");
+            return false;
+        }
+        return true;
+    }
+
+    protected void promoteImage(String image, String tag, String org, String toRegistry, boolean singleNode, ImageCopier copier, boolean registryCopy) {
+        String registry = getDockerRegistryHost() + ":" + getDockerRegistryPort();
+        String source = registry + "/" + org + "/" + image + ":" + tag;
+        String target = toRegistry + "/" + org + "/" + image + ":" + tag;
+        if (registryCopy) {
+            retry(3, (Callable<String>) () -> {
+                echo("Copied " + copier.copy(source, target));
+                return null;
+            });
+            return;
+        }
+        if (singleNode) {
+            sh("docker tag " + org + "/" + image + ":" + tag + " " + target);
+        } else {
+            sh("docker pull " + source);
+            sh("docker tag " + source + " " + target);
+        }
+
+        retry(3, (Callable<String>) () -> {
+            sh("docker push " + toRegistry + "/" + org + "/" + image + ":" + tag);
             return null;
         });
     }
@@ -98,6 +181,12 @@ public class PromoteImages extends CommandSupport implements Function<PromoteIma
         private List<String> images = new ArrayList<>();
         @Argument
         private String containerName = "clients";
+        @Argument
+        private int parallelism = 4;
+        @Argument
+        private String copyMethod = ImageCopier.DOCKER;
+        @Argument
+        private String credentialsId = "";
 
         private StepExtension stepExtension;
 
@@ -167,6 +256,42 @@ public class PromoteImages extends CommandSupport implements Function<PromoteIma
             this.containerName = containerName;
         }
 
+        /**
+         * Returns the maximum number of images promoted at the same time when copying with the registry API
+         */
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        /**
+         * Returns how images are copied; either {@link ImageCopier#DOCKER} to use the docker daemon or
+         * {@link ImageCopier#REGISTRY} to copy them directly between the registries
+         */
+        public String getCopyMethod() {
+            return copyMethod;
+        }
+
+        public void setCopyMethod(String copyMethod) {
+            this.copyMethod = copyMethod;
+        }
+
+        /**
+         * Returns the id of the Jenkins username and password credential for the target registry which the
+         * <code>promoteImages</code> DSL binds to the <code>DOCKER_REGISTRY_USERNAME</code> and
+         * <code>DOCKER_REGISTRY_PASSWORD</code> environment variables used when copying with the registry API
+         */
+        public String getCredentialsId() {
+            return credentialsId;
+        }
+
+        public void setCredentialsId(String credentialsId) {
+            this.credentialsId = credentialsId;
+        }
+
         public StepExtension getStepExtension() {
             return stepExtension;
         }
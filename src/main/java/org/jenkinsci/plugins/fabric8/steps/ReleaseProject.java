@@ -61,8 +61,11 @@ public class ReleaseProject extends CommandSupport implements Function<ReleasePr
             new WaitUntilPullRequestMerged(this).apply(waitUntilPullRequestMergedArguments);
         }
 
+        WaitUntilArtifactsSyncedWithCentral.Arguments waitUntilArtifactsSyncedWithCentralArguments = config.createWaitUntilArtifactsSyncedWithCentralArguments();
         WaitUntilArtifactSyncedWithCentral.Arguments waitUntilArtifactSyncedWithCentralArguments = config.createWaitUntilArtifactSyncedWithCentralArguments();
-        if (waitUntilArtifactSyncedWithCentralArguments != null) {
+        if (waitUntilArtifactsSyncedWithCentralArguments != null) {
+            new WaitUntilArtifactsSyncedWithCentral(this).apply(waitUntilArtifactsSyncedWithCentralArguments);
+        } else if (waitUntilArtifactSyncedWithCentralArguments != null) {
             new WaitUntilArtifactSyncedWithCentral(this).apply(waitUntilArtifactSyncedWithCentralArguments);
         }
         return true;
@@ -98,6 +101,8 @@ public class ReleaseProject extends CommandSupport implements Function<ReleasePr
         @Argument
         private String artifactIdToWaitFor = "";
         @Argument
+        private List<String> artifactsToWaitFor = new ArrayList<>();
+        @Argument
         private boolean useGitTagForNextVersion;
         @Argument
         private boolean helmPush;
@@ -142,6 +147,7 @@ public class ReleaseProject extends CommandSupport implements Function<ReleasePr
                     ", groupId='" + groupId + '\'' +
                     ", artifactExtensionToWaitFor='" + artifactExtensionToWaitFor + '\'' +
                     ", artifactIdToWaitFor='" + artifactIdToWaitFor + '\'' +
+                    ", artifactsToWaitFor=" + artifactsToWaitFor +
                     '}';
         }
 
@@ -197,6 +203,21 @@ public class ReleaseProject extends CommandSupport implements Function<ReleasePr
             return arguments;
         }
 
+        /**
+         * Returns the arguments for invoking {@link WaitUntilArtifactsSyncedWithCentral} or null if there are no
+         * artifacts to wait for
+         */
+        public WaitUntilArtifactsSyncedWithCentral.Arguments createWaitUntilArtifactsSyncedWithCentralArguments() {
+            if (artifactsToWaitFor == null || artifactsToWaitFor.isEmpty()) {
+                return null;
+            }
+            WaitUntilArtifactsSyncedWithCentral.Arguments arguments = new WaitUntilArtifactsSyncedWithCentral.Arguments(artifactsToWaitFor, getReleaseVersion(), getWaitUntilArtifactSyncedExtension());
+            if (Strings.notEmpty(repositoryToWaitFor)) {
+                arguments.setRepositoryUrl(repositoryToWaitFor);
+            }
+            return arguments;
+        }
+
         // Properties
         //-------------------------------------------------------------------------
 
@@ -296,6 +317,14 @@ public class ReleaseProject extends CommandSupport implements Function<ReleasePr
             this.artifactIdToWaitFor = artifactIdToWaitFor;
         }
 
+        public List<String> getArtifactsToWaitFor() {
+            return artifactsToWaitFor;
+        }
+
+        public void setArtifactsToWaitFor(List<String> artifactsToWaitFor) {
+            this.artifactsToWaitFor = artifactsToWaitFor;
+        }
+
         public boolean isUseGitTagForNextVersion() {
             return useGitTagForNextVersion;
         }
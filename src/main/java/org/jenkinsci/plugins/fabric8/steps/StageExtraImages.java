@@ -19,6 +19,7 @@ import com.google.common.base.Strings;
 import io.jenkins.functions.Argument;
 import io.jenkins.functions.Step;
 import org.jenkinsci.plugins.fabric8.CommandSupport;
+import org.jenkinsci.plugins.fabric8.docker.ImageCopier;
 
 import javax.validation.constraints.NotEmpty;
 import java.io.Serializable;
@@ -48,6 +49,17 @@ public class StageExtraImages extends CommandSupport implements Function<StageEx
             error("Missing arguments - was given: " + config);
             return null;
         }
+        if (ImageCopier.isRegistryCopy(config.getCopyMethod())) {
+            final String registry = registryHost + ":" + registryPort;
+            final ImageCopier copier = new ImageCopier().insecureRegistry(registry);
+            for (String image : images) {
+                retry(3, () -> {
+                    echo("Copied " + copier.copy("docker.io/fabric8/" + image + ":latest", registry + "/fabric8/" + image + ":" + tag));
+                    return null;
+                });
+            }
+            return null;
+        }
         return container("docker", () -> {
             for (String image : images) {
                 retry(3, () -> {
@@ -74,6 +86,8 @@ public class StageExtraImages extends CommandSupport implements Function<StageEx
         private String tag = "";
         @Argument
         private List<String> images = new ArrayList<>();
+        @Argument
+        private String copyMethod = ImageCopier.DOCKER;
 
         public Arguments() {
         }
@@ -88,6 +102,7 @@ public class StageExtraImages extends CommandSupport implements Function<StageEx
             return "Arguments{" +
                     "tag='" + tag + '\'' +
                     ", images=" + images +
+                    ", copyMethod='" + copyMethod + '\'' +
                     '}';
         }
 
@@ -99,6 +114,18 @@ public class StageExtraImages extends CommandSupport implements Function<StageEx
             this.tag = tag;
         }
 
+        /**
+         * Returns how images are copied; either {@link ImageCopier#DOCKER} to use the docker daemon or
+         * {@link ImageCopier#REGISTRY} to copy them directly between the registries
+         */
+        public String getCopyMethod() {
+            return copyMethod;
+        }
+
+        public void setCopyMethod(String copyMethod) {
+            this.copyMethod = copyMethod;
+        }
+
         public List<String> getImages() {
             return images;
         }
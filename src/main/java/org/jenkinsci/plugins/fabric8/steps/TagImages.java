@@ -19,7 +19,10 @@ import com.google.common.base.Strings;
 import io.jenkins.functions.Argument;
 import io.jenkins.functions.Step;
 import org.jenkinsci.plugins.fabric8.CommandSupport;
+import org.jenkinsci.plugins.fabric8.EnvironmentVariableNames;
 import org.jenkinsci.plugins.fabric8.StepExtension;
+import org.jenkinsci.plugins.fabric8.docker.ImageCopier;
+import org.jenkinsci.plugins.fabric8.docker.ImageReference;
 
 import javax.validation.constraints.NotEmpty;
 import java.io.Serializable;
@@ -59,18 +62,37 @@ public class TagImages extends CommandSupport implements Function<TagImages.Argu
             return null;
         }
 
-        return container("docker", () -> {
+        final String registry = getDockerRegistryHost() + ":" + getDockerRegistryPort();
+        // credentials for docker hub come from a Jenkins credential bound by withCredentials
+        final ImageCopier copier = new ImageCopier().insecureRegistry(registry)
+                .credentials(ImageReference.DOCKER_HUB, getenv(EnvironmentVariableNames.DOCKER_REGISTRY_USERNAME), getenv(EnvironmentVariableNames.DOCKER_REGISTRY_PASSWORD));
+        if (ImageCopier.isRegistryCopy(args.getCopyMethod())) {
             for (String image : images) {
                 retry(3, () -> {
-                    String registryHost = getDockerRegistryHost();
-                    String registryPort = getDockerRegistryPort();
+                    echo("Copied " + copier.copy(registry + "/fabric8/" + image + ":" + tag, "docker.io/fabric8/" + image + ":" + tag));
+                    return null;
+                });
+            }
+            echo(copier.getSavings());
+            return null;
+        }
 
-                    sh("docker pull " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag);
-                    sh("docker tag  " + registryHost + ":" + registryPort + "/fabric8/" + image + ":" + tag + " docker.io/fabric8/" + image + ":" + tag);
-                    sh("docker push docker.io/fabric8/" + image + ":" + tag);
+        return container("docker", () -> {
+            for (String image : images) {
+                String source = registry + "/fabric8/" + image + ":" + tag;
+                String target = "docker.io/fabric8/" + image + ":" + tag;
+                if (copier.skipIfUnchanged(source, target)) {
+                    echo("Not pushing " + target + " as it already has the same digest as " + source);
+                    continue;
+                }
+                retry(3, () -> {
+                    sh("docker pull " + source);
+                    sh("docker tag  " + source + " " + target);
+                    sh("docker push " + target);
                     return null;
                 });
             }
+            echo(copier.getSavings());
             return null;
         });
     }
@@ -85,6 +107,10 @@ public class TagImages extends CommandSupport implements Function<TagImages.Argu
         private List<String> images = new ArrayList<>();
         @Argument
         private String containerName = "clients";
+        @Argument
+        private String copyMethod = ImageCopier.DOCKER;
+        @Argument
+        private String credentialsId = "";
 
         private StepExtension stepExtension;
 
@@ -121,6 +147,31 @@ public class TagImages extends CommandSupport implements Function<TagImages.Argu
             this.containerName = containerName;
         }
 
+        /**
+         * Returns how images are copied; either {@link ImageCopier#DOCKER} to use the docker daemon or
+         * {@link ImageCopier#REGISTRY} to copy them directly between the registries
+         */
+        public String getCopyMethod() {
+            return copyMethod;
+        }
+
+        public void setCopyMethod(String copyMethod) {
+            this.copyMethod = copyMethod;
+        }
+
+        /**
+         * Returns the id of the Jenkins username and password credential for docker hub which the
+         * <code>tagImages</code> DSL binds to the <code>DOCKER_REGISTRY_USERNAME</code> and
+         * <code>DOCKER_REGISTRY_PASSWORD</code> environment variables used when copying with the registry API
+         */
+        public String getCredentialsId() {
+            return credentialsId;
+        }
+
+        public void setCredentialsId(String credentialsId) {
+            this.credentialsId = credentialsId;
+        }
+
         public StepExtension getStepExtension() {
             return stepExtension;
         }
@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) Original Authors 2017
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.steps;
+
+import io.jenkins.functions.Argument;
+import org.jenkinsci.plugins.fabric8.WaitStrategy;
+
+import java.io.Serializable;
+
+/**
+ * The arguments shared by the steps which wait for a condition, configuring the {@link WaitStrategy} used between
+ * each check and how long to wait in total
+ */
+public abstract class WaitArguments implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Argument
+    private String waitStrategy;
+    @Argument
+    private long waitInterval = WaitStrategy.DEFAULT_INTERVAL;
+    @Argument
+    private long waitMaxInterval = WaitStrategy.DEFAULT_MAX_INTERVAL;
+    @Argument
+    private long waitTimeout = -1;
+
+    protected WaitArguments() {
+        this(WaitStrategy.FIXED);
+    }
+
+    protected WaitArguments(String waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Returns the strategy used to decide how long to sleep between each check
+     */
+    public WaitStrategy createWaitStrategy() {
+        return WaitStrategy.create(waitStrategy, waitInterval, waitMaxInterval);
+    }
+
+    /**
+     * Returns the name of the strategy; one of {@link WaitStrategy#FIXED}, {@link WaitStrategy#EXPONENTIAL} or {@link WaitStrategy#ADAPTIVE}
+     */
+    public String getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public void setWaitStrategy(String waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Returns the initial number of milliseconds between checks
+     */
+    public long getWaitInterval() {
+        return waitInterval;
+    }
+
+    public void setWaitInterval(long waitInterval) {
+        this.waitInterval = waitInterval;
+    }
+
+    /**
+     * Returns the maximum number of milliseconds between checks for the strategies which back off
+     */
+    public long getWaitMaxInterval() {
+        return waitMaxInterval;
+    }
+
+    public void setWaitMaxInterval(long waitMaxInterval) {
+        this.waitMaxInterval = waitMaxInterval;
+    }
+
+    /**
+     * Returns the number of milliseconds to wait before giving up or -1 to wait forever
+     */
+    public long getWaitTimeout() {
+        return waitTimeout;
+    }
+
+    public void setWaitTimeout(long waitTimeout) {
+        this.waitTimeout = waitTimeout;
+    }
+}
@@ -21,10 +21,12 @@ import io.jenkins.functions.Step;
 import org.jenkinsci.plugins.fabric8.CommandSupport;
 import org.jenkinsci.plugins.fabric8.Fabric8Commands;
 import org.jenkinsci.plugins.fabric8.StepExtension;
+import org.jenkinsci.plugins.fabric8.WaitCondition;
+import org.jenkinsci.plugins.fabric8.maven.AvailabilityWatcher;
 import org.jenkinsci.plugins.fabric8.model.ServiceConstants;
 
 import javax.validation.constraints.NotEmpty;
-import java.io.Serializable;
+import java.io.Closeable;
 import java.util.function.Function;
 
 /**
@@ -42,8 +44,6 @@ public class WaitUntilArtifactSyncedWithCentral extends CommandSupport implement
     @Override
     @Step
     public String apply(Arguments config) {
-        final Fabric8Commands flow = new Fabric8Commands(this);
-
         final String groupId = config.groupId;
         final String artifactId = config.artifactId;
         final String version = config.version;
@@ -54,7 +54,10 @@ public class WaitUntilArtifactSyncedWithCentral extends CommandSupport implement
             return null;
         }
 
-        waitUntil(() -> retry(3, () -> flow.isArtifactAvailableInRepo(config.repositoryUrl, groupId, artifactId, version, ext)));
+        if (!waitUntil(config.createWaitStrategy(), config.getWaitTimeout(), new ArtifactAvailableCondition(config.repositoryUrl, groupId, artifactId, version, ext))) {
+            echo("Timed out waiting for " + groupId + "/" + artifactId + " " + version + " to be available in " + config.repositoryUrl);
+            return null;
+        }
 
         String message = "" + groupId + "/" + artifactId + " " + version + " released and available in maven central";
         echo(message);
@@ -62,7 +65,44 @@ public class WaitUntilArtifactSyncedWithCentral extends CommandSupport implement
         return null;
     }
 
-    public static class Arguments implements Serializable {
+    /**
+     * Returns true when the artifact is available in the repository
+     */
+    public static class ArtifactAvailableCondition implements WaitCondition {
+        private static final long serialVersionUID = 1L;
+
+        private final String repositoryUrl;
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private final String extension;
+
+        public ArtifactAvailableCondition(String repositoryUrl, String groupId, String artifactId, String version, String extension) {
+            this.repositoryUrl = repositoryUrl;
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.extension = extension;
+        }
+
+        @Override
+        public String toString() {
+            return groupId + "/" + artifactId + " " + version + " to be available in " + repositoryUrl;
+        }
+
+        @Override
+        public Boolean check(CommandSupport step) throws Exception {
+            return new Fabric8Commands(step).isArtifactAvailableInRepo(repositoryUrl, groupId, artifactId, version, extension);
+        }
+
+        @Override
+        public Closeable subscribe(Runnable listener) {
+            // lets share a single poll loop with any other builds waiting on the same artifact
+            return AvailabilityWatcher.getInstance().subscribe(Fabric8Commands.artifactUrl(repositoryUrl, groupId, artifactId, version, extension), listener);
+        }
+    }
+
+    public static class Arguments extends WaitArguments {
         private static final long serialVersionUID = 1L;
 
         @Argument
@@ -99,6 +139,7 @@ public class WaitUntilArtifactSyncedWithCentral extends CommandSupport implement
                     ", artifactId='" + artifactId + '\'' +
                     ", version='" + version + '\'' +
                     ", ext='" + extension + '\'' +
+                    ", waitStrategy='" + getWaitStrategy() + '\'' +
                     '}';
         }
 
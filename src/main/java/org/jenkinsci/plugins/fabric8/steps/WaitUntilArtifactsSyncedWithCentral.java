@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) Original Authors 2017
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.steps;
+
+import io.jenkins.functions.Argument;
+import io.jenkins.functions.Step;
+import org.jenkinsci.plugins.fabric8.CommandSupport;
+import org.jenkinsci.plugins.fabric8.StepExtension;
+import org.jenkinsci.plugins.fabric8.WaitCondition;
+import org.jenkinsci.plugins.fabric8.WaitStrategy;
+import org.jenkinsci.plugins.fabric8.maven.ArtifactProbe;
+import org.jenkinsci.plugins.fabric8.maven.AvailabilityWatcher;
+import org.jenkinsci.plugins.fabric8.maven.MavenCoordinates;
+import org.jenkinsci.plugins.fabric8.model.ServiceConstants;
+
+import javax.validation.constraints.NotEmpty;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Waits for many maven artifacts to be in the maven central repository
+ */
+@Step(displayName = "Waits for many artifacts to be synchronized to a central registry")
+public class WaitUntilArtifactsSyncedWithCentral extends CommandSupport implements Function<WaitUntilArtifactsSyncedWithCentral.Arguments, Boolean> {
+    public WaitUntilArtifactsSyncedWithCentral() {
+    }
+
+    public WaitUntilArtifactsSyncedWithCentral(CommandSupport parentStep) {
+        super(parentStep);
+    }
+
+    @Override
+    @Step
+    public Boolean apply(Arguments config) {
+        List<MavenCoordinates> artifacts = config.createCoordinates();
+        if (artifacts.isEmpty()) {
+            error("Must specify the artifacts to wait for but was given: " + config);
+            return false;
+        }
+
+        echo("Waiting for " + artifacts.size() + " artifacts to be available in " + config.getRepositoryUrl());
+        ArtifactsAvailableCondition condition = new ArtifactsAvailableCondition(config.getRepositoryUrl(), artifacts, config.getParallelism());
+        if (!waitUntil(config.createWaitStrategy(), config.getWaitTimeout(), condition)) {
+            echo("Timed out waiting for artifacts to be available in " + config.getRepositoryUrl());
+            return false;
+        }
+
+        String message = "" + artifacts.size() + " artifacts released and available in maven central";
+        echo(message);
+        hubotSend(message);
+        return true;
+    }
+
+    /**
+     * Probes the artifacts which are not yet available concurrently, logging how long each artifact took to be
+     * available; returning true when all of the artifacts are available
+     */
+    public static class ArtifactsAvailableCondition implements WaitCondition {
+        private static final long serialVersionUID = 1L;
+
+        private final String repositoryUrl;
+        private final Set<MavenCoordinates> missing;
+        private final int parallelism;
+        private long startTime;
+        private int lastMissingCount = -1;
+
+        public ArtifactsAvailableCondition(String repositoryUrl, List<MavenCoordinates> artifacts, int parallelism) {
+            this.repositoryUrl = repositoryUrl;
+            this.missing = new LinkedHashSet<>(artifacts);
+            this.parallelism = Math.max(1, parallelism);
+        }
+
+        @Override
+        public String toString() {
+            return "" + missing.size() + " artifacts to be available in " + repositoryUrl;
+        }
+
+        @Override
+        public Boolean check(CommandSupport step) throws Exception {
+            if (startTime == 0) {
+                startTime = System.currentTimeMillis();
+            }
+            Map<MavenCoordinates, ArtifactProbe.Result> results = probe();
+            for (Map.Entry<MavenCoordinates, ArtifactProbe.Result> entry : results.entrySet()) {
+                if (entry.getValue().isAvailable()) {
+                    MavenCoordinates artifact = entry.getKey();
+                    missing.remove(artifact);
+                    long waited = (System.currentTimeMillis() - startTime) / 1000;
+                    step.echo("Artifact " + artifact + " is available after waiting " + waited + "s");
+                }
+            }
+            if (missing.isEmpty()) {
+                return true;
+            }
+            if (missing.size() != lastMissingCount) {
+                lastMissingCount = missing.size();
+                StringBuilder builder = new StringBuilder("Still waiting for " + missing.size() + " artifacts:");
+                for (MavenCoordinates artifact : missing) {
+                    builder.append("\n  ").append(artifact).append(" ").append(results.get(artifact));
+                }
+                step.echo(builder.toString());
+            }
+            return false;
+        }
+
+        protected Map<MavenCoordinates, ArtifactProbe.Result> probe() throws Exception {
+            Map<String, MavenCoordinates> urls = new LinkedHashMap<>();
+            for (MavenCoordinates artifact : missing) {
+                urls.put(artifact.toUrl(repositoryUrl), artifact);
+            }
+            Map<String, ArtifactProbe.Result> results = AvailabilityWatcher.getInstance().checkAll(urls.keySet(), parallelism);
+            Map<MavenCoordinates, ArtifactProbe.Result> answer = new LinkedHashMap<>();
+            for (Map.Entry<String, ArtifactProbe.Result> entry : results.entrySet()) {
+                answer.put(urls.get(entry.getKey()), entry.getValue());
+            }
+            return answer;
+        }
+
+        @Override
+        public Closeable subscribe(Runnable listener) {
+            // lets share a single poll loop per artifact with any other builds waiting on the same artifacts
+            List<String> urls = new ArrayList<>();
+            for (MavenCoordinates artifact : missing) {
+                urls.add(artifact.toUrl(repositoryUrl));
+            }
+            return AvailabilityWatcher.getInstance().subscribe(urls, listener);
+        }
+
+        public Set<MavenCoordinates> getMissing() {
+            return missing;
+        }
+    }
+
+    public static class Arguments extends WaitArguments {
+        private static final long serialVersionUID = 1L;
+
+        @Argument
+        private String repositoryUrl = ServiceConstants.MAVEN_CENTRAL;
+        @Argument
+        @NotEmpty
+        private List<String> artifacts = new ArrayList<>();
+        @Argument
+        private String version = "";
+        @Argument
+        private int parallelism = 8;
+
+        private StepExtension stepExtension;
+
+        public Arguments() {
+            super(WaitStrategy.ADAPTIVE);
+        }
+
+        public Arguments(List<String> artifacts, String version, StepExtension stepExtension) {
+            super(WaitStrategy.ADAPTIVE);
+            this.artifacts = artifacts;
+            this.version = version;
+            this.stepExtension = stepExtension;
+        }
+
+        @Override
+        public String toString() {
+            return "Arguments{" +
+                    "repositoryUrl='" + repositoryUrl + '\'' +
+                    ", artifacts=" + artifacts +
+                    ", version='" + version + '\'' +
+                    ", parallelism=" + parallelism +
+                    ", waitStrategy='" + getWaitStrategy() + '\'' +
+                    '}';
+        }
+
+        /**
+         * Returns true if the properties are populated with enough values to watch for artifacts
+         */
+        public boolean isValid() {
+            return io.fabric8.utils.Strings.notEmpty(repositoryUrl) && artifacts != null && !artifacts.isEmpty();
+        }
+
+        /**
+         * Parses the artifacts using the version for any coordinates which do not include a version
+         */
+        public List<MavenCoordinates> createCoordinates() {
+            List<MavenCoordinates> answer = new ArrayList<>();
+            if (artifacts != null) {
+                for (String artifact : artifacts) {
+                    if (io.fabric8.utils.Strings.isNotBlank(artifact)) {
+                        answer.add(MavenCoordinates.parse(artifact, version));
+                    }
+                }
+            }
+            return answer;
+        }
+
+        public String getRepositoryUrl() {
+            return repositoryUrl;
+        }
+
+        public void setRepositoryUrl(String repositoryUrl) {
+            this.repositoryUrl = repositoryUrl;
+        }
+
+        public List<String> getArtifacts() {
+            return artifacts;
+        }
+
+        public void setArtifacts(List<String> artifacts) {
+            this.artifacts = artifacts;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public void setVersion(String version) {
+            this.version = version;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public StepExtension getStepExtension() {
+            return stepExtension;
+        }
+
+        public void setStepExtension(StepExtension stepExtension) {
+            this.stepExtension = stepExtension;
+        }
+    }
+
+}
@@ -20,10 +20,12 @@ import io.jenkins.functions.Argument;
 import io.jenkins.functions.Step;
 import org.jenkinsci.plugins.fabric8.CommandSupport;
 import org.jenkinsci.plugins.fabric8.Fabric8Commands;
+import org.jenkinsci.plugins.fabric8.WaitCondition;
+import org.jenkinsci.plugins.fabric8.maven.AvailabilityWatcher;
 import org.jenkinsci.plugins.fabric8.model.ServiceConstants;
 
 import javax.validation.constraints.NotEmpty;
-import java.io.Serializable;
+import java.io.Closeable;
 import java.util.function.Function;
 
 /**
@@ -41,8 +43,6 @@ public class WaitUntilJenkinsPluginSynced extends CommandSupport implements Func
     @Override
     @Step
     public Boolean apply(Arguments config) {
-        final Fabric8Commands flow = new Fabric8Commands(this);
-
         final String version = config.version;
         final String repo = config.repo;
         final String name = config.name;
@@ -56,7 +56,7 @@ public class WaitUntilJenkinsPluginSynced extends CommandSupport implements Func
         }
 
 
-        if (waitUntil(() -> retry(3, () -> flow.isFileAvailableInRepo(repo, path, version, artifact)))) {
+        if (waitUntil(config.createWaitStrategy(), config.getWaitTimeout(), new FileAvailableCondition(repo, path, version, artifact))) {
             String message = "Jenkins plugin " + artifact + " " + version + " released and available in the jenkins plugin archive";
             echo(message);
             hubotSend(message);
@@ -68,7 +68,42 @@ public class WaitUntilJenkinsPluginSynced extends CommandSupport implements Func
     }
 
 
-    public static class Arguments implements Serializable {
+    /**
+     * Returns true when the file is available in the repository
+     */
+    public static class FileAvailableCondition implements WaitCondition {
+        private static final long serialVersionUID = 1L;
+
+        private final String repo;
+        private final String path;
+        private final String version;
+        private final String artifact;
+
+        public FileAvailableCondition(String repo, String path, String version, String artifact) {
+            this.repo = repo;
+            this.path = path;
+            this.version = version;
+            this.artifact = artifact;
+        }
+
+        @Override
+        public String toString() {
+            return artifact + " " + version + " to be available in " + repo;
+        }
+
+        @Override
+        public Boolean check(CommandSupport step) throws Exception {
+            return new Fabric8Commands(step).isFileAvailableInRepo(repo, path, version, artifact);
+        }
+
+        @Override
+        public Closeable subscribe(Runnable listener) {
+            // lets share a single poll loop with any other builds waiting on the same plugin
+            return AvailabilityWatcher.getInstance().subscribe(Fabric8Commands.fileUrl(repo, path, version, artifact), listener);
+        }
+    }
+
+    public static class Arguments extends WaitArguments {
         private static final long serialVersionUID = 1L;
 
         @Argument
@@ -86,6 +121,7 @@ public class WaitUntilJenkinsPluginSynced extends CommandSupport implements Func
                     "repo='" + repo + '\'' +
                     ", name='" + name + '\'' +
                     ", version='" + version + '\'' +
+                    ", waitStrategy='" + getWaitStrategy() + '\'' +
                     '}';
         }
 
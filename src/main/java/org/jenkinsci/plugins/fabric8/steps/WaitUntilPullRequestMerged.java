@@ -22,6 +22,9 @@ import org.jenkinsci.plugins.fabric8.CommandSupport;
 import org.jenkinsci.plugins.fabric8.Fabric8Commands;
 import org.jenkinsci.plugins.fabric8.FailedBuildException;
 import org.jenkinsci.plugins.fabric8.StepExtension;
+import org.jenkinsci.plugins.fabric8.WaitCondition;
+import org.jenkinsci.plugins.fabric8.WaitStrategy;
+import org.jenkinsci.plugins.fabric8.github.PullRequestEvents;
 import org.jenkinsci.plugins.fabric8.helpers.GitHelper;
 import org.kohsuke.github.GHCommitPointer;
 import org.kohsuke.github.GHIssueState;
@@ -31,9 +34,11 @@ import org.kohsuke.github.GitHub;
 
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Positive;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.LinkedHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Step(displayName = "Waits for a Pull Request to be merged")
@@ -65,62 +70,75 @@ public class WaitUntilPullRequestMerged extends CommandSupport implements Functi
 
         echo("Waiting for Pull Request " + prId + " on project " + project);
 
-        final AtomicBoolean notified = new AtomicBoolean(false);
+        WaitStrategy strategy = config.createWaitStrategy();
+        long webhookPollInterval = config.getWebhookPollInterval();
+        if (webhookPollInterval > 0 && PullRequestEvents.getInstance().isReceivingEvents(project)) {
+            echo("Receiving GitHub webhooks for " + project + " so only polling GitHub every " + webhookPollInterval + " millis");
+            strategy = WaitStrategy.fixed(webhookPollInterval);
+        }
+
+        // the repository never changes so lets only look it up once and then just poll the pull request
+        final GHRepository repository = getRepository(gitHub, project);
+
+        boolean notified = false;
 
         // wait until the PR is merged, if there's a merge conflict the notify and wait until PR is finally merged
-        return waitUntil(() -> {
-            GHRepository repository = null;
-            try {
-                repository = gitHub.getRepository(project);
-            } catch (Exception e) {
-                throw new FailedBuildException("Could not find repository " + project, e);
+        while (true) {
+            PullRequestMergedCondition condition = new PullRequestMergedCondition(project, prId, !notified, webhookPollInterval);
+            condition.setRepository(repository);
+            boolean answer = waitUntil(strategy, config.getWaitTimeout(), condition);
+            echo(condition.getStatistics());
+            if (!answer) {
+                return false;
+            }
+            // the condition has already fetched the pull request so lets not ask GitHub again
+            if (condition.isMerged() || condition.isClosed()) {
+                return true;
+            }
+            if (!condition.isConflict()) {
+                continue;
+            }
+            String branch = condition.getHeadRef();
+            if (Strings.isNullOrEmpty(branch)) {
+                branch = "master";
             }
+            String message = "Pull request was not automatically merged.  Please fix and update Pull Request to continue with release...\n" +
+                    "\n" +
+                    "git clone git@github.com:" + project + ".git\n" +
+                    "cd " + repoName + "\n" +
+                    "git fetch origin pull/" + id + "/head:fixPR" + id + "\n" +
+                    "git checkout fixPR" + id + "\n" +
+                    "\n" +
+                    "  [resolve issue]\n" +
+                    "\n" +
+                    "git commit -a -m 'resolved merge issues caused by release dependency updates'\n" +
+                    "git push origin fixPR" + id + ":" + branch + "\n";
+
+            echo(message);
+            hubotSend(message);
+            notified = true;
+
+            boolean shouldWeWait = requestResolve();
+            if (!shouldWeWait) {
+                return true;
+            }
+        }
+    }
 
-            GHPullRequest pullRequest = repository.getPullRequest(prId);
-            if (pullRequest != null) {
-                if (pullRequest.isMerged()) {
-                    echo("Pull Request " + pullRequest.getHtmlUrl() + " is merged");
-                    return true;
-                }
-                GHIssueState state = pullRequest.getState();
-                if (state.equals(GHIssueState.CLOSED)) {
-                    echo("Pull Request " + pullRequest.getHtmlUrl() + " is closed");
-                    return true;
-                }
+    protected static GHRepository getRepository(GitHub gitHub, String project) {
+        try {
+            return gitHub.getRepository(project);
+        } catch (Exception e) {
+            throw new FailedBuildException("Could not find repository " + project, e);
+        }
+    }
 
-                String branch = "master";
-                GHCommitPointer head = pullRequest.getHead();
-                if (head != null) {
-                    branch = head.getRef();
-                }
-                if ("failure".equalsIgnoreCase(pullRequest.getMergeableState())) {
-                    if (notified.compareAndSet(false, true)) {
-                        String message = "Pull request was not automatically merged.  Please fix and update Pull Request to continue with release...\n" +
-                                "\n" +
-                                "git clone git@github.com:" + project + ".git\n" +
-                                "cd " + repoName + "\n" +
-                                "git fetch origin pull/" + id + "/head:fixPR" + id + "\n" +
-                                "git checkout fixPR" + id + "\n" +
-                                "\n" +
-                                "  [resolve issue]\n" +
-                                "\n" +
-                                "git commit -a -m 'resolved merge issues caused by release dependency updates'\n" +
-                                "git push origin fixPR" + id + ":" + branch + "\n";
-
-                        echo(message);
-                        hubotSend(message);
-
-
-                        boolean shouldWeWait = requestResolve();
-
-                        if (!shouldWeWait) {
-                            return true;
-                        }
-                    }
-                }
-            }
-            return false;
-        });
+    protected static GHPullRequest getPullRequest(GHRepository repository, String project, int prId) {
+        try {
+            return repository.getPullRequest(prId);
+        } catch (IOException e) {
+            throw new FailedBuildException("Could not find Pull Request " + prId + " on repository " + project, e);
+        }
     }
 
     public boolean requestResolve() {
@@ -137,15 +155,234 @@ public class WaitUntilPullRequestMerged extends CommandSupport implements Functi
         }
     }
 
-    public static class Arguments implements Serializable {
+    /**
+     * Returns true when the pull request is merged or closed; or has a merge conflict if stopOnConflict is enabled
+     * so that the step can notify the user.
+     * <p>
+     * Webhook events received by {@link PullRequestEvents} wake the condition; while events are being received for the
+     * repository GitHub is only polled every webhookPollInterval as a fallback. As webhooks may not be signed an event
+     * is only a hint: a new event which reports the pull request as merged or closed makes the condition check GitHub
+     * straight away and only the pull request returned by GitHub completes the wait. Events received before the
+     * condition was created are ignored so that a stale event cannot repeatedly trigger requests.
+     * <p>
+     * The repository is only looked up on the first check so that each later check is a single (conditional) request
+     * for the pull request. The number of polls, GitHub requests and their latency are recorded in
+     * {@link #getStatistics()}. The state of the pull request from the last check is kept so that callers do not need
+     * to fetch it again once the wait is over.
+     */
+    public static class PullRequestMergedCondition implements WaitCondition {
+        private static final long serialVersionUID = 1L;
+
+        private final String project;
+        private final int id;
+        private final boolean stopOnConflict;
+        private final long webhookPollInterval;
+        private final long since = System.currentTimeMillis();
+        private long lastEventChecked;
+        private transient long lastPolled;
+        private transient GHRepository repository;
+        private int polls;
+        private int gitHubRequests;
+        private long totalLatency;
+        private long maxLatency;
+        private boolean merged;
+        private boolean closed;
+        private boolean conflict;
+        private String headRef;
+
+        public PullRequestMergedCondition(String project, int id, boolean stopOnConflict) {
+            this(project, id, stopOnConflict, 0);
+        }
+
+        public PullRequestMergedCondition(String project, int id, boolean stopOnConflict, long webhookPollInterval) {
+            this.project = project;
+            this.id = id;
+            this.stopOnConflict = stopOnConflict;
+            this.webhookPollInterval = webhookPollInterval;
+        }
+
+        @Override
+        public String toString() {
+            return "Pull Request " + id + " on project " + project + " to be merged";
+        }
+
+        @Override
+        public Closeable subscribe(Runnable listener) {
+            return PullRequestEvents.getInstance().subscribe(project, id, listener);
+        }
+
+        @Override
+        public Boolean check(CommandSupport step) throws Exception {
+            PullRequestEvents events = PullRequestEvents.getInstance();
+            PullRequestEvents.State event = events.getState(project, id);
+            boolean newEvent = false;
+            if (event != null && event.getReceived() >= since && event.getReceived() > lastEventChecked) {
+                lastEventChecked = event.getReceived();
+                if (event.isMerged() || event.isClosed()) {
+                    step.echo("Received a webhook event that Pull Request " + id + " on project " + project + " is " + (event.isMerged() ? "merged" : "closed") + " so checking GitHub");
+                    newEvent = true;
+                }
+            }
+            long now = System.currentTimeMillis();
+            if (!newEvent && webhookPollInterval > 0 && events.isReceivingEvents(project) && now - lastPolled < webhookPollInterval) {
+                return false;
+            }
+            lastPolled = now;
+
+            GHPullRequest pullRequest = fetchPullRequest(step);
+            if (pullRequest == null) {
+                return false;
+            }
+            merged = pullRequest.isMerged();
+            closed = GHIssueState.CLOSED.equals(pullRequest.getState());
+            conflict = "failure".equalsIgnoreCase(pullRequest.getMergeableState());
+            GHCommitPointer head = pullRequest.getHead();
+            headRef = head != null ? head.getRef() : null;
+            if (merged) {
+                step.echo("Pull Request " + pullRequest.getHtmlUrl() + " is merged");
+                return true;
+            }
+            if (closed) {
+                step.echo("Pull Request " + pullRequest.getHtmlUrl() + " is closed");
+                return true;
+            }
+            return stopOnConflict && conflict;
+        }
+
+        /**
+         * Returns a summary of how many polls and GitHub requests were made while waiting and how long they took
+         */
+        public String getStatistics() {
+            long average = polls > 0 ? totalLatency / polls : 0;
+            return "Polled Pull Request " + id + " on project " + project + " " + polls + " times using " + gitHubRequests
+                    + " GitHub requests with an average latency of " + average + "ms and a maximum of " + maxLatency + "ms";
+        }
+
+        /**
+         * Returns true if the pull request was merged when it was last checked
+         */
+        public boolean isMerged() {
+            return merged;
+        }
+
+        /**
+         * Returns true if the pull request was closed when it was last checked
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Returns true if the pull request could not be merged when it was last checked
+         */
+        public boolean isConflict() {
+            return conflict;
+        }
+
+        /**
+         * Returns the branch of the pull request when it was last checked
+         */
+        public String getHeadRef() {
+            return headRef;
+        }
+
+        public void setRepository(GHRepository repository) {
+            this.repository = repository;
+        }
+
+        public int getPolls() {
+            return polls;
+        }
+
+        public int getGitHubRequests() {
+            return gitHubRequests;
+        }
+
+        public long getTotalLatency() {
+            return totalLatency;
+        }
+
+        public long getMaxLatency() {
+            return maxLatency;
+        }
+
+        protected GHPullRequest fetchPullRequest(CommandSupport step) {
+            long start = System.currentTimeMillis();
+            try {
+                if (repository == null) {
+                    repository = getRepository(new Fabric8Commands(step).createGitHub(), project);
+                    gitHubRequests++;
+                }
+                gitHubRequests++;
+                return getPullRequest(repository, project, id);
+            } finally {
+                long latency = System.currentTimeMillis() - start;
+                polls++;
+                totalLatency += latency;
+                maxLatency = Math.max(maxLatency, latency);
+            }
+        }
+    }
+
+    /**
+     * Returns true once a webhook event has been received for the pull request or the webhook poll interval has
+     * elapsed; or straight away if no webhook events are being received for the repository. This is used to avoid
+     * calling GitHub on each iteration of a polling loop
+     */
+    public static class PullRequestEventCondition implements WaitCondition {
         private static final long serialVersionUID = 1L;
 
+        private final String project;
+        private final int id;
+        private final long webhookPollInterval;
+        private final long since = System.currentTimeMillis();
+
+        public PullRequestEventCondition(String project, int id, long webhookPollInterval) {
+            this.project = project;
+            this.id = id;
+            this.webhookPollInterval = webhookPollInterval;
+        }
+
+        @Override
+        public String toString() {
+            return "an event for Pull Request " + id + " on project " + project;
+        }
+
+        @Override
+        public Closeable subscribe(Runnable listener) {
+            return PullRequestEvents.getInstance().subscribe(project, id, listener);
+        }
+
+        @Override
+        public Boolean check(CommandSupport step) throws Exception {
+            PullRequestEvents events = PullRequestEvents.getInstance();
+            if (webhookPollInterval <= 0 || !events.isReceivingEvents(project)) {
+                return true;
+            }
+            PullRequestEvents.State event = events.getState(project, id);
+            if (event != null && event.getReceived() >= since) {
+                return true;
+            }
+            return System.currentTimeMillis() - since >= webhookPollInterval;
+        }
+    }
+
+    public static class Arguments extends WaitArguments {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * How often GitHub is polled as a fallback once webhook events are received for the repository
+         */
+        public static final long DEFAULT_WEBHOOK_POLL_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
         @Argument
         @Positive
         private int id = 0;
         @Argument
         @NotEmpty
         private String project = "";
+        @Argument
+        private long webhookPollInterval = DEFAULT_WEBHOOK_POLL_INTERVAL;
 
         private StepExtension stepExtension;
 
@@ -163,6 +400,7 @@ public class WaitUntilPullRequestMerged extends CommandSupport implements Functi
             return "Arguments{" +
                     "id=" + id +
                     ", project='" + project + '\'' +
+                    ", waitStrategy='" + getWaitStrategy() + '\'' +
                     '}';
         }
 
@@ -189,6 +427,14 @@ public class WaitUntilPullRequestMerged extends CommandSupport implements Functi
         public void setStepExtension(StepExtension stepExtension) {
             this.stepExtension = stepExtension;
         }
+
+        public long getWebhookPollInterval() {
+            return webhookPollInterval;
+        }
+
+        public void setWebhookPollInterval(long webhookPollInterval) {
+            this.webhookPollInterval = webhookPollInterval;
+        }
     }
 
 
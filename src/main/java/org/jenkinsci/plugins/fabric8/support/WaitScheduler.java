@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.support;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The controller wide timers used by waiting pipelines, pollers and watchdogs so that waiting does not
+ * require an executor or a CPS VM thread.
+ * <p>
+ * Tasks run on the {@link #get()} timer threads must return quickly; anything which may block, such as checking
+ * a condition over HTTP, should be handed off to the bounded {@link #getBlockingExecutor()} so that a slow remote
+ * server cannot delay the timers of other pipelines.
+ */
+public class WaitScheduler {
+    private static final int THREADS = Integer.getInteger(WaitScheduler.class.getName() + ".threads", 2);
+    private static final int BLOCKING_THREADS = Integer.getInteger(WaitScheduler.class.getName() + ".blockingThreads", 8);
+
+    private static final ScheduledExecutorService executor = createExecutor();
+    private static final ExecutorService blockingExecutor = createBlockingExecutor();
+
+    /**
+     * Returns the timer used to schedule tasks which must not block
+     */
+    public static ScheduledExecutorService get() {
+        return executor;
+    }
+
+    /**
+     * Returns the bounded pool used to run tasks which may block; such as checking the condition of a waiting pipeline
+     */
+    public static ExecutorService getBlockingExecutor() {
+        return blockingExecutor;
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        ScheduledThreadPoolExecutor answer = new ScheduledThreadPoolExecutor(THREADS, new NamingThreadFactory(new DaemonThreadFactory(), "fabric8-pipelines-wait"));
+        answer.setRemoveOnCancelPolicy(true);
+        return answer;
+    }
+
+    private static ExecutorService createBlockingExecutor() {
+        ThreadPoolExecutor answer = new ThreadPoolExecutor(BLOCKING_THREADS, BLOCKING_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamingThreadFactory(new DaemonThreadFactory(), "fabric8-pipelines-wait-check"));
+        answer.allowCoreThreadTimeOut(true);
+        return answer;
+    }
+}
@@ -8,8 +8,11 @@ import io.fabric8.kubernetes.client.KubernetesClient
 import io.fabric8.openshift.client.DefaultOpenShiftClient
 import io.fabric8.openshift.client.OpenShiftClient
 import jenkins.model.Jenkins
+import org.jenkinsci.plugins.fabric8.ShellBatch
 import org.jenkinsci.plugins.fabric8.StepExtension
 import org.jenkinsci.plugins.fabric8.helpers.MavenHelpers
+import org.jenkinsci.plugins.fabric8.maven.StagingReleases
+import org.jenkinsci.plugins.fabric8.maven.StagingRepositories
 import org.jenkinsci.plugins.workflow.steps.StepExecution
 
 import java.util.regex.Pattern
@@ -124,19 +127,10 @@ def removeTrailingSlash(String myString) {
 }
 
 def getRepoIds() {
-  // we could have multiple staging repos created, we need to write the names of all the generated files to a well known
-  // filename so we can use the workflow readFile (wildcards wont works and new File wont with slaves as groovy is executed on the master jenkins
-  // We write the names of the files that contain the repo ids used for staging.  Each staging repo id is read from each file and returned as a list
-  sh 'find target/nexus-staging/staging/  -maxdepth 1 -name "*.properties" > target/nexus-staging/staging/repos.txt'
-  def repos = readFile('target/nexus-staging/staging/repos.txt')
-  def list = []
-  // workflow closure not working here https://issues.jenkins-ci.org/browse/JENKINS-26481
-  def filelines = new String(repos).split('\n')
-  for (int i = 0; i < filelines.size(); i++) {
-    def matcher = readFile(filelines[i]) =~ 'stagingRepository.id=(.+)'
-    list << matcher[0][1]
-  }
-  return list
+  // we could have multiple staging repos created so lets read all the properties files with a single command as
+  // wildcards wont work with readFile and new File wont work with slaves as groovy is executed on the master jenkins
+  def text = sh(script: "find ${StagingRepositories.STAGING_DIR}/ -maxdepth 1 -name \"*.properties\" -exec cat {} +", returnStdout: true)
+  return StagingRepositories.parseRepoIds(text)
 }
 
 def getDockerHubImageTags(String image) {
@@ -164,24 +158,35 @@ def searchAndReplaceMavenSnapshotProfileVersionProperty(String property, String
   sh "git commit -a -m 'Bump ${property} development profile SNAPSHOT version'"
 }
 
+// runs the commands in a single sh step while still reporting the output and exit code of each command
+def shBatch(List<String> commands) {
+  def batch = new ShellBatch()
+  for (int i = 0; i < commands.size(); i++) {
+    batch.add(commands[i])
+  }
+  def output = sh(script: batch.toScript(), returnStdout: true)
+  echo batch.toLog(output)
+  return batch.parse(output)
+}
+
 def setupWorkspaceForRelease(String project, Boolean useGitTagForNextVersion, String mvnExtraArgs = "", String currentVersion = "", String containerName = "maven") {
-  sh "git config user.email fabric8-admin@googlegroups.com"
-  sh "git config user.name fabric8-release"
+  def commands = ["git config user.email fabric8-admin@googlegroups.com", "git config user.name fabric8-release"]
 
   if (fileExists("root/.ssh-git")) {
-    sh 'chmod 600 /root/.ssh-git/ssh-key'
-    sh 'chmod 600 /root/.ssh-git/ssh-key.pub'
-    sh 'chmod 700 /root/.ssh-git'
+    commands << 'chmod 600 /root/.ssh-git/ssh-key'
+    commands << 'chmod 600 /root/.ssh-git/ssh-key.pub'
+    commands << 'chmod 700 /root/.ssh-git'
   }
   if (fileExists("/home/jenkins/.gnupg")) {
-    sh 'chmod 600 /home/jenkins/.gnupg/pubring.gpg'
-    sh 'chmod 600 /home/jenkins/.gnupg/secring.gpg'
-    sh 'chmod 600 /home/jenkins/.gnupg/trustdb.gpg'
-    sh 'chmod 700 /home/jenkins/.gnupg'
+    commands << 'chmod 600 /home/jenkins/.gnupg/pubring.gpg'
+    commands << 'chmod 600 /home/jenkins/.gnupg/secring.gpg'
+    commands << 'chmod 600 /home/jenkins/.gnupg/trustdb.gpg'
+    commands << 'chmod 700 /home/jenkins/.gnupg'
   }
 
-  sh "git tag -d \$(git tag)"
-  sh "git fetch --tags"
+  commands << "git tag -d \$(git tag)"
+  commands << "git fetch --tags"
+  shBatch(commands)
 
   if (useGitTagForNextVersion) {
     def newVersion = getNewVersionFromTag(currentVersion)
@@ -300,6 +305,54 @@ def releaseSonartypeRepo(String repoId) {
   }
 }
 
+// releases the staging repos concurrently following the same policy as the Java step: once a release fails no more are
+// started and every staging repo which was not released is dropped
+def releaseSonartypeRepos(List<String> repoIds, int parallelism) {
+  if (!repoIds) {
+    return
+  }
+  if (repoIds.size() == 1) {
+    releaseSonartypeRepo(repoIds[0])
+    return
+  }
+  parallelism = Math.max(1, Math.min(parallelism, repoIds.size()))
+  echo "Releasing ${repoIds.size()} staging repositories using ${parallelism} workers"
+
+  def releases = new StagingReleases(repoIds)
+  def workers = [:]
+  for (int w = 0; w < parallelism; w++) {
+    def worker = w
+    workers["release-${worker}"] = {
+      for (int i = worker; i < repoIds.size() && releases.canStart(); i += parallelism) {
+        def repoId = repoIds[i]
+        try {
+          sh "mvn -B org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-release -DserverId=oss-sonatype-staging -DnexusUrl=https://oss.sonatype.org -DstagingRepositoryId=${repoId} -Ddescription=\"Next release is ready\" -DstagingProgressTimeoutMinutes=60"
+          releases.onReleased(repoId)
+        } catch (err) {
+          releases.onFailed(repoId, err)
+        }
+      }
+    }
+  }
+  parallel workers
+
+  if (releases.failed) {
+    for (repoId in releases.unreleased) {
+      // lets keep dropping the rest and report the original release failure if a drop fails
+      try {
+        sh "mvn org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-drop -DserverId=oss-sonatype-staging -DnexusUrl=https://oss.sonatype.org -DstagingRepositoryId=${repoId} -Ddescription=\"Error during release: ${releases.getCause(repoId)}\" -DstagingProgressTimeoutMinutes=60"
+      } catch (dropErr) {
+        echo "Failed to drop the staging repository ${repoId}: ${dropErr}"
+      }
+    }
+    if (releases.released) {
+      echo "WARNING the staging repositories ${releases.released} were already released so could not be dropped"
+    }
+    currentBuild.result = 'FAILURE'
+    error releases.failureMessage
+  }
+}
+
 def dropStagingRepo(String repoId) {
   echo "Not a release so dropping staging repo ${repoId}"
   sh "mvn org.sonatype.plugins:nexus-staging-maven-plugin:1.6.5:rc-drop -DserverId=oss-sonatype-staging -DnexusUrl=https://oss.sonatype.org -DstagingRepositoryId=${repoId} -Ddescription=\"Dry run\" -DstagingProgressTimeoutMinutes=60"
@@ -5,6 +5,10 @@ import org.jenkinsci.plugins.fabric8.FailedBuildException
 import org.jenkinsci.plugins.fabric8.ShellFacade
 import org.jenkinsci.plugins.fabric8.StepExtension
 import org.jenkinsci.plugins.fabric8.Utils
+import org.jenkinsci.plugins.fabric8.WaitCondition
+import org.jenkinsci.plugins.fabric8.WaitFacade
+import org.jenkinsci.plugins.fabric8.WaitStrategy
+import org.jenkinsci.plugins.fabric8.WaitTimeoutException
 import org.jenkinsci.plugins.fabric8.helpers.GitHelper
 import org.jenkinsci.plugins.fabric8.helpers.GitRepositoryInfo
 import org.jenkinsci.plugins.fabric8.model.StagedProjectInfo
@@ -47,11 +51,13 @@ def call(Map config = [:], body) {
   }
   def pauseOnFailure = config.get('pauseOnFailure', false)
   def pauseOnSuccess = config.get('pauseOnSuccess', false)
+  def shellSessions = null
 
   try {
     checkout scm
 
     utils = createUtils()
+    shellSessions = utils.getShellSessions()
     def branch = findBranch()
     utils.setBranch(branch)
 
@@ -81,6 +87,11 @@ def call(Map config = [:], body) {
     if (pauseOnFailure) {
       input message: 'The build pod has been paused'
     }
+  } finally {
+    // the sessions hold exec streams open into the pod
+    if (shellSessions) {
+      shellSessions.close()
+    }
   }
 }
 
@@ -112,14 +123,42 @@ Utils createUtils() {
     }
   } as ShellFacade)
 
+  u.setWaitFacade({ WaitCondition condition, WaitStrategy strategy, long timeout ->
+    try {
+      return fabric8WaitUntil(condition: condition, strategy: strategy, timeout: timeout)
+    } catch (WaitTimeoutException e) {
+      echo e.message
+      return false
+    }
+  } as WaitFacade)
+
   def path = sh(script: "pwd", returnStdout: true)
   if (path) {
     println "Currnet path is ${pwd}"
     u.setCurrentPath(path.trim())
   }
+  // only the built in node shares the file system of the controller; other agents must return output from sh steps
+  u.setWorkspaceLocal(env.NODE_NAME == 'master' || env.NODE_NAME == 'built-in')
+
+  // an optional long lived shell per container saves launching a sh step for every command
+  if (env.FABRIC8_SHELL_SESSION == 'true' && path) {
+    // NODE_NAME is not always the pod name whereas the hostname of a Kubernetes agent is
+    def podName = sh(script: "hostname", returnStdout: true).trim()
+    def sessions = createShellSessions(podName, env.KUBERNETES_NAMESPACE, path.trim())
+    if (sessions) {
+      u.setShellSessions(sessions)
+    } else {
+      echo "Not using shell sessions as there is no pod ${podName}"
+    }
+  }
   return u
 }
 
+@NonCPS
+def createShellSessions(String podName, String namespace, String directory) {
+  return Utils.createPodShellSessions(podName, namespace, directory)
+}
+
 boolean isCD(MavenFlow.Arguments arguments) {
   Boolean flag = null
   try {
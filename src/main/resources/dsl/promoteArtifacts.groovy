@@ -12,14 +12,10 @@ def call(PromoteArtifacts.Arguments config) {
   return flow.doStepExecution(config.stepExtension) {
     if (repoIds && repoIds.size() > 0) {
       container(name: containerName) {
-        sh 'chmod 600 /root/.ssh-git/ssh-key'
-        sh 'chmod 600 /root/.ssh-git/ssh-key.pub'
-        sh 'chmod 700 /root/.ssh-git'
+        flow.shBatch(['chmod 600 /root/.ssh-git/ssh-key', 'chmod 600 /root/.ssh-git/ssh-key.pub', 'chmod 700 /root/.ssh-git'])
 
         echo "About to release ${name} repo ids ${repoIds}"
-        for (int j = 0; j < repoIds.size(); j++) {
-          flow.releaseSonartypeRepo(repoIds[j])
-        }
+        flow.releaseSonartypeRepos(repoIds, config.parallelism)
 
         if (config.helmPush) {
           flow.helm()
@@ -1,5 +1,6 @@
 package dsl
 
+import org.jenkinsci.plugins.fabric8.docker.ImageCopier
 import org.jenkinsci.plugins.fabric8.steps.PromoteImages
 
 def call(PromoteImages.Arguments config) {
@@ -13,30 +14,94 @@ def call(PromoteImages.Arguments config) {
 
   def flow = new Fabric8Commands()
   def registryPrefix = flow.dockerRegistryPrefix()
-  def org = config.org
-  def images = config.images
   def tag = config.tag
   def toRegistry = config.toRegistry
 
   return flow.doStepExecution(config.stepExtension) {
     if (tag && toRegistry) {
-      container(config.containerName) {
-        for (int i = 0; i < images.size(); i++) {
-          image = images[i]
-
-          // if we're running on a single node then we already have the image on this host so no need to pull image
-          if (flow.isSingleNode()) {
-            sh "docker tag ${org}/${image}:${tag} ${toRegistry}/${org}/${image}:${tag}"
-          } else {
-            sh "docker pull ${registryPrefix}fabric8/${image}:${tag}"
-            sh "docker tag ${registryPrefix}${org}/${image}:${tag} ${toRegistry}/${org}/${image}:${tag}"
-          }
+      // the registry API authenticates to the target registry with an optional Jenkins credential
+      if (config.credentialsId) {
+        withCredentials([usernamePassword(credentialsId: config.credentialsId, usernameVariable: 'DOCKER_REGISTRY_USERNAME', passwordVariable: 'DOCKER_REGISTRY_PASSWORD')]) {
+          promote(config, flow, registryPrefix)
+        }
+      } else {
+        promote(config, flow, registryPrefix)
+      }
+    }
+  }
+}
 
-          retry(3) {
-            sh "docker push ${toRegistry}/${org}/${image}:${tag}"
+def promote(PromoteImages.Arguments config, flow, registryPrefix) {
+  def org = config.org
+  def images = config.images
+  def tag = config.tag
+  def toRegistry = config.toRegistry
+  def username = env.DOCKER_REGISTRY_USERNAME
+  def password = env.DOCKER_REGISTRY_PASSWORD
+
+  container(config.containerName) {
+    // if we're running on a single node then we already have the image on this host so no need to pull image
+    def singleNode = flow.isSingleNode()
+    def useRegistry = ImageCopier.isRegistryCopy(config.copyMethod) && registryPrefix && !singleNode
+    def parallelism = Math.max(1, Math.min(config.parallelism, images.size()))
+    def failures = []
+    def skipped = 0
+    def bytesSaved = 0L
+
+    // each worker promotes its share of the images one at a time so at most parallelism images are in flight
+    def workers = [:]
+    for (int w = 0; w < parallelism; w++) {
+      def worker = w
+      workers["promote-${worker}"] = {
+        for (int i = worker; i < images.size(); i += parallelism) {
+          def image = images[i]
+          try {
+            if (useRegistry) {
+              // the copy compares the digests first so an unchanged image costs a couple of manifest requests
+              def result
+              retry(3) {
+                result = copyImage(registryPrefix, "${registryPrefix}${org}/${image}:${tag}", "${toRegistry}/${org}/${image}:${tag}", toRegistry, username, password)
+              }
+              if (result.unchanged) {
+                echo "Not pushing ${toRegistry}/${org}/${image}:${tag} as it already has the same digest"
+                skipped++
+                bytesSaved += result.bytesSaved
+              } else {
+                echo "Copied ${result.description}"
+              }
+              continue
+            }
+            if (singleNode) {
+              sh "docker tag ${org}/${image}:${tag} ${toRegistry}/${org}/${image}:${tag}"
+            } else {
+              sh "docker pull ${registryPrefix}${org}/${image}:${tag}"
+              sh "docker tag ${registryPrefix}${org}/${image}:${tag} ${toRegistry}/${org}/${image}:${tag}"
+            }
+
+            retry(3) {
+              sh "docker push ${toRegistry}/${org}/${image}:${tag}"
+            }
+          } catch (err) {
+            echo "Failed to promote image ${image}: ${err}"
+            failures << image
           }
         }
       }
     }
+    parallel workers
+    echo "Avoided ${skipped} pushes of unchanged images saving ${bytesSaved} bytes"
+
+    if (failures) {
+      error "Failed to promote ${failures.size()} of ${images.size()} images ${failures}"
+    }
   }
 }
+
+// returns a serializable summary of the copy as the result of the copier cannot be kept by the pipeline
+@NonCPS
+def copyImage(String registryPrefix, String source, String target, String toRegistry, String username, String password) {
+  def registry = registryPrefix.endsWith('/') ? registryPrefix.substring(0, registryPrefix.length() - 1) : registryPrefix
+  def copier = new ImageCopier().insecureRegistry(registry).credentials(toRegistry, username, password)
+  def result = copier.copy(source, target)
+  return [unchanged: result.unchanged, bytesSaved: copier.bytesSaved, description: result.toString()]
+}
@@ -8,6 +8,7 @@ import org.jenkinsci.plugins.fabric8.steps.PromoteImages
 import org.jenkinsci.plugins.fabric8.steps.ReleaseProject
 import org.jenkinsci.plugins.fabric8.steps.TagImages
 import org.jenkinsci.plugins.fabric8.steps.WaitUntilArtifactSyncedWithCentral
+import org.jenkinsci.plugins.fabric8.steps.WaitUntilArtifactsSyncedWithCentral
 import org.jenkinsci.plugins.fabric8.steps.WaitUntilPullRequestMerged
 
 def call(ReleaseProject.Arguments arguments) {
@@ -42,6 +43,12 @@ def call(ReleaseProject.Arguments arguments) {
     waitUntilPullRequestMerged(waitUntilPullRequestMergedArguments)
   }
 
+  WaitUntilArtifactsSyncedWithCentral.Arguments waitUntilArtifactsSyncedWithCentralArguments = arguments.createWaitUntilArtifactsSyncedWithCentralArguments()
+  if (waitUntilArtifactsSyncedWithCentralArguments) {
+    waitUntilArtifactsSyncedWithCentral(waitUntilArtifactsSyncedWithCentralArguments)
+    return
+  }
+
   WaitUntilArtifactSyncedWithCentral.Arguments waitUntilArtifactSyncedWithCentralArguments = arguments.createWaitUntilArtifactSyncedWithCentralArguments()
   Model mavenProject = flow.loadMavenPom()
   defaultWaitInfoFromPom(waitUntilArtifactSyncedWithCentralArguments, mavenProject)
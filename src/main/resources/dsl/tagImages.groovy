@@ -1,27 +1,88 @@
 package dsl
 
+import org.jenkinsci.plugins.fabric8.docker.ImageCopier
+import org.jenkinsci.plugins.fabric8.docker.ImageReference
 import org.jenkinsci.plugins.fabric8.steps.TagImages
 
 def call(TagImages.Arguments config) {
 
   def images = config.images
   def tag = config.tag
-  def registryPrefix = flow.dockerRegistryPrefix()
   def flow = new Fabric8Commands()
+  def registryPrefix = flow.dockerRegistryPrefix()
 
   return flow.doStepExecution(config.stepExtension) {
     if (tag && images && images.size() > 0) {
-      //stage "tag images"
-      container(config.containerName) {
-        for (int i = 0; i < images.size(); i++) {
-          def image = images[i]
-          retry(3) {
-            sh "docker pull ${registryPrefix}fabric8/${image}:${tag}"
-            sh "docker tag  ${registryPrefix}fabric8/${image}:${tag} docker.io/fabric8/${image}:${tag}"
-            sh "docker push docker.io/fabric8/${image}:${tag}"
-          }
+      // the registry API authenticates to docker hub with an optional Jenkins credential
+      if (config.credentialsId) {
+        withCredentials([usernamePassword(credentialsId: config.credentialsId, usernameVariable: 'DOCKER_REGISTRY_USERNAME', passwordVariable: 'DOCKER_REGISTRY_PASSWORD')]) {
+          tagAll(config, registryPrefix)
         }
+      } else {
+        tagAll(config, registryPrefix)
+      }
+    }
+  }
+}
+
+def tagAll(TagImages.Arguments config, registryPrefix) {
+  def images = config.images
+  def tag = config.tag
+  def username = env.DOCKER_REGISTRY_USERNAME
+  def password = env.DOCKER_REGISTRY_PASSWORD
+
+  //stage "tag images"
+  def skipped = 0
+  def bytesSaved = 0L
+  if (ImageCopier.isRegistryCopy(config.copyMethod) && registryPrefix) {
+    for (int i = 0; i < images.size(); i++) {
+      def image = images[i]
+      def size = unchangedImageSize(registryPrefix, "${registryPrefix}fabric8/${image}:${tag}", "docker.io/fabric8/${image}:${tag}", username, password)
+      if (size >= 0) {
+        echo "Not copying docker.io/fabric8/${image}:${tag} as it already has the same digest"
+        skipped++
+        bytesSaved += size
+        continue
+      }
+      retry(3) {
+        echo "Copied ${copyImage(registryPrefix, "${registryPrefix}fabric8/${image}:${tag}", "docker.io/fabric8/${image}:${tag}", username, password)}"
+      }
+    }
+    echo "Avoided ${skipped} pushes of unchanged images saving ${bytesSaved} bytes"
+    return
+  }
+  container(config.containerName) {
+    for (int i = 0; i < images.size(); i++) {
+      def image = images[i]
+      def size = registryPrefix ? unchangedImageSize(registryPrefix, "${registryPrefix}fabric8/${image}:${tag}", "docker.io/fabric8/${image}:${tag}", username, password) : -1
+      if (size >= 0) {
+        echo "Not pushing docker.io/fabric8/${image}:${tag} as it already has the same digest"
+        skipped++
+        bytesSaved += size
+        continue
+      }
+      retry(3) {
+        sh "docker pull ${registryPrefix}fabric8/${image}:${tag}"
+        sh "docker tag  ${registryPrefix}fabric8/${image}:${tag} docker.io/fabric8/${image}:${tag}"
+        sh "docker push docker.io/fabric8/${image}:${tag}"
       }
     }
+    echo "Avoided ${skipped} pushes of unchanged images saving ${bytesSaved} bytes"
+  }
+}
+
+@NonCPS
+def copyImage(String registryPrefix, String source, String target, String username, String password) {
+  def registry = registryPrefix.endsWith('/') ? registryPrefix.substring(0, registryPrefix.length() - 1) : registryPrefix
+  return new ImageCopier().insecureRegistry(registry).credentials('docker.io', username, password).copy(source, target).toString()
+}
+
+@NonCPS
+def unchangedImageSize(String registryPrefix, String source, String target, String username, String password) {
+  def registry = registryPrefix.endsWith('/') ? registryPrefix.substring(0, registryPrefix.length() - 1) : registryPrefix
+  try {
+    return new ImageCopier().insecureRegistry(registry).credentials('docker.io', username, password).sizeIfUnchanged(ImageReference.parse(source), ImageReference.parse(target))
+  } catch (IOException e) {
+    return -1
   }
 }
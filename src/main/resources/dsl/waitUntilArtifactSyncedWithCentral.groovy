@@ -1,5 +1,6 @@
 package dsl
 
+import org.jenkinsci.plugins.fabric8.WaitTimeoutException
 import org.jenkinsci.plugins.fabric8.model.ServiceConstants
 import org.jenkinsci.plugins.fabric8.steps.WaitUntilArtifactSyncedWithCentral
 
@@ -18,13 +19,13 @@ def call(WaitUntilArtifactSyncedWithCentral.Arguments config) {
     if (groupId && artifactId && version) {
       echo "waiting for artifact ${groupId}/${artifactId}/${version}/${ext} to be in repo ${repo}"
 
-      waitUntil {
-        retry(3) {
-          flow.isArtifactAvailableInRepo(repo, groupId.replaceAll('\\.', '/'), artifactId, version, ext)
-        }
+      def condition = new WaitUntilArtifactSyncedWithCentral.ArtifactAvailableCondition(repo, groupId, artifactId, version, ext)
+      try {
+        fabric8WaitUntil(condition: condition, strategy: config.createWaitStrategy(), timeout: config.waitTimeout)
+        flow.sendChat "${config.artifactId} ${config.version} released and available in maven central"
+      } catch (WaitTimeoutException e) {
+        echo "timed out waiting for artifact ${groupId}/${artifactId}/${version}/${ext} to be in repo ${repo}"
       }
-
-      flow.sendChat "${config.artifactId} ${config.version} released and available in maven central"
     } else {
       echo "required properties missing groupId: ${groupId}, artifactId: ${artifactId}, version: ${version}"
     }
@@ -0,0 +1,25 @@
+package dsl
+
+import org.jenkinsci.plugins.fabric8.WaitTimeoutException
+import org.jenkinsci.plugins.fabric8.steps.WaitUntilArtifactsSyncedWithCentral
+
+def call(WaitUntilArtifactsSyncedWithCentral.Arguments config) {
+  def flow = new Fabric8Commands()
+
+  return flow.doStepExecution(config.stepExtension) {
+    def artifacts = config.createCoordinates()
+    if (artifacts) {
+      echo "waiting for ${artifacts.size()} artifacts to be in repo ${config.repositoryUrl}"
+
+      def condition = new WaitUntilArtifactsSyncedWithCentral.ArtifactsAvailableCondition(config.repositoryUrl, artifacts, config.parallelism)
+      try {
+        fabric8WaitUntil(condition: condition, strategy: config.createWaitStrategy(), timeout: config.waitTimeout)
+        flow.sendChat "${artifacts.size()} artifacts ${config.version} released and available in maven central"
+      } catch (WaitTimeoutException e) {
+        echo "timed out waiting for artifacts to be in repo ${config.repositoryUrl}"
+      }
+    } else {
+      echo "required property missing artifacts: ${config.artifacts}"
+    }
+  }
+}
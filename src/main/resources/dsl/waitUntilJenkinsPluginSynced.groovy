@@ -1,5 +1,6 @@
 package dsl
 
+import org.jenkinsci.plugins.fabric8.WaitTimeoutException
 import org.jenkinsci.plugins.fabric8.steps.WaitUntilJenkinsPluginSynced
 
 def call(WaitUntilJenkinsPluginSynced.Arguments config) {
@@ -13,11 +14,11 @@ def call(WaitUntilJenkinsPluginSynced.Arguments config) {
   def path = "plugins/" + name
   def artifact = "${name}.hpi"
 
-  waitUntil {
-    retry(3) {
-      flow.isFileAvailableInRepo(repo, path, config.version, artifact)
-    }
+  def condition = new WaitUntilJenkinsPluginSynced.FileAvailableCondition(repo, path, config.version, artifact.toString())
+  try {
+    fabric8WaitUntil(condition: condition, strategy: config.createWaitStrategy(), timeout: config.waitTimeout)
+    flow.sendChat "${config.artifactId} ${config.version} released and available in the jenkins plugin archive"
+  } catch (WaitTimeoutException e) {
+    echo "timed out waiting for ${artifact} ${config.version} to be in repo ${repo}"
   }
-
-  flow.sendChat "${config.artifactId} ${config.version} released and available in the jenkins plugin archive"
 }
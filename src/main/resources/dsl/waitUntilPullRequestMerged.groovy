@@ -1,5 +1,6 @@
 package dsl
 
+import org.jenkinsci.plugins.fabric8.WaitTimeoutException
 import org.jenkinsci.plugins.fabric8.steps.WaitUntilPullRequestMerged
 
 def call(WaitUntilPullRequestMerged.Arguments config) {
@@ -12,46 +13,37 @@ def call(WaitUntilPullRequestMerged.Arguments config) {
 
   def branchName
   def notified = false
+  def values = project.split('/')
+  def prj = values[1]
 
   // wait until the PR is merged, if there's a merge conflict the notify and wait until PR is finally merged
   return flow.doStepExecution(config.stepExtension) {
-    waitUntil {
-      echo "https://api.github.com/repos/${project}/pulls/${id}"
-
-      def apiUrl = new URL("https://api.github.com/repos/${project}/pulls/${id}")
-
-      def rs = restGetURL {
-        authString = githubToken
-        url = apiUrl
+    while (true) {
+      // the condition only calls GitHub once a webhook event arrives for the PR when webhooks are received for the project
+      def condition = new WaitUntilPullRequestMerged.PullRequestMergedCondition(project, id, !notified, config.webhookPollInterval)
+      try {
+        fabric8WaitUntil(condition: condition, strategy: config.createWaitStrategy(), timeout: config.waitTimeout)
+      } catch (WaitTimeoutException e) {
+        echo "timed out waiting for PR ${id} to be merged"
+        return false
+      } finally {
+        echo condition.statistics
       }
 
-      if (rs.merged == true) {
+      if (condition.merged) {
         echo "PR ${id} merged"
-        return true
+        break
       }
-
-      if (rs.state == 'closed') {
+      if (condition.closed) {
         echo "PR ${id} closed"
-        return true
+        break
       }
-
-      branchName = rs.head.ref
-      def sha = rs.head.sha
-      echo "checking status of commit ${sha}"
-
-      apiUrl = new URL("https://api.github.com/repos/${project}/commits/${sha}/status")
-      rs = restGetURL {
-        authString = githubToken
-        url = apiUrl
+      if (!condition.conflict) {
+        continue
       }
 
-      echo "${project} Pull request ${id} state ${rs.state}"
-
-      def values = project.split('/')
-      def prj = values[1]
-
-      if (rs.state == 'failure' && !notified) {
-        flow.sendChat """
+      branchName = condition.headRef
+      flow.sendChat """
 Pull request was not automatically merged.  Please fix and update Pull Request to continue with release...
 ```
 git clone git@github.com:${project}.git
@@ -65,15 +57,11 @@ git commit -a -m 'resolved merge issues caused by release dependency updates'
 git push origin fixPR${id}:${branchName}
 ```
 """
+      notified = true
 
-        def shouldWeWait = requestResolve()
-
-        if (!shouldWeWait) {
-          return true
-        }
-        notified = true
+      if (!requestResolve()) {
+        break
       }
-      rs.state == 'success'
     }
     try {
       // clean up
@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8;
+
+import io.fabric8.utils.IOHelpers;
+import org.jenkinsci.plugins.fabric8.maven.NexusStagingClient;
+import org.jenkinsci.plugins.fabric8.maven.StagingRepositories;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ */
+public class Fabric8CommandsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testNewVersionFromTagUsesShellOutput() throws Exception {
+        List<String> scripts = new ArrayList<>();
+        Fabric8Commands commands = new Fabric8Commands();
+        commands.setShellFacade((cmd, returnStdout, containerName) -> {
+            scripts.add(cmd);
+            // the workspace is on a remote agent so the output must be returned rather than written to a file
+            assertThat(returnStdout).isTrue();
+            return "checking tags\n1.2.3\n\n";
+        });
+
+        assertThat(commands.getNewVersionFromTag()).isEqualTo("1.2.3");
+        assertThat(scripts).hasSize(1);
+        assertThat(scripts.get(0)).startsWith("semver-release-number --folder ");
+    }
+
+    @Test
+    public void testUpdatePomPropertyOfRemoteWorkspace() throws Exception {
+        File root = folder.getRoot();
+        write(new File(root, "pom.xml"), "<project>\n  <fabric8.version>2.3.12</fabric8.version>\n  <fabric8Xversion>2.3.12</fabric8Xversion>\n</project>\n");
+        write(new File(root, "current/pom.xml"), "<project><fabric8.version>2.4.1</fabric8.version></project>\n");
+        Fabric8Commands commands = new Fabric8Commands();
+        commands.setShellFacade(localShell(root));
+
+        assertThat(commands.updatePomProperty("fabric8.version", "2.4.1", false)).containsExactly("./pom.xml");
+        assertThat(IOHelpers.readFully(new File(root, "pom.xml")))
+                .isEqualTo("<project>\n  <fabric8.version>2.4.1</fabric8.version>\n  <fabric8Xversion>2.3.12</fabric8Xversion>\n</project>\n");
+        assertThat(commands.updatePomProperty("fabric8.version", "2.4.1", false)).isEmpty();
+    }
+
+    @Test
+    public void testUpdateVersionsOfRemoteWorkspace() throws Exception {
+        File root = folder.getRoot();
+        write(new File(root, "a/package.json"), "{\n  \"fabric8-ui\": \"1.0.1\",\n  \"@scope/lib\": \"2.0.0-development\"\n}\n");
+        write(new File(root, "b/package.json"), "{\n  \"fabric8-ui\": \"1.0.2\"\n}\n");
+        write(new File(root, "Dockerfile"), "FROM centos\nENV FABRIC8_VERSION 2.3.12\nENV FABRIC8_VERSION_SUFFIX abc\n");
+        Fabric8Commands commands = new Fabric8Commands();
+        commands.setShellFacade(localShell(root));
+
+        Map<String, String> versions = new LinkedHashMap<>();
+        versions.put("fabric8-ui", "1.0.2");
+        versions.put("@scope/lib", "2.1.0");
+        assertThat(commands.updatePackageJSONVersions(Arrays.asList("a/package.json", "b/package.json", "a/package.json"), versions))
+                .containsExactly("a/package.json");
+        assertThat(IOHelpers.readFully(new File(root, "a/package.json"))).isEqualTo("{\n  \"fabric8-ui\": \"1.0.2\",\n  \"@scope/lib\": \"2.1.0\"\n}\n");
+
+        assertThat(commands.updateDockerfileEnvVars(Collections.singletonList("Dockerfile"), Collections.singletonMap("FABRIC8_VERSION", "2.4.1")))
+                .containsExactly("Dockerfile");
+        assertThat(IOHelpers.readFully(new File(root, "Dockerfile"))).isEqualTo("FROM centos\nENV FABRIC8_VERSION 2.4.1\nENV FABRIC8_VERSION_SUFFIX abc\n");
+    }
+
+    @Test
+    public void testRepoIdsOfRemoteWorkspace() throws Exception {
+        Fabric8Commands commands = new Fabric8Commands();
+        // the current directory is on the agent so does not exist on this machine
+        commands.setCurrentDir(new File("/no/such/agent/workspace"));
+        commands.setShellFacade((cmd, returnStdout, containerName) -> {
+            assertThat(cmd).startsWith("find " + StagingRepositories.STAGING_DIR + "/");
+            return "stagingRepository.profileId=123\nstagingRepository.id=iofabric8-1002\nstagingRepository.id = iofabric8-1001\n";
+        });
+
+        assertThat(commands.getRepoIds()).containsExactly("iofabric8-1002", "iofabric8-1001");
+    }
+
+    /**
+     * Runs the commands with a local shell in the directory as the sh step would on an agent
+     */
+    @Test
+    public void testReleaseStopsStartingReleasesAfterAFailure() throws Exception {
+        for (int parallelism : new int[]{1, 2}) {
+            List<String> started = Collections.synchronizedList(new ArrayList<>());
+            List<String> dropped = Collections.synchronizedList(new ArrayList<>());
+            Fabric8Commands commands = new Fabric8Commands() {
+                @Override
+                public NexusStagingClient createNexusStagingClient() {
+                    return new NexusStagingClient("http://localhost:1/", "user", "password");
+                }
+
+                @Override
+                protected String releaseStagingRepo(String repoId) {
+                    started.add(repoId);
+                    if (repoId.equals("repo-2")) {
+                        throw new FailedBuildException("boom");
+                    }
+                    return null;
+                }
+
+                @Override
+                protected void dropFailedStagingRepo(String repoId, Throwable err) {
+                    dropped.add(repoId);
+                }
+            };
+            try {
+                commands.releaseSonartypeRepos(Arrays.asList("repo-1", "repo-2", "repo-3", "repo-4"), parallelism);
+                fail("Should have failed with parallelism " + parallelism);
+            } catch (FailedBuildException e) {
+                assertThat(e.getMessage()).startsWith("ERROR releasing sonartype repos [repo-2]");
+            }
+            // the worker which failed starts no more releases and everything not released is dropped
+            assertThat(started).doesNotContain("repo-4");
+            List<String> expected = new ArrayList<>(Arrays.asList("repo-1", "repo-2", "repo-3", "repo-4"));
+            expected.removeIf(repoId -> started.contains(repoId) && !repoId.equals("repo-2"));
+            assertThat(dropped).containsExactlyElementsOf(expected);
+        }
+    }
+
+    protected static ShellFacade localShell(File dir) {
+        return (cmd, returnStdout, containerName) -> {
+            try {
+                Process process = new ProcessBuilder("sh", "-c", cmd).directory(dir).redirectErrorStream(true).start();
+                String output = IOHelpers.readFully(process.getInputStream());
+                assertThat(process.waitFor()).describedAs("exit code of " + cmd + ": " + output).isEqualTo(0);
+                return returnStdout ? output.trim() : null;
+            } catch (IOException | InterruptedException e) {
+                throw new AssertionError("Failed to run " + cmd + ": " + e, e);
+            }
+        };
+    }
+
+    protected static void write(File file, String text) throws IOException {
+        file.getParentFile().mkdirs();
+        IOHelpers.writeFully(file, text);
+    }
+}
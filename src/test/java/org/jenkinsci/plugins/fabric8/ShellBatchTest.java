@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8;
+
+import io.fabric8.utils.IOHelpers;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ */
+public class ShellBatchTest {
+
+    @Test
+    public void testOutputOfEachCommand() throws Exception {
+        ShellBatch batch = new ShellBatch().add("echo hello").add("printf 'no newline'").add("echo oops >&2; true");
+
+        List<ShellBatch.Result> results = batch.parse(run(batch));
+        assertThat(results).extracting("output").containsExactly("hello", "no newline", "oops");
+        assertThat(results).extracting("exitCode").containsExactly(0, 0, 0);
+    }
+
+    @Test
+    public void testStopsAtFirstFailure() throws Exception {
+        ShellBatch batch = new ShellBatch().add("echo first").add("echo broken; exit 3").add("touch should-not-run");
+        try {
+            batch.parse(run(batch));
+            fail("Should have failed");
+        } catch (FailedBuildException e) {
+            assertThat(e.getMessage()).isEqualTo("Command 'echo broken; exit 3' failed with exit code 3: broken");
+        }
+    }
+
+    @Test
+    public void testLogIncludesFailedCommand() throws Exception {
+        ShellBatch batch = new ShellBatch().add("echo first").add("true").add("echo broken; exit 3").add("touch should-not-run");
+
+        assertThat(batch.toLog(run(batch))).isEqualTo("+ echo first\nfirst\n+ true\n+ echo broken; exit 3\nbroken\n");
+    }
+
+    protected static String run(ShellBatch batch) throws Exception {
+        Process process = new ProcessBuilder("sh", "-c", batch.toScript()).start();
+        String output = IOHelpers.readFully(process.getInputStream());
+        assertThat(process.waitFor()).isEqualTo(0);
+        return output;
+    }
+}
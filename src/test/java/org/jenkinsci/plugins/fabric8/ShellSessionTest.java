@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ */
+public class ShellSessionTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCommandsShareOneShell() throws Exception {
+        try (ShellSession session = ShellSession.local(null)) {
+            session.changeDirectory(folder.getRoot().getPath());
+            String pid = session.run("echo $$").getOutput();
+
+            ShellBatch.Result result = session.run("pwd; echo oops >&2; exit 3");
+            assertThat(result.getExitCode()).isEqualTo(3);
+            assertThat(result.getOutput()).isEqualTo(folder.getRoot().getCanonicalPath() + "\noops");
+
+            assertThat(session.run("printf partial").getOutput()).isEqualTo("partial");
+            assertThat(session.run("echo $$").getOutput()).isEqualTo(pid);
+            assertThat(session.run("cat").getExitCode()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void testStreamsLinesToConsumer() throws Exception {
+        try (ShellSession session = ShellSession.local(null)) {
+            List<String> lines = new ArrayList<>();
+            ShellBatch.Result result = session.run("echo one; echo; printf two", lines::add);
+            assertThat(result.getExitCode()).isEqualTo(0);
+            assertThat(lines).containsExactly("one", "", "two");
+
+            lines.clear();
+            assertThat(session.run("echo three; exit 2", lines::add).getExitCode()).isEqualTo(2);
+            assertThat(lines).containsExactly("three");
+        }
+    }
+
+    @Test
+    public void testExportsEnvironment() throws Exception {
+        try (ShellSession session = ShellSession.local(null)) {
+            Map<String, String> env = new HashMap<>();
+            env.put("FABRIC8_TEST", "it's set");
+            env.put("PATH", "/nowhere");
+            env.put("not-a-name", "ignored");
+            assertThat(session.run("echo \"$FABRIC8_TEST\"; test \"$PATH\" != /nowhere", env, null).getOutput()).isEqualTo("it's set");
+            assertThat(session.run("echo \"$FABRIC8_TEST\"").getOutput()).isEmpty();
+        }
+    }
+
+    @Test
+    public void testCommandTimeoutClosesSession() throws Exception {
+        PipedOutputStream shellOutput = new PipedOutputStream();
+        ShellSession session = new ShellSession(new ByteArrayOutputStream(), new PipedInputStream(shellOutput), shellOutput::close);
+        session.setCommandTimeout(50);
+        try {
+            session.run("sleep 1000");
+            fail("Should have failed");
+        } catch (FailedBuildException e) {
+            assertThat(e.getMessage()).contains("timed out after 50ms");
+        }
+        assertThat(session.isClosed()).isTrue();
+    }
+
+    @Test
+    public void testFallsBackWhenSessionCannotBeOpened() throws Exception {
+        int[] opened = {0};
+        ShellSessions sessions = new ShellSessions(containerName -> {
+            opened[0]++;
+            throw new IOException("pods/exec is forbidden");
+        });
+        assertThat(sessions.run("maven", "echo hello")).isNull();
+        assertThat(sessions.run("maven", "echo hello")).isNull();
+        assertThat(opened[0]).isEqualTo(1);
+    }
+
+    @Test
+    public void testBrokenSessionFailsRunningCommand() throws Exception {
+        ShellSessions sessions = new ShellSessions(containerName -> ShellSession.local(null));
+        assertThat(sessions.run(null, "echo hello").getOutput()).isEqualTo("hello");
+        try {
+            sessions.run(null, "kill -9 $$");
+            fail("Should have failed");
+        } catch (FailedBuildException e) {
+            assertThat(e.getMessage()).contains("Shell session ended");
+        }
+        assertThat(sessions.run(null, "echo hello")).isNull();
+        sessions.close();
+    }
+
+    @Test
+    public void testClosedSessionsAreNotReopened() throws Exception {
+        ShellSessions sessions = new ShellSessions(containerName -> ShellSession.local(null));
+        assertThat(sessions.run("maven", "echo hello").getOutput()).isEqualTo("hello");
+        sessions.close();
+        assertThat(sessions.run("maven", "echo hello")).isNull();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class WaitStrategyTest {
+
+    @Test
+    public void testFixed() throws Exception {
+        WaitStrategy strategy = WaitStrategy.create(null, 0, 0);
+        assertThat(strategy).isInstanceOf(WaitStrategy.Fixed.class);
+        for (int attempt = 1; attempt < 100; attempt++) {
+            assertThat(strategy.nextDelay(attempt, -1)).isEqualTo(WaitStrategy.DEFAULT_INTERVAL);
+        }
+    }
+
+    @Test
+    public void testExponentialStaysWithinBounds() throws Exception {
+        WaitStrategy strategy = WaitStrategy.create("exponential", 100, 5000);
+        assertThat(strategy.nextDelay(1, -1)).isEqualTo(100);
+        for (int attempt = 2; attempt < 100; attempt++) {
+            long ceiling = Math.min(5000, (long) (100 * Math.pow(2, attempt - 1)));
+            assertThat(strategy.nextDelay(attempt, -1)).isBetween(100L, ceiling);
+        }
+    }
+
+    @Test
+    public void testAdaptiveHonoursDeadline() throws Exception {
+        WaitStrategy strategy = WaitStrategy.create("adaptive", 100, 60000);
+        assertThat(strategy.nextDelay(20, 10000)).isBetween(100L, 5000L);
+        assertThat(strategy.nextDelay(20, 50)).isEqualTo(100);
+        assertThat(strategy.nextDelay(20, -1)).isBetween(100L, 60000L);
+    }
+
+    @Test(expected = FailedBuildException.class)
+    public void testUnknownStrategy() throws Exception {
+        WaitStrategy.create("sometimes", 100, 1000);
+    }
+}
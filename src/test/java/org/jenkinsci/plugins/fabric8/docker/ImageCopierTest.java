@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.docker;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.fabric8.utils.IOHelpers;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ImageCopierTest {
+    private StubRegistry source;
+    private StubRegistry target;
+    private String config;
+    private String layer;
+
+    @Before
+    public void start() throws Exception {
+        source = new StubRegistry();
+        target = new StubRegistry();
+        config = source.putBlob("fabric8/foo", "{\"architecture\":\"amd64\"}".getBytes(StandardCharsets.UTF_8));
+        layer = source.putBlob("fabric8/foo", new byte[10000]);
+        String manifest = "{\"schemaVersion\":2,\"mediaType\":\"" + RegistryClient.MANIFEST_V2 + "\"," +
+                "\"config\":{\"size\":24,\"digest\":\"" + config + "\"},\"layers\":[{\"size\":10000,\"digest\":\"" + layer + "\"}]}";
+        source.manifests.put("fabric8/foo:1.0", manifest.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void stop() {
+        source.server.stop(0);
+        target.server.stop(0);
+    }
+
+    @Test
+    public void testCopyWithinRegistryMountsBlobs() throws Exception {
+        ImageCopier copier = new ImageCopier().insecureRegistry(source.host());
+
+        ImageCopier.Result result = copier.copy(source.host() + "/fabric8/foo:1.0", source.host() + "/myorg/foo:1.0");
+        assertThat(result.getMounted()).isEqualTo(2);
+        assertThat(result.getCopied()).isEqualTo(0);
+        assertThat(source.uploads.get()).isEqualTo(0);
+        assertThat(source.manifests).containsKey("myorg/foo:1.0");
+
+        result = copier.copy(source.host() + "/fabric8/foo:1.0", source.host() + "/myorg/foo:1.0");
+        assertThat(result.isUnchanged()).isTrue();
+        assertThat(result.getMounted()).isEqualTo(0);
+        assertThat(copier.getSkipped()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSkipIfUnchangedComparesDigests() throws Exception {
+        ImageCopier copier = new ImageCopier().insecureRegistry(source.host()).insecureRegistry(target.host());
+        String from = source.host() + "/fabric8/foo:1.0";
+        String to = target.host() + "/fabric8/foo:1.0";
+        assertThat(copier.skipIfUnchanged(from, to)).isFalse();
+
+        target.manifests.put("fabric8/foo:1.0", "{\"schemaVersion\":2}".getBytes(StandardCharsets.UTF_8));
+        assertThat(copier.skipIfUnchanged(from, to)).isFalse();
+
+        target.manifests.put("fabric8/foo:1.0", source.manifests.get("fabric8/foo:1.0"));
+        assertThat(copier.skipIfUnchanged(from, to)).isTrue();
+        assertThat(copier.getSkipped()).isEqualTo(1);
+        assertThat(copier.getBytesSaved()).isEqualTo(10024);
+        assertThat(target.uploads.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testCopyBetweenRegistriesOnlyTransfersMissingBlobs() throws Exception {
+        ImageCopier copier = new ImageCopier().insecureRegistry(source.host()).insecureRegistry(target.host());
+        target.putBlob("fabric8/foo", "{\"architecture\":\"amd64\"}".getBytes(StandardCharsets.UTF_8));
+
+        ImageCopier.Result result = copier.copy(source.host() + "/fabric8/foo:1.0", target.host() + "/fabric8/foo:1.0");
+        assertThat(result.getExisting()).isEqualTo(1);
+        assertThat(result.getCopied()).isEqualTo(1);
+        assertThat(result.getBytesCopied()).isEqualTo(10000);
+        assertThat(target.uploads.get()).isEqualTo(1);
+        assertThat(target.blobs).containsKey("fabric8/foo@" + layer);
+        assertThat(target.manifests.get("fabric8/foo:1.0")).isEqualTo(source.manifests.get("fabric8/foo:1.0"));
+    }
+
+    @Test
+    public void testParseImageReference() throws Exception {
+        assertThat(ImageReference.parse("fabric8/jenkins").toString()).isEqualTo("docker.io/fabric8/jenkins:latest");
+        assertThat(ImageReference.parse("nginx:1.13").getRepository()).isEqualTo("library/nginx");
+        ImageReference reference = ImageReference.parse("fabric8-docker-registry:80/fabric8/jenkins:1.0.1");
+        assertThat(reference.getRegistry()).isEqualTo("fabric8-docker-registry:80");
+        assertThat(reference.getRepository()).isEqualTo("fabric8/jenkins");
+        assertThat(reference.getTag()).isEqualTo("1.0.1");
+        assertThat(ImageReference.parse("docker.io/fabric8/jenkins").getApiHost()).isEqualTo(ImageReference.DOCKER_HUB_API);
+    }
+
+    /**
+     * Enough of the docker registry V2 API to push and pull images
+     */
+    static class StubRegistry {
+        private static final Pattern UPLOADS = Pattern.compile("/v2/(.+)/blobs/uploads/(.*)");
+        private static final Pattern RESOURCE = Pattern.compile("/v2/(.+)/(blobs|manifests)/(.+)");
+
+        final HttpServer server;
+        final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+        final Map<String, byte[]> manifests = new ConcurrentHashMap<>();
+        final AtomicInteger uploads = new AtomicInteger();
+
+        StubRegistry() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/v2/", exchange -> {
+                try {
+                    handle(exchange);
+                } finally {
+                    exchange.close();
+                }
+            });
+            server.start();
+        }
+
+        String host() {
+            return "localhost:" + server.getAddress().getPort();
+        }
+
+        String putBlob(String repository, byte[] data) {
+            String digest = "sha256:" + DigestUtils.sha256Hex(data);
+            blobs.put(repository + "@" + digest, data);
+            return digest;
+        }
+
+        void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = readBody(exchange);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            Matcher uploadMatcher = UPLOADS.matcher(path);
+            if (uploadMatcher.matches()) {
+                String repository = uploadMatcher.group(1);
+                if ("POST".equals(method)) {
+                    String mount = query.get("mount");
+                    byte[] data = mount != null ? blobs.get(query.get("from") + "@" + mount) : null;
+                    if (data != null) {
+                        blobs.put(repository + "@" + mount, data);
+                        exchange.sendResponseHeaders(201, -1);
+                    } else {
+                        exchange.getResponseHeaders().add("Location", "/v2/" + repository + "/blobs/uploads/" + UUID.randomUUID() + "?_state=abc");
+                        exchange.sendResponseHeaders(202, -1);
+                    }
+                } else if ("PUT".equals(method)) {
+                    byte[] data = body;
+                    String digest = query.get("digest");
+                    if (!digest.equals("sha256:" + DigestUtils.sha256Hex(data))) {
+                        exchange.sendResponseHeaders(400, -1);
+                        return;
+                    }
+                    uploads.incrementAndGet();
+                    blobs.put(repository + "@" + digest, data);
+                    exchange.sendResponseHeaders(201, -1);
+                } else {
+                    exchange.sendResponseHeaders(405, -1);
+                }
+                return;
+            }
+            Matcher matcher = RESOURCE.matcher(path);
+            if (!matcher.matches()) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            String repository = matcher.group(1);
+            String reference = matcher.group(3);
+            boolean isBlob = matcher.group(2).equals("blobs");
+            Map<String, byte[]> store = isBlob ? blobs : manifests;
+            String key = isBlob ? repository + "@" + reference : repository + ":" + reference;
+            if ("PUT".equals(method)) {
+                byte[] data = body;
+                store.put(key, data);
+                store.put(repository + ":sha256:" + DigestUtils.sha256Hex(data), data);
+                exchange.sendResponseHeaders(201, -1);
+                return;
+            }
+            byte[] data = store.get(key);
+            if (data == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().add("Docker-Content-Digest", "sha256:" + DigestUtils.sha256Hex(data));
+            if (!isBlob) {
+                exchange.getResponseHeaders().add("Content-Type", RegistryClient.MANIFEST_V2);
+            }
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, data.length);
+                exchange.getResponseBody().write(data);
+            }
+        }
+
+        static Map<String, String> parseQuery(String query) throws IOException {
+            Map<String, String> answer = new ConcurrentHashMap<>();
+            if (query != null) {
+                for (String pair : query.split("&")) {
+                    int idx = pair.indexOf('=');
+                    if (idx > 0) {
+                        answer.put(pair.substring(0, idx), URLDecoder.decode(pair.substring(idx + 1), "UTF-8"));
+                    }
+                }
+            }
+            return answer;
+        }
+
+        static byte[] readBody(HttpExchange exchange) throws IOException {
+            try (InputStream in = exchange.getRequestBody()) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                IOHelpers.copy(in, buffer);
+                return buffer.toByteArray();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.github;
+
+import com.sun.net.httpserver.HttpServer;
+import io.fabric8.utils.IOHelpers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class CachingConnectorTest {
+    private static final String BODY = "{\"number\":1,\"merged\":false}";
+    private static final String ETAG = "\"abc123\"";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private final AtomicInteger notModified = new AtomicInteger();
+    private URL url;
+
+    @Before
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.getResponseHeaders().add("X-RateLimit-Remaining", "" + (4000 - notModified.incrementAndGet()));
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            } else {
+                byte[] data = BODY.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("X-RateLimit-Remaining", "4000");
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, data.length);
+                exchange.getResponseBody().write(data);
+            }
+            exchange.close();
+        });
+        server.start();
+        url = new URL("http://localhost:" + server.getAddress().getPort() + "/repos/foo/bar/pulls/1");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testNotModifiedServedFromDisk() throws Exception {
+        GitHubResponseCache cache = new GitHubResponseCache(folder.getRoot());
+        CachingConnector connector = new CachingConnector(HttpConnector.DEFAULT, cache);
+
+        assertThat(get(connector)).isEqualTo(BODY);
+        assertThat(cache.getStores()).isEqualTo(1);
+        assertThat(notModified.get()).isEqualTo(0);
+
+        // a new cache on the same directory, as after a restart, should still revalidate
+        CachingConnector restarted = new CachingConnector(HttpConnector.DEFAULT, new GitHubResponseCache(folder.getRoot()));
+        HttpURLConnection connection = restarted.connect(url);
+        assertThat(connection.getResponseCode()).isEqualTo(HttpURLConnection.HTTP_OK);
+        assertThat(connection.getContentType()).isEqualTo("application/json");
+        assertThat(connection.getHeaderField("X-RateLimit-Remaining")).isEqualTo("3999");
+        try (InputStream in = connection.getInputStream()) {
+            assertThat(IOHelpers.readFully(in)).isEqualTo(BODY);
+        }
+        assertThat(notModified.get()).isEqualTo(1);
+        assertThat(((CachingHttpURLConnection) connection).isFromCache()).isTrue();
+    }
+
+    @Test
+    public void testCredentialsAreCachedSeparately() throws Exception {
+        GitHubResponseCache cache = new GitHubResponseCache(folder.getRoot());
+        CachingConnector connector = new CachingConnector(HttpConnector.DEFAULT, cache);
+
+        assertThat(get(connector)).isEqualTo(BODY);
+        HttpURLConnection connection = connector.connect(url);
+        connection.setRequestProperty("Authorization", "token secret");
+        assertThat(connection.getResponseCode()).isEqualTo(HttpURLConnection.HTTP_OK);
+        assertThat(((CachingHttpURLConnection) connection).isFromCache()).isFalse();
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        GitHubResponseCache cache = new GitHubResponseCache(folder.getRoot());
+        byte[] body = new byte[1000];
+        cache.setMaxSize(2500);
+        for (int i = 0; i < 5; i++) {
+            cache.put("key" + i, new GitHubResponseCache.Entry(ETAG, new java.util.HashMap<>(), body));
+        }
+        assertThat(cache.getSize()).isLessThanOrEqualTo(2500);
+        assertThat(cache.getEvictions()).isEqualTo(3);
+        assertThat(cache.get("key4")).isNotNull();
+    }
+
+    protected String get(CachingConnector connector) throws Exception {
+        HttpURLConnection connection = connector.connect(url);
+        assertThat(connection.getResponseCode()).isEqualTo(HttpURLConnection.HTTP_OK);
+        try (InputStream in = connection.getInputStream()) {
+            return IOHelpers.readFully(in);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.github;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.binary.Hex;
+import org.jenkinsci.plugins.fabric8.CommandSupport;
+import org.jenkinsci.plugins.fabric8.Fabric8Commands;
+import org.jenkinsci.plugins.fabric8.WaitStrategy;
+import org.jenkinsci.plugins.fabric8.steps.WaitUntilPullRequestMerged;
+import org.junit.After;
+import org.junit.Test;
+import org.kohsuke.github.GHPullRequest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class GitHubWebhookActionTest {
+    private String secret = "s3cr3t";
+    private boolean allowUnsigned;
+
+    private final GitHubWebhookAction action = new GitHubWebhookAction() {
+        @Override
+        protected String getSecret() {
+            return secret;
+        }
+
+        @Override
+        protected boolean isAllowUnsigned() {
+            return allowUnsigned;
+        }
+    };
+
+    @After
+    public void clear() {
+        PullRequestEvents.getInstance().clear();
+    }
+
+    @Test
+    public void testPullRequestEventWakesListeners() throws Exception {
+        PullRequestEvents events = PullRequestEvents.getInstance();
+        AtomicInteger notified = new AtomicInteger();
+        events.subscribe("fabric8io/fabric8", 12, notified::incrementAndGet);
+
+        assertThat(events.isReceivingEvents("fabric8io/fabric8")).isFalse();
+        assertThat(post("pull_request", pullRequestPayload("open", false))).isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(events.isReceivingEvents("Fabric8io/Fabric8")).isTrue();
+        assertThat(events.getState("fabric8io/fabric8", 12).isMerged()).isFalse();
+        assertThat(notified.get()).isEqualTo(1);
+
+        assertThat(post("status", "{\"sha\":\"abc\",\"state\":\"success\",\"repository\":{\"full_name\":\"fabric8io/fabric8\"}}"))
+                .isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(notified.get()).isEqualTo(2);
+
+        assertThat(post("pull_request", pullRequestPayload("closed", true))).isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(events.getState("fabric8io/fabric8", 12).isMerged()).isTrue();
+        assertThat(notified.get()).isEqualTo(3);
+
+        assertThat(post("issues", "{}")).isEqualTo(HttpServletResponse.SC_ACCEPTED);
+        assertThat(post(null, "{}")).isEqualTo(HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Test
+    public void testSignatureIsRequiredWhenSecretIsConfigured() throws Exception {
+        secret = "s3cr3t";
+        byte[] body = pullRequestPayload("open", false).getBytes(StandardCharsets.UTF_8);
+
+        assertThat(action.handle("pull_request", null, "application/json", body)).isEqualTo(HttpServletResponse.SC_FORBIDDEN);
+        assertThat(action.handle("pull_request", "sha1=0000", "application/json", body)).isEqualTo(HttpServletResponse.SC_FORBIDDEN);
+
+        assertThat(action.handle("pull_request", sign(body), "application/json", body)).isEqualTo(HttpServletResponse.SC_OK);
+    }
+
+    @Test
+    public void testUnsignedEventsRequireOptInAndDoNotSlowPolling() throws Exception {
+        PullRequestEvents events = PullRequestEvents.getInstance();
+        AtomicInteger notified = new AtomicInteger();
+        events.subscribe("fabric8io/fabric8", 12, notified::incrementAndGet);
+        secret = null;
+        byte[] body = pullRequestPayload("closed", true).getBytes(StandardCharsets.UTF_8);
+
+        assertThat(action.handle("pull_request", null, "application/json", body)).isEqualTo(HttpServletResponse.SC_FORBIDDEN);
+        assertThat(notified.get()).isEqualTo(0);
+
+        allowUnsigned = true;
+        assertThat(action.handle("pull_request", null, "application/json", body)).isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(notified.get()).isEqualTo(1);
+        assertThat(events.isReceivingEvents("fabric8io/fabric8")).isFalse();
+    }
+
+    @Test
+    public void testPayloadSizeIsLimited() throws Exception {
+        byte[] body = new byte[100];
+        assertThat(GitHubWebhookAction.readPayload(new ByteArrayInputStream(body), 100)).hasSize(100);
+        assertThat(GitHubWebhookAction.readPayload(new ByteArrayInputStream(body), 99)).isNull();
+    }
+
+    @Test
+    public void testWaitIsWokenByWebhook() throws Exception {
+        post("ping", "{}");
+        post("pull_request", pullRequestPayload("open", false));
+        // events received in the same millisecond as the condition is created count as new
+        Thread.sleep(5);
+
+        Fabric8Commands step = new Fabric8Commands();
+        WaitUntilPullRequestMerged.PullRequestEventCondition condition =
+                new WaitUntilPullRequestMerged.PullRequestEventCondition("fabric8io/fabric8", 12, TimeUnit.MINUTES.toMillis(5));
+        assertThat(condition.check(step)).isFalse();
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            executor.schedule(() -> post("pull_request", pullRequestPayload("closed", true)), 200, TimeUnit.MILLISECONDS);
+            long start = System.currentTimeMillis();
+            assertThat(step.waitUntil(WaitStrategy.fixed(TimeUnit.MINUTES.toMillis(1)), TimeUnit.SECONDS.toMillis(30), condition)).isTrue();
+            assertThat(System.currentTimeMillis() - start).isLessThan(TimeUnit.SECONDS.toMillis(10));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMergedEventIsCheckedWithGitHub() throws Exception {
+        post("pull_request", pullRequestPayload("open", false));
+        Thread.sleep(5);
+        AtomicInteger fetches = new AtomicInteger();
+        WaitUntilPullRequestMerged.PullRequestMergedCondition condition =
+                new WaitUntilPullRequestMerged.PullRequestMergedCondition("fabric8io/fabric8", 12, false, TimeUnit.MINUTES.toMillis(5)) {
+                    @Override
+                    protected GHPullRequest fetchPullRequest(CommandSupport step) {
+                        fetches.incrementAndGet();
+                        return null;
+                    }
+                };
+        Fabric8Commands step = new Fabric8Commands();
+        assertThat(condition.check(step)).isFalse();
+        assertThat(fetches.get()).isEqualTo(1);
+
+        // an unverified merged event must not complete the wait and must only trigger a single request
+        Thread.sleep(5);
+        post("pull_request", pullRequestPayload("closed", true));
+        assertThat(condition.check(step)).isFalse();
+        assertThat(condition.check(step)).isFalse();
+        assertThat(fetches.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testConditionKeepsTheStateOfThePullRequest() throws Exception {
+        GHPullRequest conflicting = pullRequest("open", false, "failure", "fix-versions");
+        GHPullRequest merged = pullRequest("closed", true, "clean", "fix-versions");
+        AtomicReference<GHPullRequest> current = new AtomicReference<>(conflicting);
+        WaitUntilPullRequestMerged.PullRequestMergedCondition condition =
+                new WaitUntilPullRequestMerged.PullRequestMergedCondition("fabric8io/fabric8", 12, true) {
+                    @Override
+                    protected GHPullRequest fetchPullRequest(CommandSupport step) {
+                        return current.get();
+                    }
+                };
+        Fabric8Commands step = new Fabric8Commands();
+        assertThat(condition.check(step)).isTrue();
+        assertThat(condition.isConflict()).isTrue();
+        assertThat(condition.isMerged()).isFalse();
+        assertThat(condition.getHeadRef()).isEqualTo("fix-versions");
+
+        current.set(merged);
+        assertThat(condition.check(step)).isTrue();
+        assertThat(condition.isMerged()).isTrue();
+        assertThat(condition.isClosed()).isTrue();
+        assertThat(condition.isConflict()).isFalse();
+    }
+
+    @Test
+    public void testReceivingEventsExpires() throws Exception {
+        PullRequestEvents events = PullRequestEvents.getInstance();
+        post("pull_request", pullRequestPayload("open", false));
+        assertThat(events.isReceivingEvents("fabric8io/fabric8")).isTrue();
+        events.setReceivingEventsTimeout(1);
+        try {
+            Thread.sleep(5);
+            assertThat(events.isReceivingEvents("fabric8io/fabric8")).isFalse();
+        } finally {
+            events.setReceivingEventsTimeout(PullRequestEvents.DEFAULT_RECEIVING_EVENTS_TIMEOUT);
+        }
+    }
+
+    protected int post(String eventType, String payload) {
+        byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+        return action.handle(eventType, sign(body), "application/json", body);
+    }
+
+    protected String sign(byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+            return "sha1=" + Hex.encodeHexString(mac.doFinal(body));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    protected static GHPullRequest pullRequest(String state, boolean merged, String mergeableState, String branch) throws IOException {
+        String json = "{\"number\":12,\"state\":\"" + state + "\",\"merged\":" + merged +
+                ",\"mergeable_state\":\"" + mergeableState + "\",\"merged_by\":{\"login\":\"octocat\"}," +
+                "\"html_url\":\"https://github.com/fabric8io/fabric8/pull/12\",\"head\":{\"ref\":\"" + branch + "\"}}";
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+        mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper.readValue(json, GHPullRequest.class);
+    }
+
+    protected static String pullRequestPayload(String state, boolean merged) {
+        return "{\"action\":\"" + (merged ? "closed" : "opened") + "\",\"number\":12," +
+                "\"pull_request\":{\"state\":\"" + state + "\",\"merged\":" + merged + ",\"head\":{\"sha\":\"abc\",\"ref\":\"versionUpdate\"}}," +
+                "\"repository\":{\"full_name\":\"fabric8io/fabric8\"}}";
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.github;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.HttpConnector;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class RateLimitingConnectorTest {
+    private HttpServer server;
+    private volatile int remaining = 4000;
+    private long reset;
+
+    @Before
+    public void startServer() throws Exception {
+        reset = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 600;
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("X-RateLimit-Limit", "5000");
+            exchange.getResponseHeaders().add("X-RateLimit-Remaining", "" + remaining);
+            exchange.getResponseHeaders().add("X-RateLimit-Reset", "" + reset);
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testTracksRateLimitHeaders() throws Exception {
+        RateLimitingConnector connector = new RateLimitingConnector(HttpConnector.DEFAULT);
+        URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/user");
+
+        HttpURLConnection connection = connector.connect(url);
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        assertThat(connector.getRemaining()).isEqualTo(4000);
+        assertThat(connector.getLimit()).isEqualTo(5000);
+        assertThat(connector.nextDelay(System.currentTimeMillis())).isEqualTo(0);
+
+        remaining = 99;
+        connector.connect(url).getResponseCode();
+        assertThat(connector.getRemaining()).isEqualTo(99);
+        long delay = connector.nextDelay(System.currentTimeMillis());
+        assertThat(delay).isBetween(1000L, connector.getMaxDelay());
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.helpers;
+
+import io.fabric8.utils.XmlUtils;
+import org.jenkinsci.plugins.fabric8.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing the whole of a large maven-metadata.xml into a DOM against streaming to the first element.
+ * <p>
+ * Run from the IDE or with <code>mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.jenkinsci.plugins.fabric8.helpers.DomUtilsBenchmark</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DomUtilsBenchmark {
+    private final Logger logger = new Logger(new PrintStream(new ByteArrayOutputStream()));
+
+    @Param({"100", "5000"})
+    private int versions;
+
+    private byte[] metadata;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(DomUtilsBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void createMetadata() throws Exception {
+        StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata>\n" +
+                "  <groupId>io.fabric8</groupId>\n  <artifactId>fabric8-maven-plugin</artifactId>\n  <versioning>\n" +
+                "    <latest>3.5." + versions + "</latest>\n    <release>3.5." + versions + "</release>\n    <versions>\n");
+        for (int i = 0; i < versions; i++) {
+            builder.append("      <version>3.5.").append(i).append("</version>\n");
+        }
+        builder.append("    </versions>\n  </versioning>\n</metadata>\n");
+        metadata = builder.toString().getBytes("UTF-8");
+    }
+
+    @Benchmark
+    public String dom() throws Exception {
+        Document doc = XmlUtils.parseDoc(new ByteArrayInputStream(metadata));
+        return DomUtils.firstElementText(logger, doc, "latest", "maven-metadata.xml");
+    }
+
+    @Benchmark
+    public String stax() throws Exception {
+        return DomUtils.firstElementText(logger, new ByteArrayInputStream(metadata), "latest", "maven-metadata.xml");
+    }
+}
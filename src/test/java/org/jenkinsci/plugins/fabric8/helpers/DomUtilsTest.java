@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.helpers;
+
+import org.jenkinsci.plugins.fabric8.Logger;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class DomUtilsTest {
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final Logger logger = new Logger(new PrintStream(output));
+
+    public String firstElementText(String xml, String elementName) throws Exception {
+        return DomUtils.firstElementText(logger, new ByteArrayInputStream(xml.getBytes("UTF-8")), elementName, "test.xml");
+    }
+
+    @Test
+    public void testFirstElementText() throws Exception {
+        String xml = "<metadata><groupId>io.fabric8</groupId><versioning><latest>1.2.3</latest>" +
+                "<versions><version>1.0.0</version><version>1.2.3</version></versions></versioning></metadata>";
+        assertThat(firstElementText(xml, "latest")).isEqualTo("1.2.3");
+        assertThat(firstElementText(xml, "version")).isEqualTo("1.0.0");
+        assertThat(firstElementText(xml, "versioning")).isEqualTo("1.2.31.0.01.2.3");
+    }
+
+    @Test
+    public void testMissingElement() throws Exception {
+        assertThat(firstElementText("<project><artifactId>foo</artifactId></project>", "version")).isNull();
+        assertThat(output.toString()).contains("test.xml does not contain a <version> element!");
+    }
+
+    @Test
+    public void testInvalidXml() throws Exception {
+        assertThat(firstElementText("<project><version>", "latest")).isNull();
+        assertThat(output.toString()).contains("Failed to parse test.xml");
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.helpers;
+
+import io.fabric8.utils.IOHelpers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class VersionRewriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPackageJsonVersions() throws Exception {
+        Map<String, String> versions = new LinkedHashMap<>();
+        versions.put("fabric8-console", "2.4.1");
+        versions.put("fabric8-ui", "1.0.2");
+        File changed = write("a/package.json", "{\r\n  \"dependencies\": {\r\n    \"fabric8-console\": \"2.3.12-development\",\r\n" +
+                "    \"fabric8-ui\" : \"1.0.1\", \"fabric8-uix\": \"1.0.1\",\r\n    \"other\": \"2.3.12\"\r\n  }\r\n}\r\n");
+        File unchanged = write("b/package.json", "{\n  \"fabric8-ui\": \"1.0.2\"\n}");
+        long modified = unchanged.lastModified();
+
+        assertThat(VersionRewriter.packageJson(versions).rewriteAll(Arrays.asList(changed, unchanged), 2)).containsExactly(changed);
+        assertThat(IOHelpers.readFully(changed)).isEqualTo("{\r\n  \"dependencies\": {\r\n    \"fabric8-console\": \"2.4.1\",\r\n" +
+                "    \"fabric8-ui\" : \"1.0.2\", \"fabric8-uix\": \"1.0.1\",\r\n    \"other\": \"2.3.12\"\r\n  }\r\n}\r\n");
+        assertThat(unchanged.lastModified()).isEqualTo(modified);
+        assertThat(folder.getRoot().toPath().resolve("b").toFile().list()).containsOnly("package.json");
+    }
+
+    @Test
+    public void testDockerfileEnvVars() throws Exception {
+        Map<String, String> versions = new LinkedHashMap<>();
+        versions.put("FABRIC8_VERSION", "2.4.1");
+        versions.put("JENKINS_VERSION", "2.60");
+        File dockerfile = write("Dockerfile", "FROM centos\nENV FABRIC8_VERSION 2.3.12\nENV FABRIC8_VERSION_SUFFIX abc\n  ENV JENKINS_VERSION=2.46\nRUN echo $FABRIC8_VERSION\n");
+
+        assertThat(VersionRewriter.dockerfileEnv(versions).rewrite(dockerfile)).isTrue();
+        assertThat(IOHelpers.readFully(dockerfile)).isEqualTo("FROM centos\nENV FABRIC8_VERSION 2.4.1\nENV FABRIC8_VERSION_SUFFIX abc\n  ENV JENKINS_VERSION=2.60\nRUN echo $FABRIC8_VERSION\n");
+        assertThat(VersionRewriter.dockerfileEnv(versions).rewrite(dockerfile)).isFalse();
+    }
+
+    @Test
+    public void testRewriteEachKeepsIndexes() throws Exception {
+        File changed = write("a/package.json", "{\n  \"fabric8-ui\": \"1.0.1\"\n}");
+        File unchanged = write("b/package.json", "{\n  \"fabric8-ui\": \"1.0.2\"\n}");
+
+        assertThat(VersionRewriter.packageJson(Collections.singletonMap("fabric8-ui", "1.0.2")).rewriteEach(Arrays.asList(unchanged, changed, changed), 2))
+                .containsExactly(false, true, true);
+        assertThat(IOHelpers.readFully(changed)).isEqualTo("{\n  \"fabric8-ui\": \"1.0.2\"\n}");
+    }
+
+    protected File write(String path, String text) throws Exception {
+        File file = new File(folder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        IOHelpers.writeFully(file, text);
+        return file;
+    }
+}
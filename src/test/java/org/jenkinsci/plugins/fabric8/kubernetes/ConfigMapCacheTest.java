@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.kubernetes;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.pipelines.PipelineConfiguration;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ConfigMapCacheTest {
+    private final Map<String, ConfigMap> resources = new ConcurrentHashMap<>();
+    private final Map<String, Watcher<ConfigMap>> watchers = new ConcurrentHashMap<>();
+    private final List<String> closed = new CopyOnWriteArrayList<>();
+    private final AtomicInteger gets = new AtomicInteger();
+
+    protected ConfigMapCache createCache() {
+        return new ConfigMapCache() {
+            @Override
+            protected ConfigMap getResource(KubernetesClient client, String namespace, String name) {
+                gets.incrementAndGet();
+                return resources.get(namespace + "/" + name);
+            }
+
+            @Override
+            protected Watch watchResource(KubernetesClient client, String namespace, String name, String resourceVersion, Watcher<ConfigMap> watcher) {
+                String key = namespace + "/" + name;
+                watchers.put(key, watcher);
+                return () -> {
+                    watchers.remove(key, watcher);
+                    closed.add(key);
+                };
+            }
+        };
+    }
+
+    protected static ConfigMap configMap(String name, String resourceVersion, String key, String value) {
+        return new ConfigMapBuilder().withNewMetadata().withName(name).withResourceVersion(resourceVersion).endMetadata().
+                addToData(key, value).build();
+    }
+
+    @Test
+    public void testLookupsAreServedFromTheWatch() throws Exception {
+        ConfigMapCache cache = createCache();
+        resources.put("ns/foo", configMap("foo", "1", "a", "1"));
+
+        assertThat(cache.getConfigMap(null, "ns", "foo").getData()).containsEntry("a", "1");
+        assertThat(cache.getConfigMap(null, "ns", "foo").getData()).containsEntry("a", "1");
+        assertThat(gets.get()).isEqualTo(1);
+
+        watchers.get("ns/foo").eventReceived(Watcher.Action.MODIFIED, configMap("foo", "2", "a", "2"));
+        assertThat(cache.getConfigMap(null, "ns", "foo").getData()).containsEntry("a", "2");
+        assertThat(gets.get()).isEqualTo(1);
+
+        watchers.get("ns/foo").onClose(null);
+        cache.getConfigMap(null, "ns", "foo");
+        assertThat(gets.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testIdleWatchesAreClosed() throws Exception {
+        ConfigMapCache cache = createCache();
+        cache.setIdleTimeout(20);
+        cache.getConfigMap(null, "ns", "foo");
+        assertThat(watchers).containsKey("ns/foo");
+
+        Thread.sleep(50);
+        cache.getConfigMap(null, "ns", "bar");
+        assertThat(closed).containsExactly("ns/foo");
+        assertThat(watchers.keySet()).containsExactly("ns/bar");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testNumberOfWatchesIsLimited() throws Exception {
+        ConfigMapCache cache = createCache();
+        cache.setMaxSize(2);
+        for (String name : Arrays.asList("a", "b", "c", "d")) {
+            cache.getConfigMap(null, "ns", name);
+            Thread.sleep(5);
+        }
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(closed).containsExactly("ns/a", "ns/b");
+        assertThat(watchers.keySet()).containsOnly("ns/c", "ns/d");
+
+        cache.clear();
+        assertThat(watchers).isEmpty();
+    }
+
+    @Test
+    public void testCallersGetCopies() throws Exception {
+        ConfigMapCache cache = createCache();
+        resources.put("ns/foo", configMap("foo", "1", "a", "1"));
+        cache.getConfigMap(null, "ns", "foo").getData().put("a", "changed");
+        assertThat(cache.getConfigMap(null, "ns", "foo").getData()).containsEntry("a", "1");
+
+        resources.put("ns/" + PipelineConfiguration.FABRIC8_PIPELINES, configMap(PipelineConfiguration.FABRIC8_PIPELINES, "1", "x", "y"));
+        PipelineConfiguration configuration = cache.getPipelineConfiguration(null, "ns");
+        assertThat(configuration.getSpaceNamespace()).isEqualTo("ns");
+        List<String> patterns = new ArrayList<>(configuration.getCiBranchPatterns());
+        configuration.getCiBranchPatterns().add("changed");
+        configuration.setSpaceNamespace("other");
+
+        PipelineConfiguration another = cache.getPipelineConfiguration(null, "ns");
+        assertThat(another).isNotSameAs(configuration);
+        assertThat(another.getCiBranchPatterns()).isEqualTo(patterns);
+        assertThat(another.getSpaceNamespace()).isEqualTo("ns");
+        assertThat(gets.get()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.kubernetes;
+
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.openshift.api.model.ImageStream;
+import io.fabric8.openshift.api.model.ImageStreamStatus;
+import io.fabric8.openshift.api.model.NamedTagEventList;
+import io.fabric8.openshift.api.model.TagEvent;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ImageStreamTagResolverTest {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger gets = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicReference<Watcher<ImageStream>> watcher = new AtomicReference<>();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    protected static ImageStream imageStream(String image) {
+        ImageStream answer = new ImageStream();
+        if (image != null) {
+            TagEvent event = new TagEvent();
+            event.setImage(image);
+            NamedTagEventList tag = new NamedTagEventList();
+            tag.setTag("latest");
+            tag.setItems(Collections.singletonList(event));
+            ImageStreamStatus status = new ImageStreamStatus();
+            status.setTags(Collections.singletonList(tag));
+            answer.setStatus(status);
+        }
+        return answer;
+    }
+
+    protected Watch watch(Watcher<ImageStream> w) {
+        watcher.set(w);
+        return () -> closed.set(true);
+    }
+
+    @Test
+    public void testImageFromGetDoesNotWait() throws Exception {
+        long start = System.currentTimeMillis();
+        ImageStreamTagResolver.Resolution resolution = ImageStreamTagResolver.resolve("foo", () -> {
+            gets.incrementAndGet();
+            return imageStream("sha256:1");
+        }, this::watch, TimeUnit.SECONDS.toMillis(10));
+
+        assertThat(resolution.getImage()).isEqualTo("sha256:1");
+        assertThat(System.currentTimeMillis() - start).isLessThan(TimeUnit.SECONDS.toMillis(5));
+        assertThat(gets.get()).isEqualTo(1);
+        assertThat(closed.get()).isTrue();
+    }
+
+    @Test
+    public void testImageFromWatchBeforeDeadline() throws Exception {
+        long start = System.currentTimeMillis();
+        ImageStreamTagResolver.Resolution resolution = ImageStreamTagResolver.resolve("foo", () -> {
+            gets.incrementAndGet();
+            // the image is pushed just after the GET
+            executor.execute(() -> watcher.get().eventReceived(Watcher.Action.MODIFIED, imageStream("sha256:2")));
+            return imageStream(null);
+        }, this::watch, TimeUnit.SECONDS.toMillis(10));
+
+        assertThat(resolution.getImage()).isEqualTo("sha256:2");
+        assertThat(System.currentTimeMillis() - start).isLessThan(TimeUnit.SECONDS.toMillis(5));
+        assertThat(gets.get()).isEqualTo(1);
+        assertThat(closed.get()).isTrue();
+    }
+
+    @Test
+    public void testGetsAgainAtTheDeadline() throws Exception {
+        long start = System.currentTimeMillis();
+        ImageStreamTagResolver.Resolution resolution = ImageStreamTagResolver.resolve("foo", () -> {
+            // the watch misses the update so only the final GET sees the image
+            return imageStream(gets.incrementAndGet() > 1 ? "sha256:3" : null);
+        }, this::watch, 100);
+
+        assertThat(resolution.getImage()).isEqualTo("sha256:3");
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(100);
+        assertThat(gets.get()).isEqualTo(2);
+        assertThat(closed.get()).isTrue();
+    }
+
+    @Test
+    public void testNoImageBeforeDeadline() throws Exception {
+        ImageStreamTagResolver.Resolution resolution = ImageStreamTagResolver.resolve("foo", () -> {
+            gets.incrementAndGet();
+            return imageStream(null);
+        }, this::watch, 50);
+
+        assertThat(resolution.getImage()).isNull();
+        assertThat(resolution.getImageStream()).isNotNull();
+        assertThat(gets.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedWatchOnlyUsesGet() throws Exception {
+        ImageStreamTagResolver.Resolution resolution = ImageStreamTagResolver.resolve("foo", () -> {
+            gets.incrementAndGet();
+            return imageStream(null);
+        }, w -> {
+            throw new IllegalStateException("watch not supported");
+        }, TimeUnit.SECONDS.toMillis(10));
+
+        assertThat(resolution.getImage()).isNull();
+        assertThat(gets.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.kubernetes;
+
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.HttpClientAware;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class KubernetesClientPoolTest {
+
+    protected static Config config(String masterUrl, String token) {
+        return new ConfigBuilder().withMasterUrl(masterUrl).withOauthToken(token).build();
+    }
+
+    @Test
+    public void testClientsAreReusedPerMasterAndCredentials() throws Exception {
+        KubernetesClientPool pool = new KubernetesClientPool();
+        KubernetesClient client = pool.getKubernetesClient(config("https://cluster-a:8443", "token1"));
+
+        assertThat(pool.getKubernetesClient(config("https://cluster-a:8443", "token1"))).isSameAs(client);
+        assertThat(pool.size()).isEqualTo(1);
+
+        KubernetesClient otherToken = pool.getKubernetesClient(config("https://cluster-a:8443", "token2"));
+        KubernetesClient otherMaster = pool.getKubernetesClient(config("https://cluster-b:8443", "token1"));
+        assertThat(otherToken).isNotSameAs(client);
+        assertThat(otherMaster).isNotSameAs(client).isNotSameAs(otherToken);
+        assertThat(pool.size()).isEqualTo(3);
+
+        // all the clients share the same dispatcher and connections
+        assertThat(((HttpClientAware) otherToken).getHttpClient().dispatcher()).isSameAs(((HttpClientAware) client).getHttpClient().dispatcher());
+        assertThat(((HttpClientAware) otherMaster).getHttpClient().connectionPool()).isSameAs(((HttpClientAware) client).getHttpClient().connectionPool());
+    }
+
+    @Test
+    public void testIdleClientsAreEvicted() throws Exception {
+        KubernetesClientPool pool = new KubernetesClientPool();
+        pool.setIdleTimeoutMillis(20);
+        KubernetesClient client = pool.getKubernetesClient(config("https://cluster-a:8443", "token1"));
+        pool.getKubernetesClient(config("https://cluster-b:8443", "token1"));
+        assertThat(pool.size()).isEqualTo(2);
+
+        Thread.sleep(50);
+        KubernetesClient recreated = pool.getKubernetesClient(config("https://cluster-a:8443", "token1"));
+        assertThat(recreated).isNotSameAs(client);
+        assertThat(pool.size()).isEqualTo(1);
+
+        pool.clear();
+        assertThat(pool.size()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ArtifactProbeTest {
+    private HttpServer server;
+    private String baseUrl;
+
+    @Before
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/released.jar", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/broken.jar", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.createContext("/nohead.jar", exchange -> {
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+            } else {
+                byte[] body = "x".getBytes("UTF-8");
+                exchange.sendResponseHeaders(206, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testClassifiesResponses() throws Exception {
+        ArtifactProbe probe = new ArtifactProbe();
+
+        ArtifactProbe.Result result = probe.probe(baseUrl + "/released.jar");
+        assertThat(result.getStatus()).isEqualTo(ArtifactProbe.Status.AVAILABLE);
+        assertThat(result.getMethod()).isEqualTo("HEAD");
+
+        assertThat(probe.probe(baseUrl + "/missing.jar").getStatus()).isEqualTo(ArtifactProbe.Status.NOT_FOUND);
+        assertThat(probe.probe(baseUrl + "/broken.jar").getStatus()).isEqualTo(ArtifactProbe.Status.SERVER_ERROR);
+
+        result = probe.probe(baseUrl + "/nohead.jar");
+        assertThat(result.getStatus()).isEqualTo(ArtifactProbe.Status.AVAILABLE);
+        assertThat(result.getMethod()).isEqualTo("GET");
+    }
+}
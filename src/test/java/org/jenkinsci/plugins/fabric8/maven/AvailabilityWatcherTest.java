@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class AvailabilityWatcherTest {
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean released;
+
+    protected AvailabilityWatcher createWatcher() {
+        AvailabilityWatcher watcher = new AvailabilityWatcher();
+        watcher.setPollInterval(50);
+        watcher.setProbe(url -> {
+            requests.incrementAndGet();
+            int code = released ? 200 : 404;
+            return new ArtifactProbe.Result(url, "HEAD", code, ArtifactProbe.Status.fromResponseCode(code), 1, null);
+        });
+        return watcher;
+    }
+
+    @Test
+    public void testConcurrentChecksShareRequests() throws Exception {
+        AvailabilityWatcher watcher = createWatcher();
+        watcher.setPollInterval(TimeUnit.MINUTES.toMillis(1));
+        for (int i = 0; i < 10; i++) {
+            assertThat(watcher.isAvailable("http://repo/foo.jar")).isFalse();
+        }
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSubscribersNotifiedOnce() throws Exception {
+        AvailabilityWatcher watcher = createWatcher();
+        AtomicInteger notified = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            watcher.subscribe("http://repo/bar.jar", notified::incrementAndGet);
+        }
+        released = true;
+        assertThat(watcher.awaitAvailable("http://repo/bar.jar", 5, TimeUnit.SECONDS)).isTrue();
+        // listeners are notified asynchronously
+        long deadline = System.currentTimeMillis() + 5000;
+        while (notified.get() < 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(notified.get()).isEqualTo(5);
+
+        int count = requests.get();
+        assertThat(watcher.isAvailable("http://repo/bar.jar")).isTrue();
+        assertThat(requests.get()).isEqualTo(count);
+    }
+
+    @Test
+    public void testSubscribeToManyUrls() throws Exception {
+        AvailabilityWatcher watcher = createWatcher();
+        CountDownLatch latch = new CountDownLatch(2);
+        watcher.subscribe(Arrays.asList("http://repo/a.jar", "http://repo/b.jar"), latch::countDown);
+        assertThat(watcher.size()).isEqualTo(2);
+        released = true;
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testProbeDoesNotHoldPollerLock() throws Exception {
+        AvailabilityWatcher watcher = new AvailabilityWatcher();
+        watcher.setPollInterval(TimeUnit.MINUTES.toMillis(1));
+        CountDownLatch probing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        watcher.setProbe(url -> {
+            requests.incrementAndGet();
+            probing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ArtifactProbe.Result(url, "HEAD", 200, ArtifactProbe.Status.fromResponseCode(200), 1, null);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = executor.submit(() -> watcher.isAvailable("http://repo/slow.jar"));
+            assertThat(probing.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<Boolean> second = executor.submit(() -> watcher.isAvailable("http://repo/slow.jar"));
+
+            // subscribing must not wait for the probe in progress
+            CountDownLatch notified = new CountDownLatch(1);
+            watcher.subscribe("http://repo/slow.jar", notified::countDown);
+            assertThat(first.isDone()).isFalse();
+
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(second.get(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(notified.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(requests.get()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testListenersNotifiedAsynchronously() throws Exception {
+        AvailabilityWatcher watcher = createWatcher();
+        released = true;
+        assertThat(watcher.isAvailable("http://repo/baz.jar")).isTrue();
+
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        watcher.subscribe("http://repo/baz.jar", () -> {
+            thread.set(Thread.currentThread());
+            latch.countDown();
+        });
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(thread.get()).isNotSameAs(Thread.currentThread());
+    }
+
+    @Test
+    public void testCheckAllKeepsOrder() throws Exception {
+        AvailabilityWatcher watcher = createWatcher();
+        List<String> urls = Arrays.asList("http://repo/1.jar", "http://repo/2.jar", "http://repo/3.jar", "http://repo/4.jar", "http://repo/5.jar");
+        Map<String, ArtifactProbe.Result> results = watcher.checkAll(urls, 2);
+        assertThat(results.keySet()).containsExactlyElementsOf(urls);
+        for (Map.Entry<String, ArtifactProbe.Result> entry : results.entrySet()) {
+            assertThat(entry.getValue().isAvailable()).isFalse();
+        }
+        assertThat(requests.get()).isEqualTo(5);
+    }
+}
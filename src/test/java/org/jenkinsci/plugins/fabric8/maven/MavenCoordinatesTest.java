@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class MavenCoordinatesTest {
+    public static void assertArtifactUrl(String coordinates, String expectedUrl) {
+        String url = MavenCoordinates.parse(coordinates, "1.0.1").toUrl("https://repo1.maven.org/maven2/");
+        assertThat(url).describedAs("URL for coordinates: " + coordinates).isEqualTo(expectedUrl);
+    }
+
+    @Test
+    public void testParseCoordinates() throws Exception {
+        assertArtifactUrl("io.fabric8:foo", "https://repo1.maven.org/maven2/io/fabric8/foo/1.0.1/foo-1.0.1.jar");
+        assertArtifactUrl("io.fabric8:foo:2.0", "https://repo1.maven.org/maven2/io/fabric8/foo/2.0/foo-2.0.jar");
+        assertArtifactUrl("io.fabric8:foo:pom:2.0", "https://repo1.maven.org/maven2/io/fabric8/foo/2.0/foo-2.0.pom");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCoordinates() throws Exception {
+        MavenCoordinates.parse("foo", "1.0");
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import com.sun.net.httpserver.HttpServer;
+import org.jenkinsci.plugins.fabric8.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class MavenMetadataCacheTest {
+    private final AtomicInteger downloads = new AtomicInteger();
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/io/fabric8/foo/maven-metadata.xml", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                downloads.incrementAndGet();
+                byte[] body = "<metadata><versioning><latest>1.2.3</latest></versioning></metadata>".getBytes("UTF-8");
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/io/fabric8/foo/maven-metadata.xml";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testCachesAndRevalidates() throws Exception {
+        MavenMetadataCache cache = new MavenMetadataCache();
+        Logger logger = Logger.getInstance();
+
+        assertThat(cache.getFirstElementText(logger, url, "latest")).isEqualTo("1.2.3");
+        assertThat(cache.getFirstElementText(logger, url, "latest")).isEqualTo("1.2.3");
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+
+        cache.setTimeToLive(0);
+        assertThat(cache.getFirstElementText(logger, url, "latest")).isEqualTo("1.2.3");
+        assertThat(cache.getRevalidations()).isEqualTo(1);
+        assertThat(downloads.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jenkinsci.plugins.fabric8.WaitStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ */
+public class NexusStagingClientTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, String> types = new ConcurrentHashMap<>();
+    private final Map<String, Integer> transitions = new ConcurrentHashMap<>();
+    private final Map<String, String> pending = new ConcurrentHashMap<>();
+    private int startDelay;
+    private final List<String> operations = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private NexusStagingClient client;
+
+    @Before
+    public void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/service/local/staging/", exchange -> {
+            try {
+                handle(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        client = new NexusStagingClient("http://localhost:" + server.getAddress().getPort() + "/", "user", "secret");
+        client.setPollStrategy(WaitStrategy.fixed(10));
+        client.setTransitionDelay(10);
+    }
+
+    @After
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testReleaseClosesOpenRepositoryAndWaits() throws Exception {
+        types.put("iofabric8-1001", NexusStagingClient.OPEN);
+        types.put("iofabric8-1002", NexusStagingClient.CLOSED);
+
+        assertThat(client.list()).extracting("repositoryId").containsOnly("iofabric8-1001", "iofabric8-1002");
+
+        client.release("iofabric8-1001", "Next release is ready", 5000);
+        assertThat(operations).containsExactly("close iofabric8-1001", "promote iofabric8-1001");
+        assertThat(types.get("iofabric8-1001")).isEqualTo(NexusStagingClient.RELEASED);
+
+        client.drop("iofabric8-1002", "Dry run");
+        assertThat(client.getRepository("iofabric8-1002")).isNull();
+    }
+
+    @Test
+    public void testReleaseWaitsForTransitionToStart() throws Exception {
+        types.put("iofabric8-1003", NexusStagingClient.CLOSED);
+        // Nexus keeps reporting the old state for a few polls after the promote request
+        startDelay = 3;
+
+        client.release("iofabric8-1003", "Next release is ready", 5000);
+        assertThat(operations).containsExactly("promote iofabric8-1003");
+        assertThat(types.get("iofabric8-1003")).isEqualTo(NexusStagingClient.RELEASED);
+    }
+
+    @Test
+    public void testReleaseFailsIfRepositoryMissing() throws Exception {
+        try {
+            client.release("iofabric8-9999", "Next release is ready", 5000);
+            fail("Should have failed");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).contains("iofabric8-9999");
+        }
+    }
+
+    /**
+     * Enough of the Nexus staging REST API to close, promote and drop repositories; each operation leaves the
+     * repository transitioning for a couple of polls
+     */
+    protected void handle(HttpExchange exchange) throws IOException {
+        byte[] body = NexusStagingClient.readFully(exchange.getRequestBody());
+        if (!"Basic dXNlcjpzZWNyZXQ=".equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            exchange.sendResponseHeaders(401, -1);
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        if (path.startsWith("/service/local/staging/bulk/")) {
+            String operation = path.substring(path.lastIndexOf('/') + 1);
+            JsonNode data = mapper.readTree(body).path("data");
+            for (JsonNode id : data.path("stagedRepositoryIds")) {
+                String repositoryId = id.asText();
+                operations.add(operation + " " + repositoryId);
+                if (operation.equals("drop")) {
+                    types.remove(repositoryId);
+                } else {
+                    pending.put(repositoryId, operation.equals("close") ? NexusStagingClient.CLOSED : NexusStagingClient.RELEASED);
+                    transitions.put(repositoryId, -startDelay);
+                }
+            }
+            exchange.sendResponseHeaders(201, -1);
+            return;
+        }
+        StringBuilder json = new StringBuilder();
+        if (path.equals("/service/local/staging/profile_repositories")) {
+            json.append("{\"data\":[");
+            for (String repositoryId : types.keySet()) {
+                if (json.length() > 10) {
+                    json.append(",");
+                }
+                json.append(repositoryJson(repositoryId));
+            }
+            json.append("]}");
+        } else {
+            String repositoryId = path.substring(path.lastIndexOf('/') + 1);
+            if (!types.containsKey(repositoryId)) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            json.append(repositoryJson(repositoryId));
+        }
+        byte[] response = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, response.length);
+        exchange.getResponseBody().write(response);
+    }
+
+    protected String repositoryJson(String repositoryId) {
+        int remaining = transitions.getOrDefault(repositoryId, 0);
+        if (remaining < 0) {
+            // the transition has not started yet
+            transitions.put(repositoryId, remaining + 1);
+            remaining = 0;
+        } else {
+            String type = pending.remove(repositoryId);
+            if (type != null) {
+                types.put(repositoryId, type);
+                remaining = 2;
+            }
+            transitions.put(repositoryId, Math.max(0, remaining - 1));
+        }
+        return "{\"repositoryId\":\"" + repositoryId + "\",\"type\":\"" + types.get(repositoryId) + "\",\"transitioning\":" + (remaining > 0) + "}";
+    }
+}
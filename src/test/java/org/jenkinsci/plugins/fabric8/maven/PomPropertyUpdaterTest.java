@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import io.fabric8.utils.IOHelpers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class PomPropertyUpdaterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOnlyChangedPomsAreRewritten() throws Exception {
+        File root = folder.getRoot();
+        String parent = "<project>\r\n  <properties>\r\n    <fabric8.version>2.3.12</fabric8.version>\r\n" +
+                "    <other.version>2.3.12</other.version>\r\n  </properties>\r\n</project>";
+        write(root, "pom.xml", parent);
+        write(root, "child/pom.xml", "<project>\n\t<properties><fabric8.version>2.3.12-SNAPSHOT</fabric8.version></properties>\n</project>\n");
+        write(root, "current/pom.xml", "<project><properties><fabric8.version>2.4.1</fabric8.version></properties></project>\n");
+        write(root, "child/target/pom.xml", "<fabric8.version>2.3.12</fabric8.version>\n");
+        long modified = new File(root, "current/pom.xml").lastModified();
+
+        PomPropertyUpdater updater = new PomPropertyUpdater(root);
+        assertThat(updater.update("<fabric8.version>", "2.4.1", false)).containsExactly("pom.xml");
+        assertThat(read(root, "pom.xml")).isEqualTo(parent.replace("<fabric8.version>2.3.12<", "<fabric8.version>2.4.1<"));
+        assertThat(read(root, "child/target/pom.xml")).contains("2.3.12");
+        assertThat(new File(root, "current/pom.xml").lastModified()).isEqualTo(modified);
+
+        assertThat(updater.update("fabric8.version", "2.5", true)).containsExactly("child" + File.separator + "pom.xml");
+        assertThat(read(root, "child/pom.xml")).isEqualTo("<project>\n\t<properties><fabric8.version>2.5-SNAPSHOT</fabric8.version></properties>\n</project>\n");
+
+        assertThat(updater.update("<fabric8.version>", "2.4.1", false)).isEmpty();
+        assertThat(root.list()).containsOnly("pom.xml", "child", "current");
+    }
+
+    protected static void write(File root, String path, String text) throws Exception {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        IOHelpers.writeFully(file, text);
+    }
+
+    protected static String read(File root, String path) throws Exception {
+        return IOHelpers.readFully(new File(root, path));
+    }
+}
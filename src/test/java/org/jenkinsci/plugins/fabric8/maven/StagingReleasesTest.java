@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class StagingReleasesTest {
+
+    @Test
+    public void testNoMoreReleasesStartAfterAFailure() throws Exception {
+        StagingReleases releases = new StagingReleases(Arrays.asList("repo-1", "repo-2", "repo-3", "repo-4"));
+        assertThat(releases.canStart()).isTrue();
+        releases.onReleased("repo-1");
+        assertThat(releases.isFailed()).isFalse();
+
+        IllegalStateException cause = new IllegalStateException("boom");
+        releases.onFailed("repo-3", cause);
+        assertThat(releases.canStart()).isFalse();
+        assertThat(releases.isFailed()).isTrue();
+
+        // a release which was already in progress may still finish
+        releases.onReleased("repo-2");
+        IllegalStateException second = new IllegalStateException("bang");
+        releases.onFailed("repo-4", second);
+
+        assertThat(releases.getReleased()).containsExactly("repo-1", "repo-2");
+        assertThat(releases.getUnreleased()).containsExactly("repo-3", "repo-4");
+        assertThat(releases.getCause()).isSameAs(cause);
+        assertThat(releases.getCause("repo-4")).isSameAs(second);
+        assertThat(releases.getFailureMessage()).isEqualTo("ERROR releasing sonartype repos [repo-3, repo-4]: " + cause);
+    }
+
+    @Test
+    public void testUnstartedReleasesUseTheFirstFailure() throws Exception {
+        StagingReleases releases = new StagingReleases(Arrays.asList("repo-1", "repo-2"));
+        IllegalStateException cause = new IllegalStateException("boom");
+        releases.onFailed("repo-1", cause);
+        assertThat(releases.getUnreleased()).containsExactly("repo-1", "repo-2");
+        assertThat(releases.getCause("repo-2")).isSameAs(cause);
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) Original Authors 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.fabric8.maven;
+
+import io.fabric8.utils.IOHelpers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class StagingRepositoriesTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFindRepoIdsInMultiLineProperties() throws Exception {
+        File dir = folder.newFolder("staging");
+        IOHelpers.writeFully(new File(dir, "b.properties"), "#Generated by nexus-staging-maven-plugin\n" +
+                "stagingRepository.profileId=123\nstagingRepository.id=iofabric8-1002\nstagingRepository.url=https\\://oss.sonatype.org\n");
+        IOHelpers.writeFully(new File(dir, "a.properties"), "stagingRepository.id = iofabric8-1001\n");
+        IOHelpers.writeFully(new File(dir, "repos.txt"), "stagingRepository.id=ignored\n");
+
+        assertThat(StagingRepositories.findRepoIds(dir)).containsExactly("iofabric8-1001", "iofabric8-1002");
+        assertThat(StagingRepositories.findRepoIds(new File(dir, "missing"))).isEmpty();
+    }
+
+    @Test
+    public void testParseConcatenatedProperties() throws Exception {
+        String text = "stagingRepository.profileId=123\nstagingRepository.id=iofabric8-1001\n" +
+                "stagingRepository.profileId=456\nstagingRepository.id:iofabric8-1002\nstagingRepository.id=iofabric8-1001\n";
+        assertThat(StagingRepositories.parseRepoIds(text)).containsExactly("iofabric8-1001", "iofabric8-1002");
+    }
+}